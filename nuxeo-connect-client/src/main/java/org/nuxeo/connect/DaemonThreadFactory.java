@@ -0,0 +1,58 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} creating named daemon threads, so that the Connect Client background tasks never prevent the
+ * JVM from exiting.
+ *
+ * @since 1.8.2
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    private final ThreadGroup group;
+
+    private final String namePrefix;
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * @param name the base name of the created threads
+     */
+    public DaemonThreadFactory(String name) {
+        SecurityManager s = System.getSecurityManager();
+        group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
+        namePrefix = name + "-" + poolNumber.incrementAndGet() + '-';
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        String name = namePrefix + threadNumber.incrementAndGet();
+        Thread t = new Thread(group, r, name);
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY);
+        return t;
+    }
+
+}
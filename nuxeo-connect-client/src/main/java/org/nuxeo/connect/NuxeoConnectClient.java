@@ -119,6 +119,21 @@ public class NuxeoConnectClient {
         return cbHolder.getProperty(key, defaultValue);
     }
 
+    /**
+     * @return the integer value of the given property, at least the given minimum, or the default value if the
+     *         property is not an integer
+     * @since 1.8.2
+     */
+    public static int getIntProperty(String key, String defaultValue, int min) {
+        String value = getProperty(key, defaultValue);
+        try {
+            return Math.max(min, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + key + ": " + value);
+            return Integer.parseInt(defaultValue);
+        }
+    }
+
     public static String getHomePath() {
         return cbHolder.getHomePath();
     }
@@ -0,0 +1,66 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of {@link DaemonThreadFactory daemon threads}, created on first use and resized to the parallelism asked by
+ * each caller, so that a configuration change is taken into account without restarting.
+ *
+ * @since 1.8.2
+ */
+public class ResizableExecutor {
+
+    protected final String threadName;
+
+    protected ThreadPoolExecutor executor;
+
+    /**
+     * @param threadName the base name of the pool threads
+     */
+    public ResizableExecutor(String threadName) {
+        this.threadName = threadName;
+    }
+
+    /**
+     * @return the executor, created or resized to run at most the given number of tasks at the same time
+     */
+    public synchronized ExecutorService get(int parallelism) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new DaemonThreadFactory(threadName));
+            executor.allowCoreThreadTimeOut(true);
+        } else if (executor.getMaximumPoolSize() != parallelism) {
+            // the core size cannot exceed the maximum size
+            if (parallelism > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(parallelism);
+                executor.setCorePoolSize(parallelism);
+            } else {
+                executor.setCorePoolSize(parallelism);
+                executor.setMaximumPoolSize(parallelism);
+            }
+        }
+        return executor;
+    }
+
+}
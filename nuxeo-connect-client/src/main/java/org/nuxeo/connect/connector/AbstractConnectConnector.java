@@ -23,35 +23,57 @@
 
 package org.nuxeo.connect.connector;
 
+import static org.nuxeo.connect.connector.http.ConnectHttpConnector.CONNECT_HTTP_PARALLELISM;
+import static org.nuxeo.connect.connector.http.ConnectHttpConnector.DEFAULT_CONNECT_HTTP_PARALLELISM;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.PrefixFileFilter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.ResizableExecutor;
 import org.nuxeo.connect.connector.http.ConnectUrlConfig;
 import org.nuxeo.connect.data.AbstractJSONSerializableData;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.data.LazyPackageDescriptor;
 import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.data.PackageListSnapshot;
 import org.nuxeo.connect.data.SubscriptionStatus;
 import org.nuxeo.connect.downloads.ConnectDownloadManager;
 import org.nuxeo.connect.identity.LogicalInstanceIdentifier;
 import org.nuxeo.connect.identity.SecurityHeaderGenerator;
 import org.nuxeo.connect.packages.PackageListCache;
+import org.nuxeo.connect.packages.StaleCacheRevalidator;
 import org.nuxeo.connect.platform.PlatformId;
 import org.nuxeo.connect.update.PackageType;
 
@@ -73,6 +95,13 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
 
     public static final String GET_DOWNLOAD_SUFFIX = "getDownload";
 
+    /**
+     * Pseudo package type used to list the packages of all the types in a single {@link #GET_DOWNLOADS_SUFFIX} call.
+     *
+     * @since 1.8.2
+     */
+    public static final String GET_ALL_DOWNLOADS_SUFFIX = "all";
+
     public static final String GET_STATUS_SUFFIX = "status";
 
     public static final String NUXEO_TMP_DIR_PROPERTY = "nuxeo.tmp.dir";
@@ -91,10 +120,79 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
 
     public static final String CONNECT_SERVER_REACHABLE_PROPERTY = "org.nuxeo.connect.server.reachable";
 
+    /**
+     * Enables the bulk calls to the Connect Server: listing all the package types in a single call, and getting the
+     * download descriptors of several packages in a single call.
+     *
+     * @see #getAllDownloads(PlatformId)
+     * @see #getDownloadsById(List)
+     * @since 1.8.2
+     */
+    public static final String CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY = "org.nuxeo.connect.connector.bulkDownloads";
+
+    /**
+     * Format of the package list cache files: {@value #CACHE_FORMAT_JSON} (default) or
+     * {@value #CACHE_FORMAT_BINARY}. In binary mode, a {@link PackageListSnapshot} is stored alongside each JSON cache
+     * file and read instead of it; the JSON file is kept as a fallback.
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_CONNECTOR_CACHE_FORMAT_PROPERTY = "org.nuxeo.connect.connector.cache.format";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String CACHE_FORMAT_JSON = "json";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String CACHE_FORMAT_BINARY = "binary";
+
     private static final String CACHE_FILE_PREFIX = "pkg_cache_";
 
+    private static final String CACHE_SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+    private static final String CACHE_VALIDATORS_FILE_SUFFIX = ".validators";
+
+    private static final String ETAG_HEADER = "ETag";
+
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
     protected static Log log = LogFactory.getLog(AbstractConnectConnector.class);
 
+    /**
+     * Set to false once the server answered a bulk listing request saying it does not know it. An unexpected payload
+     * only makes the current call fall back on per type calls.
+     *
+     * @since 1.8.2
+     */
+    protected volatile boolean bulkDownloadsSupported = true;
+
+    /**
+     * Set to false once the server answered a bulk download descriptors request saying it does not know it. An
+     * unexpected payload only makes the current call fall back on per package calls.
+     *
+     * @since 1.8.2
+     */
+    protected volatile boolean bulkDescriptorsSupported = true;
+
+    /**
+     * Executor used to get the download descriptors of several packages concurrently.
+     *
+     * @since 1.8.2
+     */
+    protected static final ResizableExecutor descriptorExecutor = new ResizableExecutor("ConnectDescriptorThread");
+
+    /**
+     * @since 1.8.2
+     */
+    protected final StaleCacheRevalidator cacheRevalidator = new StaleCacheRevalidator("packages list file");
+
     protected String getBaseUrl() {
         if (LogicalInstanceIdentifier.isRegistered()) {
             return ConnectUrlConfig.getRegistredBaseUrl();
@@ -178,14 +276,7 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
         if (downloadingPackage != null) {
             return downloadingPackage;
         }
-        try {
-            id = URLEncoder.encode(id, "UTF-8");
-            id = id.replace("+", "%20");
-            // yerk, probably not the best way :(
-        } catch (UnsupportedEncodingException e) {
-            log.error(e);
-        }
-        String url = getBaseUrl() + GET_DOWNLOAD_SUFFIX + "/" + id;
+        String url = getBaseUrl() + GET_DOWNLOAD_SUFFIX + "/" + encodePackageId(id);
         PackageDescriptor pkg = null;
         ConnectServerResponse response = execCall(url);
         try {
@@ -205,6 +296,144 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
         return cdm.storeDownloadedBundle(pkg);
     }
 
+    /**
+     * @since 1.8.2
+     */
+    protected String encodePackageId(String id) {
+        try {
+            id = URLEncoder.encode(id, "UTF-8");
+            id = id.replace("+", "%20");
+            // yerk, probably not the best way :(
+        } catch (UnsupportedEncodingException e) {
+            log.error(e);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the download descriptors of the given packages in a single call if the Connect Server supports it, or
+     * with concurrent calls to {@link #getDownload(String)} otherwise.
+     *
+     * @see #CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY
+     * @see org.nuxeo.connect.connector.http.ConnectHttpConnector#CONNECT_HTTP_PARALLELISM
+     * @since 1.8.2
+     */
+    @Override
+    public Map<String, DownloadingPackage> getDownloadsById(List<String> ids) throws ConnectServerError {
+        Map<String, DownloadingPackage> downloads = getBulkDownloads(ids);
+        if (downloads != null) {
+            return downloads;
+        }
+        Map<String, Future<DownloadingPackage>> futures = new LinkedHashMap<>();
+        ExecutorService executor = getDescriptorExecutor();
+        for (String id : ids) {
+            futures.computeIfAbsent(id, k -> executor.submit(() -> getDownload(k)));
+        }
+        downloads = new LinkedHashMap<>();
+        ConnectServerError error = null;
+        for (Map.Entry<String, Future<DownloadingPackage>> entry : futures.entrySet()) {
+            try {
+                downloads.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectServerError("Interrupted while getting download descriptors", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ConnectServerError) {
+                    // keep the first error, once all the calls completed
+                    error = error == null ? (ConnectServerError) e.getCause() : error;
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else {
+                    throw new ConnectServerError("Unable to get download descriptor of " + entry.getKey(), e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return downloads;
+    }
+
+    /**
+     * @return the downloading packages by id, or null if getting several download descriptors in a single call is not
+     *         supported or if the response could not be parsed
+     * @since 1.8.2
+     */
+    protected Map<String, DownloadingPackage> getBulkDownloads(List<String> ids) throws ConnectServerError {
+        if (!bulkDescriptorsSupported || !Boolean.parseBoolean(
+                NuxeoConnectClient.getProperty(CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "false"))) {
+            return null;
+        }
+        if (!isConnectServerReachable()) {
+            throw new CanNotReachConnectServer("Connect server set as not reachable");
+        }
+        ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
+        Map<String, DownloadingPackage> downloads = new LinkedHashMap<>();
+        StringBuilder query = new StringBuilder();
+        for (String id : ids) {
+            DownloadingPackage downloadingPackage = cdm.getDownloadingPackage(id);
+            downloads.put(id, downloadingPackage);
+            if (downloadingPackage == null) {
+                query.append(query.length() == 0 ? '?' : '&').append("id=").append(encodePackageId(id));
+            }
+        }
+        if (query.length() == 0) {
+            return downloads;
+        }
+        String url = getBaseUrl() + GET_DOWNLOAD_SUFFIX + query;
+        ConnectServerResponse response = execCall(url);
+        JSONArray descriptors;
+        try {
+            if (response.isNotFound()) {
+                log.info("Connect server does not support getting several download descriptors at once, using one "
+                        + "call per package");
+                bulkDescriptorsSupported = false;
+                return null;
+            }
+            String json = response.getString();
+            descriptors = json == null ? null : new JSONArray(json);
+        } catch (JSONException e) {
+            descriptors = null;
+        } finally {
+            response.release();
+        }
+        if (descriptors == null) {
+            log.warn("Unable to parse the download descriptors got at once, using one call per package");
+            return null;
+        }
+        for (int i = 0; i < descriptors.length(); i++) {
+            PackageDescriptor pkg;
+            try {
+                pkg = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class,
+                        descriptors.getJSONObject(i));
+            } catch (JSONException e) {
+                throw new ConnectServerError("Unable to parse response", e);
+            }
+            if (pkg == null || pkg.getId() == null) {
+                throw new ConnectSecurityError("Unable to parse server response: package has no id");
+            }
+            if (downloads.containsKey(pkg.getId()) && downloads.get(pkg.getId()) == null) {
+                downloads.put(pkg.getId(), cdm.storeDownloadedBundle(pkg));
+            }
+        }
+        return downloads;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected ExecutorService getDescriptorExecutor() {
+        return descriptorExecutor.get(getParallelism());
+    }
+
+    /**
+     * @see org.nuxeo.connect.connector.http.ConnectHttpConnector#CONNECT_HTTP_PARALLELISM
+     * @since 1.8.2
+     */
+    protected int getParallelism() {
+        return NuxeoConnectClient.getIntProperty(CONNECT_HTTP_PARALLELISM, DEFAULT_CONNECT_HTTP_PARALLELISM, 1);
+    }
+
     @Override
     public List<DownloadablePackage> getDownloads(PackageType type) throws ConnectServerError {
         return getDownloads(type, null);
@@ -213,13 +442,198 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
     @Override
     public List<DownloadablePackage> getDownloads(PackageType type, PlatformId currentTargetPlatform)
             throws ConnectServerError {
-        String fileSuffix = String.valueOf(type);
-        String urlSuffix = fileSuffix;
+        return getDownloads(getDownloadsCacheSuffix(type, currentTargetPlatform),
+                getDownloadsUrlSuffix(type, currentTargetPlatform));
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    public List<DownloadablePackage> fetchDownloads(PackageType type, PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        if (!isConnectServerReachable()) {
+            return new ArrayList<>();
+        }
+        return fetchDownloads(getDownloadsCacheSuffix(type, currentTargetPlatform),
+                getDownloadsUrlSuffix(type, currentTargetPlatform));
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected String getDownloadsUrlSuffix(PackageType type, PlatformId currentTargetPlatform) {
+        String urlSuffix = String.valueOf(type);
         if (currentTargetPlatform != null) {
             urlSuffix += "?targetPlatform=" + currentTargetPlatform.asString();
+        }
+        return urlSuffix;
+    }
+
+    /**
+     * @return the suffix of the cache file storing the packages of the given type
+     * @since 1.8.2
+     */
+    protected String getDownloadsCacheSuffix(PackageType type, PlatformId currentTargetPlatform) {
+        String fileSuffix = String.valueOf(type);
+        if (currentTargetPlatform != null) {
             fileSuffix += "_" + currentTargetPlatform.asString();
         }
-        return getDownloads(fileSuffix, urlSuffix);
+        return fileSuffix;
+    }
+
+    /**
+     * Lists the packages of all the types with a single {@link #GET_DOWNLOADS_SUFFIX}/{@link #GET_ALL_DOWNLOADS_SUFFIX}
+     * call when {@link #CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY} is enabled. The response is parsed incrementally and
+     * split into the same cache files as the per type calls.
+     * <p>
+     * Returns null, so that the caller falls back on per type calls, if the bulk mode is disabled, if the server does
+     * not support it or if its response could not be parsed. Only the server not supporting it disables the bulk mode
+     * for the next calls.
+     *
+     * @since 1.8.2
+     */
+    @Override
+    public Map<PackageType, List<DownloadablePackage>> getAllDownloads(PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        if (!bulkDownloadsSupported || !Boolean.parseBoolean(
+                NuxeoConnectClient.getProperty(CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "false"))) {
+            return null;
+        }
+        Map<PackageType, List<DownloadablePackage>> result = new EnumMap<>(PackageType.class);
+        if (!isConnectServerReachable()) {
+            for (PackageType type : PackageType.values()) {
+                result.put(type, new ArrayList<>());
+            }
+            return result;
+        }
+
+        // Try reading from the cache first
+        for (PackageType type : PackageType.values()) {
+            List<DownloadablePackage> pkgs = readCacheFile(getDownloadsCacheSuffix(type, currentTargetPlatform));
+            if (pkgs == null) {
+                result = null;
+                break;
+            }
+            result.put(type, pkgs);
+        }
+        if (result != null) {
+            log.debug("Using cache for all package types");
+            return result;
+        }
+
+        log.debug("Cache empty or expired for some package types. Sending request to " + getBaseUrl());
+        String url = getBaseUrl() + GET_DOWNLOADS_SUFFIX + "/" + GET_ALL_DOWNLOADS_SUFFIX;
+        if (currentTargetPlatform != null) {
+            url += "?targetPlatform=" + currentTargetPlatform.asString();
+        }
+        ConnectServerResponse response = execCall(url);
+        try {
+            if (response.isNotFound()) {
+                log.info("Connect server does not support listing all the packages at once, using one call per type");
+                bulkDownloadsSupported = false;
+                return null;
+            }
+            result = parseAllDownloads(response.getInputStream(), currentTargetPlatform);
+        } finally {
+            response.release();
+        }
+        if (result == null) {
+            log.warn("Unable to parse the packages listed at once, using one call per type");
+        }
+        return result;
+    }
+
+    /**
+     * Parses a JSON array of packages of any type one package at a time, without loading the whole payload in memory.
+     * The packages are written to the cache file of their type along the way.
+     *
+     * @return the packages grouped by type, or null if the payload is not a JSON array of packages
+     * @since 1.8.2
+     */
+    protected Map<PackageType, List<DownloadablePackage>> parseAllDownloads(InputStream in,
+            PlatformId currentTargetPlatform) throws ConnectServerError {
+        if (in == null) {
+            return null;
+        }
+        Map<PackageType, List<DownloadablePackage>> result = new EnumMap<>(PackageType.class);
+        Map<PackageType, File> tmpFiles = new EnumMap<>(PackageType.class);
+        Map<PackageType, Writer> writers = new EnumMap<>(PackageType.class);
+        boolean complete = false;
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            for (PackageType type : PackageType.values()) {
+                result.put(type, new ArrayList<>());
+                File cacheFile = getCacheFileFor(getDownloadsCacheSuffix(type, currentTargetPlatform));
+                File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+                tmpFiles.put(type, tmpFile);
+                Writer writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8);
+                writers.put(type, writer);
+                writer.write('[');
+            }
+            JSONTokener tokener = new JSONTokener(reader);
+            if (tokener.nextClean() != '[') {
+                return null;
+            }
+            char next = tokener.nextClean();
+            while (next != ']') {
+                tokener.back();
+                Object value = tokener.nextValue();
+                if (!(value instanceof JSONObject)) {
+                    return null;
+                }
+                JSONObject ob = (JSONObject) value;
+                PackageDescriptor pkg = LazyPackageDescriptor.fromJSON(ob);
+                PackageType type = pkg.getType();
+                if (type == null) {
+                    log.debug("Ignoring package without type: " + pkg.getId());
+                } else {
+                    List<DownloadablePackage> pkgs = result.get(type);
+                    Writer writer = writers.get(type);
+                    if (!pkgs.isEmpty()) {
+                        writer.write(',');
+                    }
+                    ob.write(writer);
+                    pkgs.add(pkg);
+                }
+                next = tokener.nextClean();
+                if (next == ',') {
+                    next = tokener.nextClean();
+                } else if (next != ']') {
+                    return null;
+                }
+            }
+            for (PackageType type : PackageType.values()) {
+                Writer writer = writers.remove(type);
+                writer.write(']');
+                writer.close();
+                File cacheFile = getCacheFileFor(getDownloadsCacheSuffix(type, currentTargetPlatform));
+                File tmpFile = tmpFiles.get(type);
+                // the move keeps the length and modification time the snapshot is bound to
+                long length = tmpFile.length();
+                long lastModified = tmpFile.lastModified();
+                FileUtils.deleteQuietly(getCacheSnapshotFile(cacheFile));
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                writeCacheSnapshot(cacheFile, result.get(type), length, lastModified);
+                // the validators of a previous per type call do not apply to the bulk content
+                FileUtils.deleteQuietly(getCacheValidatorsFile(cacheFile));
+            }
+            complete = true;
+            return result;
+        } catch (JSONException e) {
+            log.debug("Unable to parse bulk packages list", e);
+            return null;
+        } catch (IOException e) {
+            throw new ConnectServerError("Unable to read response", e);
+        } finally {
+            for (Writer writer : writers.values()) {
+                IOUtils.closeQuietly(writer);
+            }
+            if (!complete) {
+                for (File tmpFile : tmpFiles.values()) {
+                    FileUtils.deleteQuietly(tmpFile);
+                }
+            }
+        }
     }
 
     @Override
@@ -229,13 +643,43 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
 
     @Override
     public List<DownloadablePackage> getRegisteredStudio(PlatformId currentTargetPlatform) throws ConnectServerError {
+        return getDownloads(getRegisteredStudioCacheSuffix(currentTargetPlatform),
+                getRegisteredStudioUrlSuffix(currentTargetPlatform));
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    public List<DownloadablePackage> fetchRegisteredStudio(PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        if (!isConnectServerReachable()) {
+            return new ArrayList<>();
+        }
+        return fetchDownloads(getRegisteredStudioCacheSuffix(currentTargetPlatform),
+                getRegisteredStudioUrlSuffix(currentTargetPlatform));
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected String getRegisteredStudioCacheSuffix(PlatformId currentTargetPlatform) {
         String fileSuffix = STUDIO_REGISTERED_CACHE_SUFFIX;
+        if (currentTargetPlatform != null) {
+            fileSuffix += "_" + currentTargetPlatform.asString();
+        }
+        return fileSuffix;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected String getRegisteredStudioUrlSuffix(PlatformId currentTargetPlatform) {
         String urlSuffix = PackageType.STUDIO + "?registered=true";
         if (currentTargetPlatform != null) {
             urlSuffix += "&targetPlatform=" + currentTargetPlatform.asString();
-            fileSuffix += "_" + currentTargetPlatform.asString();
         }
-        return getDownloads(fileSuffix, urlSuffix);
+        return urlSuffix;
     }
 
     protected List<DownloadablePackage> getDownloads(String fileSuffix, String urlSuffix) throws ConnectServerError {
@@ -248,22 +692,63 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
         result = readCacheFile(fileSuffix);
         if (result != null) {
             log.debug("Using cache for " + fileSuffix);
+            cacheRevalidator.freshHit();
             return result;
         }
-        result = new ArrayList<>();
+        // Then serve the expired cache while refreshing it in background, if allowed
+        File cacheFile = getCacheFileFor(fileSuffix);
+        if (cacheRevalidator.isEnabled() && cacheFile.exists()) {
+            long staleness = System.currentTimeMillis() - cacheFile.lastModified() - getCacheMaxAge(fileSuffix);
+            if (cacheRevalidator.canServeStale(staleness)) {
+                result = parseCacheFile(cacheFile);
+                if (result != null) {
+                    log.debug("Using expired cache for " + fileSuffix + " while refreshing it");
+                    cacheRevalidator.staleHit();
+                    cacheRevalidator.revalidate(fileSuffix, () -> fetchDownloads(fileSuffix, urlSuffix));
+                    return result;
+                }
+            }
+        }
+        cacheRevalidator.blockingMiss();
         log.debug("Cache empty or expired for " + fileSuffix + ". Sending request to " + getBaseUrl());
-        // Fallback on the real source
+        return fetchDownloads(fileSuffix, urlSuffix);
+    }
+
+    /**
+     * Fetches the packages from the Connect Server and stores them in the cache file, revalidating the expired cache
+     * if possible.
+     *
+     * @since 1.8.2
+     */
+    protected List<DownloadablePackage> fetchDownloads(String fileSuffix, String urlSuffix)
+            throws ConnectServerError {
+        List<DownloadablePackage> result = new ArrayList<>();
         String url = getBaseUrl() + GET_DOWNLOADS_SUFFIX + "/" + urlSuffix;
-        ConnectServerResponse response = execCall(url);
+        File cacheFile = getCacheFileFor(fileSuffix);
+        Map<String, String> headers = SecurityHeaderGenerator.getHeaders();
+        addConditionalHeaders(headers, cacheFile);
+        ConnectServerResponse response = execServerCall(url, headers);
         try {
+            if (response.isNotModified()) {
+                List<DownloadablePackage> cached = parseCacheFile(cacheFile);
+                if (cached != null) {
+                    log.debug("Cache revalidated for " + fileSuffix);
+                    cacheFile.setLastModified(System.currentTimeMillis());
+                    return cached;
+                }
+                // the server should not have answered 304 without validators, do not send them anymore
+                FileUtils.deleteQuietly(getCacheValidatorsFile(cacheFile));
+                throw new ConnectServerError("Connect server answered 'not modified' but the cache is unreadable");
+            }
             String json = response.getString();
             if (json != null) {
                 JSONArray array = new JSONArray(json);
                 for (int i = 0; i < array.length(); i++) {
                     JSONObject ob = (JSONObject) array.get(i);
-                    result.add(AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, ob));
+                    result.add(LazyPackageDescriptor.fromJSON(ob));
                 }
-                writeCacheFile(fileSuffix, json);
+                writeCacheFile(fileSuffix, json, result);
+                writeCacheValidators(cacheFile, response);
             }
         } catch (JSONException e) {
             throw new ConnectServerError("Unable to parse response", e);
@@ -274,6 +759,71 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
         return result;
     }
 
+    /**
+     * @return the file storing the HTTP validators ({@code ETag} and {@code Last-Modified}) of the given cache file
+     * @since 1.8.2
+     */
+    protected File getCacheValidatorsFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + CACHE_VALIDATORS_FILE_SUFFIX);
+    }
+
+    /**
+     * Adds the {@code If-None-Match} and {@code If-Modified-Since} headers matching the validators stored for the
+     * given cache file, if any.
+     *
+     * @since 1.8.2
+     */
+    protected void addConditionalHeaders(Map<String, String> headers, File cacheFile) {
+        File validatorsFile = getCacheValidatorsFile(cacheFile);
+        if (!cacheFile.exists() || !validatorsFile.exists()) {
+            return;
+        }
+        Properties validators = new Properties();
+        try (Reader reader = Files.newBufferedReader(validatorsFile.toPath(), StandardCharsets.UTF_8)) {
+            validators.load(reader);
+        } catch (IOException e) {
+            log.debug("Unable to read cache validators " + validatorsFile, e);
+            return;
+        }
+        String etag = validators.getProperty(ETAG_HEADER);
+        if (etag != null) {
+            headers.put(IF_NONE_MATCH_HEADER, etag);
+        }
+        String lastModified = validators.getProperty(LAST_MODIFIED_HEADER);
+        if (lastModified != null) {
+            headers.put(IF_MODIFIED_SINCE_HEADER, lastModified);
+        }
+    }
+
+    /**
+     * Stores the {@code ETag} and {@code Last-Modified} headers of the response alongside the given cache file, so
+     * that it can be revalidated once expired.
+     *
+     * @since 1.8.2
+     */
+    protected void writeCacheValidators(File cacheFile, ConnectServerResponse response) {
+        File validatorsFile = getCacheValidatorsFile(cacheFile);
+        Properties validators = new Properties();
+        String etag = response.getHeader(ETAG_HEADER);
+        if (etag != null) {
+            validators.setProperty(ETAG_HEADER, etag);
+        }
+        String lastModified = response.getHeader(LAST_MODIFIED_HEADER);
+        if (lastModified != null) {
+            validators.setProperty(LAST_MODIFIED_HEADER, lastModified);
+        }
+        if (validators.isEmpty()) {
+            FileUtils.deleteQuietly(validatorsFile);
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(validatorsFile.toPath(), StandardCharsets.UTF_8)) {
+            validators.store(writer, null);
+        } catch (IOException e) { // Can't cache: log but don't fail
+            log.error("Could not store packages list cache validators", e);
+            FileUtils.deleteQuietly(validatorsFile);
+        }
+    }
+
     /**
      * @param type Usually {@link PackageType#toString()}
      * @param json String JSON representation of list of {@link DownloadablePackage}
@@ -281,10 +831,34 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
      * @see PackageDescriptor
      */
     public void writeCacheFile(String type, String json) {
+        writeCacheFile(type, json, null);
+    }
+
+    /**
+     * Stores the given JSON in the cache file, and the given packages parsed from it as its snapshot.
+     *
+     * @param pkgs the packages parsed from the JSON, or null to only store the JSON
+     * @since 1.8.2
+     */
+    protected void writeCacheFile(String type, String json, List<DownloadablePackage> pkgs) {
+        File cacheFile = getCacheFileFor(type);
+        // the snapshot of the previous content is obsolete
+        FileUtils.deleteQuietly(getCacheSnapshotFile(cacheFile));
+        File tmpFile = null;
         try {
-            FileUtils.writeStringToFile(getCacheFileFor(type), json);
+            // write aside then move, so that concurrent readers never see a partial file
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+            FileUtils.writeStringToFile(tmpFile, json);
+            long length = tmpFile.length();
+            long lastModified = tmpFile.lastModified();
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (pkgs != null) {
+                writeCacheSnapshot(cacheFile, pkgs, length, lastModified);
+            }
         } catch (IOException e) { // Can't cache: log but don't fail
             log.error("Could not store packages list in cache", e);
+            FileUtils.deleteQuietly(tmpFile);
         }
     }
 
@@ -295,15 +869,62 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
      * @see PackageListCache In-memory cache PackageListCache
      */
     public List<DownloadablePackage> readCacheFile(String suffix) {
+        long cacheMaxAge = getCacheMaxAge(suffix);
+        File cacheFile = getCacheFileFor(suffix);
+        if (!cacheFile.exists() || ((new Date().getTime() - cacheFile.lastModified()) > cacheMaxAge)) {
+            return null;
+        }
+        List<DownloadablePackage> result = parseCacheFile(cacheFile);
+        return result == null ? new ArrayList<>() : result;
+    }
+
+    /**
+     * @param suffix Usually {@link PackageType#toString()}
+     * @return the time in milliseconds after which the given cache file is expired
+     * @see #CONNECT_CONNECTOR_CACHE_MINUTES_PROPERTY
+     * @since 1.8.2
+     */
+    protected long getCacheMaxAge(String suffix) {
         long cacheMaxAge = Long.parseLong(
                 NuxeoConnectClient.getProperty(CONNECT_CONNECTOR_CACHE_MINUTES_PROPERTY, DEFAULT_CACHE_TIME_MINUTES))
                 * 60 * 1000;
         if (suffix == null || PackageType.getByValue(suffix) == PackageType.STUDIO) {
             cacheMaxAge = Math.min(cacheMaxAge, DEFAULT_CACHE_TIME_MS_STUDIO);
         }
-        File cacheFile = getCacheFileFor(suffix);
-        if (!cacheFile.exists() || ((new Date().getTime() - cacheFile.lastModified()) > cacheMaxAge)) {
-            return null;
+        return cacheMaxAge;
+    }
+
+    /**
+     * @return the stale-while-revalidate policy of the cache files, holding their hit and miss counters
+     * @since 1.8.2
+     */
+    public StaleCacheRevalidator getCacheRevalidator() {
+        return cacheRevalidator;
+    }
+
+    /**
+     * Reads the given cache file, whatever its age. With the binary cache format, its snapshot is read instead when it
+     * was built from the current JSON content, and written from the JSON content otherwise.
+     *
+     * @return Packages list from file cache, or null if the file could not be read or parsed; the list is unmodifiable
+     *         when read from a snapshot
+     * @since 1.8.2
+     */
+    protected List<DownloadablePackage> parseCacheFile(File cacheFile) {
+        boolean binary = isBinaryCacheFormat();
+        // read before the content, so that a content replaced meanwhile does not match the snapshot written from it
+        long length = cacheFile.length();
+        long lastModified = cacheFile.lastModified();
+        if (binary) {
+            File snapshotFile = getCacheSnapshotFile(cacheFile);
+            if (snapshotFile.exists()) {
+                try {
+                    return PackageListSnapshot.read(snapshotFile, length, lastModified);
+                } catch (IOException e) {
+                    log.debug("Unable to read cache snapshot " + snapshotFile + ", using JSON cache", e);
+                    FileUtils.deleteQuietly(snapshotFile);
+                }
+            }
         }
         List<DownloadablePackage> result = new ArrayList<>();
         try {
@@ -311,18 +932,61 @@ public abstract class AbstractConnectConnector implements ConnectConnector {
             JSONArray array = new JSONArray(json);
             for (int i = 0; i < array.length(); i++) {
                 JSONObject ob = (JSONObject) array.get(i);
-                result.add(AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, ob));
+                result.add(LazyPackageDescriptor.fromJSON(ob));
             }
         } catch (IOException e) {
             // Issue reading the file
             log.debug(e.getMessage(), e);
+            return null;
         } catch (JSONException e) {
             // Issue parsing the file
             log.debug(e.getMessage(), e);
+            return null;
+        }
+        if (binary) {
+            writeCacheSnapshot(cacheFile, result, length, lastModified);
         }
         return result;
     }
 
+    /**
+     * @return true if the package list cache is also stored as binary snapshots
+     * @see #CONNECT_CONNECTOR_CACHE_FORMAT_PROPERTY
+     * @since 1.8.2
+     */
+    protected boolean isBinaryCacheFormat() {
+        return CACHE_FORMAT_BINARY.equalsIgnoreCase(
+                NuxeoConnectClient.getProperty(CONNECT_CONNECTOR_CACHE_FORMAT_PROPERTY, CACHE_FORMAT_JSON));
+    }
+
+    /**
+     * @return the file storing the binary snapshot of the given cache file
+     * @since 1.8.2
+     */
+    protected File getCacheSnapshotFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + CACHE_SNAPSHOT_FILE_SUFFIX);
+    }
+
+    /**
+     * Stores the given packages as a binary snapshot alongside the given cache file, if the binary cache format is
+     * enabled. The snapshot is only read back while the cache file has the given length and modification time.
+     *
+     * @param length the length of the cache file the packages were read from
+     * @param lastModified the modification time of the cache file the packages were read from
+     * @since 1.8.2
+     */
+    protected void writeCacheSnapshot(File cacheFile, List<DownloadablePackage> pkgs, long length,
+            long lastModified) {
+        if (!isBinaryCacheFormat()) {
+            return;
+        }
+        try {
+            PackageListSnapshot.write(pkgs, getCacheSnapshotFile(cacheFile), length, lastModified);
+        } catch (IOException e) { // Can't cache: log but don't fail
+            log.error("Could not store packages list snapshot in cache", e);
+        }
+    }
+
     protected boolean isConnectServerReachable() {
         return Boolean.parseBoolean(NuxeoConnectClient.getProperty(CONNECT_SERVER_REACHABLE_PROPERTY, "true"));
     }
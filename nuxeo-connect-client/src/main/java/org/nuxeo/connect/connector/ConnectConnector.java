@@ -16,7 +16,9 @@
  */
 package org.nuxeo.connect.connector;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.data.DownloadingPackage;
@@ -52,8 +54,53 @@ public interface ConnectConnector {
     List<DownloadablePackage> getDownloads(PackageType type, PlatformId currentTargetPlatform)
             throws ConnectServerError;
 
+    /**
+     * Same as {@link #getDownloads(PackageType, PlatformId)}, except that the packages are always asked to the server,
+     * possibly with a conditional request, instead of being served by a cache of the connector.
+     * <p>
+     * The default implementation calls {@link #getDownloads(PackageType, PlatformId)}.
+     *
+     * @since 1.8.2
+     */
+    default List<DownloadablePackage> fetchDownloads(PackageType type, PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        return getDownloads(type, currentTargetPlatform);
+    }
+
+    /**
+     * Lists the downloadable packages of all the types in a single call, when supported.
+     *
+     * @param currentTargetPlatform The target platform the retrieved packages must be compatible with, can be null.
+     * @return The downloadable packages grouped by type, with an entry for each {@link PackageType}, or null if bulk
+     *         listing is not supported, in which case {@link #getDownloads(PackageType, PlatformId)} must be called
+     *         for each type.
+     * @throws ConnectServerError
+     * @since 1.8.2
+     */
+    default Map<PackageType, List<DownloadablePackage>> getAllDownloads(PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        return null;
+    }
+
     DownloadingPackage getDownload(String id) throws ConnectServerError;
 
+    /**
+     * Gets the download descriptors of the given packages and queues their download.
+     * <p>
+     * The default implementation calls {@link #getDownload(String)} for each package.
+     *
+     * @return The downloading packages by id, in the given order, with a null value for the packages not found.
+     * @throws ConnectServerError
+     * @since 1.8.2
+     */
+    default Map<String, DownloadingPackage> getDownloadsById(List<String> ids) throws ConnectServerError {
+        Map<String, DownloadingPackage> downloads = new LinkedHashMap<>();
+        for (String id : ids) {
+            downloads.put(id, getDownload(id));
+        }
+        return downloads;
+    }
+
     SubscriptionStatus getConnectStatus() throws ConnectServerError;
 
     /**
@@ -75,6 +122,19 @@ public interface ConnectConnector {
      */
     List<DownloadablePackage> getRegisteredStudio(PlatformId currentTargetPlatform) throws ConnectServerError;
 
+    /**
+     * Same as {@link #getRegisteredStudio(PlatformId)}, except that the packages are always asked to the server,
+     * possibly with a conditional request, instead of being served by a cache of the connector.
+     * <p>
+     * The default implementation calls {@link #getRegisteredStudio(PlatformId)}.
+     *
+     * @since 1.8.2
+     */
+    default List<DownloadablePackage> fetchRegisteredStudio(PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        return getRegisteredStudio(currentTargetPlatform);
+    }
+
     /**
      * Renews the current registration with the Connect server.
      *
@@ -35,4 +35,28 @@ public interface ConnectServerResponse {
 
     void release() throws ConnectServerError;
 
+    /**
+     * @return the value of the given response header, or null if not present
+     * @since 1.8.2
+     */
+    default String getHeader(String name) {
+        return null;
+    }
+
+    /**
+     * @return true if the server answered a conditional request saying the cached content is still valid
+     * @since 1.8.2
+     */
+    default boolean isNotModified() {
+        return false;
+    }
+
+    /**
+     * @return true if the server answered it does not know the requested resource
+     * @since 1.8.2
+     */
+    default boolean isNotFound() {
+        return false;
+    }
+
 }
@@ -28,6 +28,8 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.nuxeo.connect.connector.AbstractConnectConnector;
 import org.nuxeo.connect.connector.ConnectConnector;
 import org.nuxeo.connect.connector.ConnectServerError;
@@ -35,6 +37,7 @@ import org.nuxeo.connect.connector.ConnectServerResponse;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.packages.dependencies.TargetPlatformFilterHelper;
 import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.update.PackageType;
 
 /**
  * Fake abstract implementation of the {@link ConnectConnector} interface for testing purpose.
@@ -49,6 +52,31 @@ public abstract class AbstractFakeConnector extends AbstractConnectConnector {
 
     protected abstract String getJSONDataForDownload(String pkgId);
 
+    /**
+     * Local stand-in for the bulk listing of all the package types: merges the data of each type, setting the
+     * package type when missing. Return null to simulate a server which does not support bulk listing.
+     *
+     * @since 1.8.2
+     */
+    protected String getJSONDataForAllDownloads() {
+        JSONArray all = new JSONArray();
+        for (PackageType type : PackageType.values()) {
+            String data = getJSONDataForDownloads(type.getValue());
+            if (data == null) {
+                continue;
+            }
+            JSONArray array = new JSONArray(data);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject ob = array.getJSONObject(i);
+                if (!ob.has("type")) {
+                    ob.put("type", type.getValue());
+                }
+                all.put(ob);
+            }
+        }
+        return all.toString();
+    }
+
     @Override
     protected ConnectServerResponse execServerCall(String url, Map<String, String> headers) throws ConnectServerError {
 
@@ -61,7 +89,11 @@ public abstract class AbstractFakeConnector extends AbstractConnectConnector {
             if (type == null) {
                 type = StringUtils.substringAfterLast(url, "/");
             }
-            data = getJSONDataForDownloads(type);
+            if (GET_ALL_DOWNLOADS_SUFFIX.equals(type)) {
+                data = getJSONDataForAllDownloads();
+            } else {
+                data = getJSONDataForDownloads(type);
+            }
         } else if (url.contains("/" + GET_DOWNLOAD_SUFFIX + "/")) {
             String pkgId = url.split(GET_DOWNLOAD_SUFFIX + "\\/")[1];
             data = getJSONDataForDownload(pkgId);
@@ -75,9 +107,36 @@ public abstract class AbstractFakeConnector extends AbstractConnectConnector {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Map<PackageType, List<DownloadablePackage>> getAllDownloads(PlatformId currentTargetPlatform)
+            throws ConnectServerError {
+        Map<PackageType, List<DownloadablePackage>> downloads = super.getAllDownloads(currentTargetPlatform);
+        if (downloads != null && currentTargetPlatform != null) { // filter on target platform if needed
+            downloads.replaceAll((type, pkgs) -> pkgs.stream().filter(pkg -> {
+                return TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(pkg, currentTargetPlatform);
+            }).collect(Collectors.toList()));
+        }
+        return downloads;
+    }
+
     @Override
     protected List<DownloadablePackage> getDownloads(String fileSuffix, String urlSuffix) throws ConnectServerError {
-        List<DownloadablePackage> downloads = super.getDownloads(fileSuffix, urlSuffix);
+        return filterOnTargetPlatform(super.getDownloads(fileSuffix, urlSuffix), urlSuffix);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    protected List<DownloadablePackage> fetchDownloads(String fileSuffix, String urlSuffix) throws ConnectServerError {
+        return filterOnTargetPlatform(super.fetchDownloads(fileSuffix, urlSuffix), urlSuffix);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected List<DownloadablePackage> filterOnTargetPlatform(List<DownloadablePackage> downloads,
+            String urlSuffix) {
         if (StringUtils.contains(urlSuffix, "?")) { // filter on target platform if needed
             Map<String, String> queryParams = URLEncodedUtils.parse(StringUtils.substringAfter(urlSuffix, "?"),
                     Charset.forName("UTF-8"))
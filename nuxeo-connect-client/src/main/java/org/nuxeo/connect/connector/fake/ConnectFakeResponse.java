@@ -39,7 +39,7 @@ public class ConnectFakeResponse implements ConnectServerResponse {
     }
 
     public InputStream getInputStream() throws ConnectServerError {
-        return new ByteArrayInputStream(data.getBytes());
+        return data == null ? null : new ByteArrayInputStream(data.getBytes());
     }
 
     public String getString() throws ConnectServerError {
@@ -49,4 +49,12 @@ public class ConnectFakeResponse implements ConnectServerResponse {
     public void release() {
     }
 
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    public boolean isNotFound() {
+        return data == null;
+    }
+
 }
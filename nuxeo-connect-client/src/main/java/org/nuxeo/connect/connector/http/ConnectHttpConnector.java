@@ -21,11 +21,12 @@
 
 package org.nuxeo.connect.connector.http;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.CookieSpecs;
@@ -33,10 +34,15 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -53,10 +59,14 @@ import org.nuxeo.connect.data.SubscriptionStatus;
 /**
  * Real HTTP based {@link ConnectConnector} implementation. Manages communication with the Nuxeo Connect Server via
  * JAX-RS
+ * <p>
+ * Since 1.8.2, all the calls go through a single {@link CloseableHttpClient} backed by a pooled connection manager, so
+ * that successive calls to the Connect Server reuse the same TCP/TLS connections. Call {@link #close()} to release the
+ * pool when the connector is discarded.
  *
  * @author <a href="mailto:td@nuxeo.com">Thierry Delprat</a>
  */
-public class ConnectHttpConnector extends AbstractConnectConnector {
+public class ConnectHttpConnector extends AbstractConnectConnector implements Closeable {
 
     public String overrideUrl = null;
 
@@ -68,10 +78,62 @@ public class ConnectHttpConnector extends AbstractConnectConnector {
 
     public static final String CONNECT_HTTP_TIMEOUT = "org.nuxeo.connect.http.timeout";
 
+    /**
+     * Maximum number of concurrent requests sent to the Connect Server when listing all the package types, or when
+     * getting the download descriptors of several packages. A value of 1 restores the sequential behavior.
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_HTTP_PARALLELISM = "org.nuxeo.connect.http.parallelism";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_CONNECT_HTTP_PARALLELISM = "3";
+
+    /**
+     * Maximum number of pooled connections per route (ie per Connect Server or proxy).
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_HTTP_POOL_MAX_PER_ROUTE = "org.nuxeo.connect.http.pool.maxPerRoute";
+
+    /**
+     * Maximum number of pooled connections.
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_HTTP_POOL_MAX_TOTAL = "org.nuxeo.connect.http.pool.maxTotal";
+
+    /**
+     * Delay in milliseconds after which an idle pooled connection is evicted.
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_HTTP_POOL_IDLE_TIMEOUT = "org.nuxeo.connect.http.pool.idleTimeout";
+
+    /**
+     * Maximum delay in milliseconds a connection is kept alive when the server does not send a Keep-Alive header, or
+     * sends a longer one.
+     *
+     * @since 1.8.2
+     */
+    public static final String CONNECT_HTTP_KEEP_ALIVE = "org.nuxeo.connect.http.keepAlive";
+
     protected int connectHttpTimeout = Integer.parseInt(NuxeoConnectClient.getProperty(CONNECT_HTTP_TIMEOUT, "10000"));
 
     protected long lastStatusFetchTime;
 
+    /**
+     * @since 1.8.2
+     */
+    protected PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * @since 1.8.2
+     */
+    protected CloseableHttpClient httpClient;
+
     @Override
     protected String getBaseUrl() {
         if (overrideUrl != null) {
@@ -90,9 +152,81 @@ public class ConnectHttpConnector extends AbstractConnectConnector {
         return execServer(false, url, headers);
     }
 
+    /**
+     * Lazily builds the pooled {@link CloseableHttpClient} shared by all the calls of this connector, and evicts the
+     * idle connections of its pool.
+     * <p>
+     * Proxy and credentials are resolved per request (the proxy may depend on the url when using a PAC file), so they
+     * are not part of the shared client configuration.
+     *
+     * @since 1.8.2
+     */
+    protected synchronized CloseableHttpClient getHttpClient() {
+        if (httpClient == null) {
+            connectionManager = new PoolingHttpClientConnectionManager(connectHttpTimeout, TimeUnit.MILLISECONDS);
+            connectionManager.setDefaultMaxPerRoute(
+                    NuxeoConnectClient.getIntProperty(CONNECT_HTTP_POOL_MAX_PER_ROUTE, "5", 1));
+            connectionManager.setMaxTotal(NuxeoConnectClient.getIntProperty(CONNECT_HTTP_POOL_MAX_TOTAL, "20", 1));
+            // check connections which were idle for a while before reusing them, the server may have closed them
+            connectionManager.setValidateAfterInactivity(2000);
+            httpClient = HttpClientBuilder.create()
+                                          .setConnectionManager(connectionManager)
+                                          .setKeepAliveStrategy(getKeepAliveStrategy(
+                                                  getLongProperty(CONNECT_HTTP_KEEP_ALIVE, 30000)))
+                                          .build();
+        } else {
+            evictIdleConnections();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Caps the keep-alive duration advertised by the server to the given value.
+     *
+     * @since 1.8.2
+     */
+    protected ConnectionKeepAliveStrategy getKeepAliveStrategy(long maxKeepAlive) {
+        return new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long keepAlive = super.getKeepAliveDuration(response, context);
+                return keepAlive < 0 || keepAlive > maxKeepAlive ? maxKeepAlive : keepAlive;
+            }
+        };
+    }
+
+    /**
+     * Closes the expired and idle connections of the pool. Called before each request, so that no dedicated evictor
+     * thread is needed. Must be called while holding the connector lock.
+     *
+     * @since 1.8.2
+     */
+    protected void evictIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(getLongProperty(CONNECT_HTTP_POOL_IDLE_TIMEOUT, 30000),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shuts down the connection pool. The connector remains usable: a new pool will be created on next call.
+     *
+     * @since 1.8.2
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } finally {
+                httpClient = null;
+                connectionManager = null;
+            }
+        }
+    }
+
     protected ConnectServerResponse execServer(boolean get, String url, Map<String, String> headers)
             throws ConnectServerError {
-        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+        CloseableHttpClient client = getHttpClient();
 
         RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
 
@@ -102,41 +236,37 @@ public class ConnectHttpConnector extends AbstractConnectConnector {
         CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         ProxyHelper.configureProxyIfNeeded(requestConfigBuilder, credentialsProvider, url);
 
-        httpClientBuilder.setDefaultRequestConfig(requestConfigBuilder.build());
-        httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider(credentialsProvider);
 
-        httpClientBuilder.setConnectionTimeToLive(connectHttpTimeout, TimeUnit.MILLISECONDS);
-        HttpUriRequest method = get ? new HttpGet(url) : new HttpPost(url);
+        HttpRequestBase method = get ? new HttpGet(url) : new HttpPost(url);
+        method.setConfig(requestConfigBuilder.build());
 
         for (String name : headers.keySet()) {
             method.addHeader(name, headers.get(name));
         }
 
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse httpResponse = null;
         try {
-            // We do not use autoclose on the httpClient nor on the httpResponse since we may return them yet
-            // not consumed in the ConnectHttpResponse
-            httpClient = httpClientBuilder.build();
-            httpResponse = httpClient.execute(method);
+            // We do not use autoclose on the httpResponse since we may return it yet not consumed in the
+            // ConnectHttpResponse: releasing it gives the connection back to the pool
+            httpResponse = client.execute(method, context);
             int rc = httpResponse.getStatusLine().getStatusCode();
             switch (rc) {
             case HttpStatus.SC_OK:
             case HttpStatus.SC_NO_CONTENT:
             case HttpStatus.SC_NOT_FOUND:
-                return new ConnectHttpResponse(httpClient, httpResponse);
+            case HttpStatus.SC_NOT_MODIFIED:
+                return new ConnectHttpResponse(httpResponse);
             case HttpStatus.SC_UNAUTHORIZED:
-                httpResponse.close();
-                httpClient.close();
+                ConnectHttpResponse.release(httpResponse);
                 throw new ConnectSecurityError("Connect server refused authentication (returned 401)");
             case HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED:
-                httpResponse.close();
-                httpClient.close();
+                ConnectHttpResponse.release(httpResponse);
                 throw new ConnectSecurityError("Proxy server require authentication (returned 407)");
             case HttpStatus.SC_GATEWAY_TIMEOUT:
             case HttpStatus.SC_REQUEST_TIMEOUT:
-                httpResponse.close();
-                httpClient.close();
+                ConnectHttpResponse.release(httpResponse);
                 throw new ConnectServerError("Timeout " + rc);
             default:
                 try {
@@ -157,19 +287,30 @@ public class ConnectHttpConnector extends AbstractConnectConnector {
                     log.debug("Can't parse server error " + rc, e);
                     throw new ConnectServerError("Server returned a code " + rc);
                 } finally {
-                    httpResponse.close();
-                    httpClient.close();
+                    ConnectHttpResponse.release(httpResponse);
                 }
             }
         } catch (ConnectServerError cse) {
             throw cse;
         } catch (IOException e) {
-            IOUtils.closeQuietly(httpResponse);
-            IOUtils.closeQuietly(httpClient);
+            if (httpResponse != null) {
+                ConnectHttpResponse.release(httpResponse);
+            } else {
+                method.abort();
+            }
             throw new ConnectServerError("Error during communication with the Nuxeo Connect Server", e);
         }
     }
 
+    protected long getLongProperty(String key, long defaultValue) {
+        try {
+            return Long.parseLong(NuxeoConnectClient.getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     protected int httpCacheDurationInMinutes() {
         String cacheInMinutes = NuxeoConnectClient.getProperty(CONNECT_HTTP_CACHE_MINUTES_PROPERTY, "0");
         try {
@@ -25,7 +25,9 @@ import java.io.InputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
@@ -34,16 +36,32 @@ import org.nuxeo.connect.connector.ConnectServerResponse;
 
 /**
  * Real HTTP base implementation of the {@link ConnectServerResponse}.
+ * <p>
+ * Since 1.8.2, {@link #release()} gives the underlying connection back to the pool of the {@link ConnectHttpConnector}
+ * instead of closing the whole client.
  *
  * @author <a href="mailto:td@nuxeo.com">Thierry Delprat</a>
  */
 public class ConnectHttpResponse implements ConnectServerResponse {
     protected static final Log log = LogFactory.getLog(ConnectHttpResponse.class);
 
+    /**
+     * Only set when the response owns a dedicated client which must be closed on release.
+     */
     protected CloseableHttpClient httpClient;
 
     protected CloseableHttpResponse httpResponse;
 
+    /**
+     * @since 1.8.2
+     */
+    public ConnectHttpResponse(CloseableHttpResponse httpResponse) {
+        this(null, httpResponse);
+    }
+
+    /**
+     * @param httpClient a dedicated client, closed on {@link #release()}; may be null for a pooled client
+     */
     public ConnectHttpResponse(CloseableHttpClient httpClient, CloseableHttpResponse httpResponse) {
         this.httpClient = httpClient;
         this.httpResponse = httpResponse;
@@ -52,7 +70,8 @@ public class ConnectHttpResponse implements ConnectServerResponse {
     @Override
     public InputStream getInputStream() throws ConnectServerError {
         try {
-            return httpResponse.getEntity().getContent();
+            HttpEntity entity = httpResponse.getEntity();
+            return entity == null ? null : entity.getContent();
         } catch (IOException e) {
             throw new ConnectServerError("Unable to get Stream", e);
         }
@@ -68,13 +87,53 @@ public class ConnectHttpResponse implements ConnectServerResponse {
         }
     }
 
+    @Override
+    public String getHeader(String name) {
+        Header header = httpResponse.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    @Override
+    public boolean isNotModified() {
+        return httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
+    }
+
+    @Override
+    public boolean isNotFound() {
+        return httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND;
+    }
+
     @Override
     public void release() throws ConnectServerError {
+        try {
+            release(httpResponse);
+        } finally {
+            if (httpClient != null) {
+                try {
+                    httpClient.close();
+                } catch (IOException e) {
+                    throw new ConnectServerError("Unable to close connection resources", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Consumes the remaining content of the response, if any, and closes it. Fully consuming the entity allows the
+     * connection to be kept alive and reused, whereas closing a partially read response discards the connection.
+     *
+     * @since 1.8.2
+     */
+    public static void release(CloseableHttpResponse httpResponse) {
+        try {
+            EntityUtils.consume(httpResponse.getEntity());
+        } catch (IOException e) {
+            log.debug("Unable to consume response content, the connection will not be reused", e);
+        }
         try {
             httpResponse.close();
-            httpClient.close();
         } catch (IOException e) {
-            throw new ConnectServerError("Unable to close connection resources", e);
+            log.debug("Unable to close response", e);
         }
     }
 
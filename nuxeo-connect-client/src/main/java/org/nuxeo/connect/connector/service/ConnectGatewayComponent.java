@@ -18,10 +18,12 @@
 
 package org.nuxeo.connect.connector.service;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
 import org.nuxeo.connect.NuxeoConnectClient;
 import org.nuxeo.connect.connector.ConnectConnector;
 import org.nuxeo.connect.connector.NuxeoClientInstanceType;
@@ -82,6 +84,18 @@ public class ConnectGatewayComponent implements ConnectRegistrationService {
     public void localRegisterInstance(String strCLID, String description) throws InvalidCLID, IOException {
         LogicalInstanceIdentifier CLID = new LogicalInstanceIdentifier(strCLID, description);
         CLID.save();
+        resetConnector();
+    }
+
+    /**
+     * Discards the current connector, releasing its resources, so that a new one is created on next access.
+     *
+     * @since 1.8.2
+     */
+    protected void resetConnector() {
+        if (connector instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) connector);
+        }
         connector = null;
     }
 
@@ -64,6 +64,10 @@ public abstract class AbstractJSONSerializableData {
         return new JSONObject(IntrospectionHelper.getDataToSerialize(this));
     }
 
+    /**
+     * @deprecated since 1.8.2, introspects the target class on each call, use {@link JSONDataCodec} instead
+     */
+    @Deprecated
     protected static Object doLoadFromJSON(JSONObject data, Class<?> klass, Object instance) throws JSONException {
 
         if (klass.getSuperclass() != null) {
@@ -98,7 +102,7 @@ public abstract class AbstractJSONSerializableData {
 
     public static <T> T loadFromJSON(Class<T> targetClass, JSONObject data) throws JSONException {
         try {
-            return targetClass.cast(doLoadFromJSON(data, targetClass, targetClass.newInstance()));
+            return JSONDataCodec.of(targetClass).load(data);
         } catch (Exception e) {
             throw new JSONException(e);
         }
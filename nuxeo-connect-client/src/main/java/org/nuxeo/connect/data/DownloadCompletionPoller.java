@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.connect.DaemonThreadFactory;
+
+/**
+ * Checks periodically the completion of the {@link DownloadingPackage}s which cannot notify it, from a single
+ * scheduler thread instead of one blocked thread per package.
+ *
+ * @see DownloadingPackage#whenCompleted()
+ * @since 1.8.2
+ */
+final class DownloadCompletionPoller {
+
+    static final long POLL_INTERVAL_MS = 100;
+
+    // created on first use
+    static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("ConnectDownloadCompletionThread"));
+
+    private DownloadCompletionPoller() {
+        // utility class
+    }
+
+    static CompletableFuture<DownloadingPackage> whenCompleted(DownloadingPackage pkg) {
+        CompletableFuture<DownloadingPackage> future = new CompletableFuture<>();
+        ScheduledFuture<?> check = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (pkg.isCompleted()) {
+                    future.complete(pkg);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // stop checking once completed, or cancelled by the caller
+        future.whenComplete((result, error) -> check.cancel(false));
+        return future;
+    }
+
+}
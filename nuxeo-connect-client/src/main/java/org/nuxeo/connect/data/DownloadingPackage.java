@@ -18,6 +18,8 @@
 
 package org.nuxeo.connect.data;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.nuxeo.connect.update.Package;
 
 /**
@@ -55,4 +57,50 @@ public interface DownloadingPackage extends DownloadablePackage {
      */
     boolean isServerError();
 
+    /**
+     * @return the number of bytes downloaded so far
+     * @since 1.8.2
+     */
+    default long getDownloadedBytes() {
+        return getSourceSize() * getDownloadProgress() / 100;
+    }
+
+    /**
+     * @return the current download throughput in bytes per second, 0 if unknown or not downloading
+     * @since 1.8.2
+     */
+    default long getDownloadRate() {
+        return 0;
+    }
+
+    /**
+     * @return the estimated time until the end of the download in seconds, -1 if unknown
+     * @since 1.8.2
+     */
+    default long getEstimatedTimeRemaining() {
+        if (isCompleted()) {
+            return 0;
+        }
+        long rate = getDownloadRate();
+        if (rate <= 0 || getSourceSize() <= 0) {
+            return -1;
+        }
+        return Math.max(0, getSourceSize() - getDownloadedBytes()) / rate;
+    }
+
+    /**
+     * Returns a future completed with this package once its download process is terminated, successfully or not.
+     * <p>
+     * The default implementation checks {@link #isCompleted()} periodically from a shared scheduler thread, without
+     * blocking a thread per package. Implementations able to notify their completion should override it.
+     *
+     * @since 1.8.2
+     */
+    default CompletableFuture<DownloadingPackage> whenCompleted() {
+        if (isCompleted()) {
+            return CompletableFuture.completedFuture(this);
+        }
+        return DownloadCompletionPoller.whenCompleted(this);
+    }
+
 }
@@ -2,50 +2,26 @@ package org.nuxeo.connect.data;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.nuxeo.connect.data.marshaling.JSONExportMethod;
 import org.nuxeo.connect.data.marshaling.JSONExportableField;
 
 public class IntrospectionHelper {
 
-    protected static Map<String, Map<String,Object>> readDataStructures = new HashMap<String, Map<String,Object>>();
+    /**
+     * @deprecated since 1.8.2, the data structures are cached by {@link JSONDataCodec}
+     */
+    @Deprecated
+    protected static Map<String, Map<String,Object>> readDataStructures = new ConcurrentHashMap<>();
 
     // JAVA 2 JSON
 
+    @SuppressWarnings("unchecked")
     public static Map<String, Object> getDataToSerialize(AbstractJSONSerializableData targetInstance) {
-
-        Map<String, Object> dataStructure = readDataStructures.get(targetInstance.getClass().getName());
-        if (dataStructure==null) {
-            dataStructure = new HashMap<String, Object>();
-            fetchDataStructureToSerialize(dataStructure, targetInstance.getClass());
-            readDataStructures.put(targetInstance.getClass().getName(), dataStructure);
-        }
-
-        Map<String, Object> data = new HashMap<String, Object>();
-
-        for (String key : dataStructure.keySet()) {
-            Object fieldOrMethod = dataStructure.get(key);
-            if (fieldOrMethod instanceof Method) {
-                Method method = (Method) fieldOrMethod;
-                try {
-                    data.put(key, method.invoke(targetInstance, (Object[])null));
-                }
-                catch (Exception e) {
-                    // NOP
-                }
-            } else if (fieldOrMethod instanceof Field) {
-                Field field = (Field) fieldOrMethod;
-                try {
-                    data.put(key, field.get(targetInstance));
-                }
-                catch (Exception e) {
-                    // NOP
-                }
-            }
-        }
-        return data;
+        Class<AbstractJSONSerializableData> klass = (Class<AbstractJSONSerializableData>) targetInstance.getClass();
+        return JSONDataCodec.of(klass).export(targetInstance);
     }
 
     protected static void fetchDataStructureToSerialize(Map<String, Object> data, Class<?> klass) {
@@ -78,7 +54,7 @@ public class IntrospectionHelper {
 
     // JSON 2 JAVA
 
-    protected static Map<String, Map<String,Object>> writeDataStructures = new HashMap<String, Map<String,Object>>();
+    protected static Map<String, Map<String,Object>> writeDataStructures = new ConcurrentHashMap<>();
 
 
 
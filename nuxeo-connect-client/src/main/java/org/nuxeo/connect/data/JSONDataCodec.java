@@ -0,0 +1,281 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.nuxeo.connect.data.marshaling.JSONExportMethod;
+import org.nuxeo.connect.data.marshaling.JSONExportableField;
+import org.nuxeo.connect.data.marshaling.JSONImportMethod;
+
+/**
+ * JSON marshaling of a Data Transfer Object class, driven by its {@link JSONImportMethod}, {@link JSONExportMethod}
+ * and {@link JSONExportableField} annotations.
+ * <p>
+ * The annotations are introspected once per class, when the codec is first requested through {@link #of(Class)}; the
+ * resulting accessors are {@link MethodHandle}s, so that loading and serializing an object no longer goes through
+ * reflection.
+ * <p>
+ * The codecs follow the historical behavior of {@link AbstractJSONSerializableData#doLoadFromJSON}: the import
+ * methods, then the fields not handled by an import method, are applied once per class of the hierarchy (some import
+ * methods depend on the result of others, such as the name and the dependencies of a package), and a member that
+ * cannot be imported or exported is ignored.
+ *
+ * @since 1.8.2
+ */
+public class JSONDataCodec<T> {
+
+    protected static final ConcurrentMap<Class<?>, JSONDataCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    protected static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    protected static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    protected static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    static {
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(char.class, Character.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(double.class, Double.class);
+    }
+
+    /**
+     * A JSON key bound to a setter or a getter.
+     */
+    protected static class Accessor {
+
+        protected final String name;
+
+        protected final Class<?> type;
+
+        protected final MethodHandle handle;
+
+        protected Accessor(String name, Class<?> type, MethodHandle handle) {
+            this.name = name;
+            this.type = type;
+            this.handle = handle;
+        }
+
+    }
+
+    protected final Class<T> klass;
+
+    protected final MethodHandle constructor;
+
+    protected final int importPasses;
+
+    protected final List<Accessor> importers = new ArrayList<>();
+
+    protected final List<Accessor> exporters = new ArrayList<>();
+
+    protected JSONDataCodec(Class<T> klass) {
+        this.klass = klass;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle ctor;
+        try {
+            ctor = lookup.findConstructor(klass, MethodType.methodType(void.class))
+                         .asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            ctor = null;
+        }
+        constructor = ctor;
+
+        int passes = 0;
+        for (Class<?> c = klass; c != null; c = c.getSuperclass()) {
+            passes++;
+        }
+        importPasses = passes;
+
+        // import methods, then fields not handled by an import method, declared by the class itself
+        List<String> importMethodNames = new ArrayList<>();
+        for (Method method : klass.getDeclaredMethods()) {
+            JSONImportMethod annotation = method.getAnnotation(JSONImportMethod.class);
+            if (annotation != null && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                importMethodNames.add(annotation.name());
+                try {
+                    importers.add(new Accessor(annotation.name(), method.getParameterTypes()[0],
+                            lookup.unreflect(method).asType(SETTER_TYPE)));
+                } catch (IllegalAccessException e) {
+                    // NOP
+                }
+            }
+        }
+        for (Field field : klass.getDeclaredFields()) {
+            if (field.getAnnotation(JSONExportableField.class) != null && !importMethodNames.contains(field.getName())
+                    && !Modifier.isStatic(field.getModifiers())) {
+                try {
+                    importers.add(new Accessor(field.getName(), field.getType(),
+                            lookup.unreflectSetter(field).asType(SETTER_TYPE)));
+                } catch (IllegalAccessException e) {
+                    // NOP
+                }
+            }
+        }
+
+        // exportable fields and methods of the whole hierarchy, subclasses overriding their parents' keys
+        Map<String, Accessor> exported = new LinkedHashMap<>();
+        collectExporters(lookup, klass, exported);
+        exporters.addAll(exported.values());
+    }
+
+    protected static void collectExporters(MethodHandles.Lookup lookup, Class<?> klass,
+            Map<String, Accessor> exported) {
+        if (klass.getSuperclass() != null) {
+            collectExporters(lookup, klass.getSuperclass(), exported);
+        }
+        for (Field field : klass.getDeclaredFields()) {
+            if (field.getAnnotation(JSONExportableField.class) != null && !Modifier.isStatic(field.getModifiers())) {
+                try {
+                    exported.put(field.getName(), new Accessor(field.getName(), field.getType(),
+                            lookup.unreflectGetter(field).asType(GETTER_TYPE)));
+                } catch (IllegalAccessException e) {
+                    exported.remove(field.getName());
+                }
+            }
+        }
+        for (Method method : klass.getDeclaredMethods()) {
+            JSONExportMethod annotation = method.getAnnotation(JSONExportMethod.class);
+            if (annotation != null && method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())) {
+                try {
+                    exported.put(annotation.name(), new Accessor(annotation.name(), method.getReturnType(),
+                            lookup.unreflect(method).asType(GETTER_TYPE)));
+                } catch (IllegalAccessException e) {
+                    exported.remove(annotation.name());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the codec of the given class, introspected on first call
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JSONDataCodec<T> of(Class<T> klass) {
+        return (JSONDataCodec<T>) CODECS.computeIfAbsent(klass, JSONDataCodec::new);
+    }
+
+    public Class<T> getTargetClass() {
+        return klass;
+    }
+
+    /**
+     * Creates a new instance of the target class and loads the given JSON data into it.
+     */
+    public T load(JSONObject data) throws JSONException {
+        if (constructor == null) {
+            throw new JSONException("No accessible default constructor for " + klass.getName());
+        }
+        T instance;
+        try {
+            instance = klass.cast(constructor.invokeExact());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new JSONException(e);
+        }
+        return load(data, instance);
+    }
+
+    /**
+     * Loads the given JSON data into the given instance of the target class.
+     */
+    public T load(JSONObject data, T instance) {
+        for (int i = 0; i < importPasses; i++) {
+            for (Accessor importer : importers) {
+                Object value = data.opt(importer.name);
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    importer.handle.invokeExact((Object) instance, coerce(value, importer.type));
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    // NOP
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return the values to serialize, by JSON key
+     */
+    public Map<String, Object> export(T instance) {
+        Map<String, Object> data = new HashMap<>();
+        for (Accessor exporter : exporters) {
+            try {
+                data.put(exporter.name, exporter.handle.invokeExact((Object) instance));
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // NOP
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Applies the widening conversions reflection would apply to a boxed primitive value.
+     */
+    protected static Object coerce(Object value, Class<?> type) {
+        if (!type.isPrimitive() || value.getClass() == WRAPPERS.get(type)) {
+            return value;
+        }
+        boolean fromByte = value instanceof Byte;
+        boolean fromShortOrChar = fromByte || value instanceof Short || value instanceof Character;
+        boolean fromInt = fromShortOrChar || value instanceof Integer;
+        boolean fromLong = fromInt || value instanceof Long;
+        if (value instanceof Character) {
+            value = Integer.valueOf((Character) value);
+        }
+        if (type == short.class && fromByte) {
+            return ((Number) value).shortValue();
+        } else if (type == int.class && fromShortOrChar) {
+            return ((Number) value).intValue();
+        } else if (type == long.class && fromInt) {
+            return ((Number) value).longValue();
+        } else if (type == float.class && fromLong) {
+            return ((Number) value).floatValue();
+        } else if (type == double.class && (fromLong || value instanceof Float)) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IllegalArgumentException(value.getClass().getName() + " cannot be converted to " + type);
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.nuxeo.connect.update.PackageDependency;
+
+/**
+ * {@link PackageDescriptor} decoding its heavy fields (texts and dependencies) from JSON on first access only.
+ * <p>
+ * The identification fields (id, name, version, type, target platforms...) are decoded right away, which is enough
+ * for most package list operations.
+ *
+ * @since 1.8.2
+ */
+public class LazyPackageDescriptor extends PackageDescriptor {
+
+    /**
+     * The JSON keys decoded on first access.
+     */
+    protected static final List<String> LAZY_KEYS = Arrays.asList("description", "title", "license", "licenseUrl",
+            "dependencies", "optionalDependencies", "conflicts", "provides");
+
+    /**
+     * The JSON keys the lazy fields depend on: the dependencies are fixed according to the name and target platforms.
+     */
+    protected static final List<String> LAZY_DEPENDENT_KEYS = Arrays.asList("name", "targetPlatforms");
+
+    /**
+     * The JSON data of the lazy fields, null once decoded.
+     */
+    protected JSONObject lazyData;
+
+    protected volatile boolean materialized;
+
+    /**
+     * The error raised when decoding the lazy fields, if any, so that each access fails instead of seeing empty
+     * fields.
+     */
+    protected JSONException materializeError;
+
+    protected LazyPackageDescriptor() {
+        super();
+    }
+
+    public static LazyPackageDescriptor fromJSON(JSONObject data) throws JSONException {
+        List<String> eagerKeys = new ArrayList<>();
+        List<String> lazyKeys = new ArrayList<>(LAZY_DEPENDENT_KEYS);
+        for (String key : data.keySet()) {
+            if (LAZY_KEYS.contains(key)) {
+                lazyKeys.add(key);
+            } else {
+                eagerKeys.add(key);
+            }
+        }
+        PackageDescriptor eager = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class,
+                new JSONObject(data, eagerKeys.toArray(new String[0])));
+        LazyPackageDescriptor pkg = new LazyPackageDescriptor();
+        pkg.errorMessage = eager.errorMessage;
+        pkg.classifier = eager.classifier;
+        pkg.name = eager.name;
+        pkg.vendor = eager.vendor;
+        pkg.packageState = eager.packageState;
+        pkg.targetPlatforms = eager.targetPlatforms;
+        pkg.targetPlatformRange = eager.targetPlatformRange;
+        pkg.targetPlatformName = eager.targetPlatformName;
+        pkg.type = eager.type;
+        pkg.version = eager.version;
+        pkg.sourceDigest = eager.sourceDigest;
+        pkg.sourceUrl = eager.sourceUrl;
+        pkg.sourceSize = eager.sourceSize;
+        pkg.commentsNumber = eager.commentsNumber;
+        pkg.downloadsCount = eager.downloadsCount;
+        pkg.rating = eager.rating;
+        pkg.supportsHotReload = eager.supportsHotReload;
+        pkg.subscriptionRequired = eager.subscriptionRequired;
+        pkg.owner = eager.owner;
+        if (lazyKeys.size() > LAZY_DEPENDENT_KEYS.size()) {
+            pkg.lazyData = new JSONObject(data, lazyKeys.toArray(new String[0]));
+        } else {
+            // nothing to decode later, except the dependencies implied by the target platforms
+            pkg.dependencies = eager.dependencies;
+            pkg.materialized = true;
+        }
+        return pkg;
+    }
+
+    public static LazyPackageDescriptor fromJSON(String data) throws JSONException {
+        return fromJSON(new JSONObject(data));
+    }
+
+    /**
+     * @return true if the heavy fields have been decoded
+     */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    /**
+     * Decodes the heavy fields, if not done yet.
+     *
+     * @throws IllegalStateException if the heavy fields cannot be decoded, on each call
+     */
+    protected void materialize() {
+        if (!materialized) {
+            decode();
+        }
+        if (materializeError != null) {
+            throw new IllegalStateException("Unable to decode package " + getId(), materializeError);
+        }
+    }
+
+    protected synchronized void decode() {
+        if (materialized) {
+            return;
+        }
+        try {
+            PackageDescriptor lazy = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, lazyData);
+            description = lazy.description;
+            title = lazy.title;
+            license = lazy.license;
+            licenseUrl = lazy.licenseUrl;
+            dependencies = lazy.dependencies;
+            optionalDependencies = lazy.optionalDependencies;
+            conflicts = lazy.conflicts;
+            provides = lazy.provides;
+        } catch (JSONException e) {
+            materializeError = e;
+        } finally {
+            lazyData = null;
+            materialized = true;
+        }
+    }
+
+    @Override
+    public JSONObject asJSON() {
+        materialize();
+        return super.asJSON();
+    }
+
+    @Override
+    public PackageDependency[] getConflicts() {
+        materialize();
+        return super.getConflicts();
+    }
+
+    @Override
+    public void setConflicts(PackageDependency[] conflicts) {
+        materialize();
+        super.setConflicts(conflicts);
+    }
+
+    @Override
+    public String getConflictsAsString() {
+        materialize();
+        return super.getConflictsAsString();
+    }
+
+    @Override
+    public PackageDependency[] getDependencies() {
+        materialize();
+        return super.getDependencies();
+    }
+
+    @Override
+    public void setDependencies(PackageDependency[] dependencies) {
+        materialize();
+        super.setDependencies(dependencies);
+    }
+
+    @Override
+    public String getDependenciesAsString() {
+        materialize();
+        return super.getDependenciesAsString();
+    }
+
+    @Override
+    public PackageDependency[] getOptionalDependencies() {
+        materialize();
+        return super.getOptionalDependencies();
+    }
+
+    @Override
+    public void setOptionalDependencies(PackageDependency[] optionalDependencies) {
+        materialize();
+        super.setOptionalDependencies(optionalDependencies);
+    }
+
+    @Override
+    public String getOptionalDependenciesAsString() {
+        materialize();
+        return super.getOptionalDependenciesAsString();
+    }
+
+    @Override
+    public PackageDependency[] getProvides() {
+        materialize();
+        return super.getProvides();
+    }
+
+    @Override
+    public void setProvides(PackageDependency[] provides) {
+        materialize();
+        super.setProvides(provides);
+    }
+
+    @Override
+    public String getProvidesAsString() {
+        materialize();
+        return super.getProvidesAsString();
+    }
+
+    @Override
+    public String getDescription() {
+        materialize();
+        return super.getDescription();
+    }
+
+    @Override
+    public void setDescription(String description) {
+        materialize();
+        super.setDescription(description);
+    }
+
+    @Override
+    public String getLicenseType() {
+        materialize();
+        return super.getLicenseType();
+    }
+
+    @Override
+    public void setLicense(String license) {
+        materialize();
+        super.setLicense(license);
+    }
+
+    @Override
+    public String getLicenseUrl() {
+        materialize();
+        return super.getLicenseUrl();
+    }
+
+    @Override
+    public void setLicenseUrl(String licenseUrl) {
+        materialize();
+        super.setLicenseUrl(licenseUrl);
+    }
+
+    @Override
+    public String getTitle() {
+        materialize();
+        return super.getTitle();
+    }
+
+    @Override
+    public void setTitle(String title) {
+        materialize();
+        super.setTitle(title);
+    }
+
+    @Override
+    public void setName(String name) {
+        materialize();
+        super.setName(name);
+    }
+
+    @Override
+    public void setTargetPlatformsAsJSON(JSONArray array) throws JSONException {
+        materialize();
+        super.setTargetPlatformsAsJSON(array);
+    }
+
+}
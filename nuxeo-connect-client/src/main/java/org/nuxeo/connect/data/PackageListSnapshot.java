@@ -0,0 +1,450 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.io.FileUtils;
+import org.nuxeo.connect.update.PackageDependency;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageType;
+import org.nuxeo.connect.update.PackageVersionRange;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * Compact binary snapshot of a list of packages, used as an alternative to the JSON package list cache files.
+ * <p>
+ * All the strings are stored once in a string table, the versions and dependency ranges are stored pre-parsed, and an
+ * offset index gives access to each package. The snapshot is read through a memory-mapped file: a package is only
+ * decoded when it is accessed in the returned list.
+ * <p>
+ * A snapshot can record the length and last modification time of the file it was built from, so that a snapshot left
+ * over by a previous content of that file is not read in place of the current one.
+ * <p>
+ * Layout (big-endian):
+ *
+ * <pre>
+ * int magic, int format version, int package count, int string count, long source length, long source last modified
+ * int[package count] package offsets
+ * int[string count] string offsets
+ * strings: int length, UTF-8 bytes
+ * packages: see {@link #writePackage(DataOutputStream, DownloadablePackage, Map)}
+ * </pre>
+ *
+ * @since 1.8.2
+ */
+public class PackageListSnapshot {
+
+    public static final int MAGIC = 0x4E58504B; // NXPK
+
+    public static final int FORMAT_VERSION = 1;
+
+    protected static final int HEADER_SIZE = 32;
+
+    protected static final int NULL = -1;
+
+    protected static final int FLAG_SUPPORTS_HOT_RELOAD = 1;
+
+    protected static final int FLAG_SUBSCRIPTION_REQUIRED = 1 << 1;
+
+    private PackageListSnapshot() {
+        // helper class
+    }
+
+    /**
+     * Writes the given packages to the given file, without recording any source file.
+     *
+     * @see #write(List, File, long, long)
+     */
+    public static void write(List<? extends DownloadablePackage> pkgs, File file) throws IOException {
+        write(pkgs, file, NULL, NULL);
+    }
+
+    /**
+     * Writes the given packages to the given file. The file is written aside then moved, so that readers never see a
+     * partial snapshot.
+     *
+     * @param sourceLength the length of the file the packages were read from
+     * @param sourceLastModified the last modification time of the file the packages were read from
+     * @see #read(File, long, long)
+     */
+    public static void write(List<? extends DownloadablePackage> pkgs, File file, long sourceLength,
+            long sourceLastModified) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] offsets = new int[pkgs.size()];
+        try (DataOutputStream out = new DataOutputStream(records)) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = out.size();
+                writePackage(out, pkgs.get(i), strings);
+            }
+        }
+        String[] table = new String[strings.size()];
+        strings.forEach((string, index) -> table[index] = string);
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        int[] stringOffsets = new int[table.length];
+        int stringsStart = HEADER_SIZE + 4 * offsets.length + 4 * table.length;
+        try (DataOutputStream out = new DataOutputStream(stringData)) {
+            for (int i = 0; i < table.length; i++) {
+                stringOffsets[i] = stringsStart + out.size();
+                byte[] bytes = table[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        int recordsStart = stringsStart + stringData.size();
+
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (OutputStream os = Files.newOutputStream(tmpFile.toPath());
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(offsets.length);
+                out.writeInt(table.length);
+                out.writeLong(sourceLength);
+                out.writeLong(sourceLastModified);
+                for (int offset : offsets) {
+                    out.writeInt(recordsStart + offset);
+                }
+                for (int offset : stringOffsets) {
+                    out.writeInt(offset);
+                }
+                stringData.writeTo(out);
+                records.writeTo(out);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    /**
+     * Maps the given snapshot file in memory.
+     * <p>
+     * The mapping is released once the returned list is garbage collected. On Windows, the file cannot be replaced or
+     * deleted until then.
+     *
+     * @return an unmodifiable list decoding the packages on access
+     * @throws IOException if the file cannot be read or is not a snapshot in a supported format
+     */
+    public static List<DownloadablePackage> read(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(buffer);
+    }
+
+    /**
+     * Maps the given snapshot file in memory, if it was built from a source file of the given length and last
+     * modification time.
+     *
+     * @return an unmodifiable list decoding the packages on access
+     * @throws IOException if the file cannot be read, is not a snapshot in a supported format or was built from another
+     *             source content
+     * @see #read(File)
+     */
+    public static List<DownloadablePackage> read(File file, long sourceLength, long sourceLastModified)
+            throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        List<DownloadablePackage> pkgs = read(buffer);
+        if (buffer.getLong(16) != sourceLength || buffer.getLong(24) != sourceLastModified) {
+            throw new IOException("Package list snapshot does not match its source");
+        }
+        return pkgs;
+    }
+
+    /**
+     * @return an unmodifiable list decoding the packages on access
+     * @throws IOException if the buffer does not hold a snapshot in a supported format
+     */
+    public static List<DownloadablePackage> read(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a package list snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported package list snapshot version: " + buffer.getInt(4));
+        }
+        int count = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        if (count < 0 || stringCount < 0 || HEADER_SIZE + 4L * (count + stringCount) > buffer.limit()) {
+            throw new IOException("Corrupted package list snapshot");
+        }
+        return new SnapshotList(buffer, count, stringCount);
+    }
+
+    /**
+     * Writes a package as:
+     *
+     * <pre>
+     * string name, classifier, title, description, vendor, license, licenseUrl, owner, type, sourceDigest, sourceUrl,
+     *        targetPlatformRange, targetPlatformName, errorMessage, packageState
+     * int commentsNumber, downloadsCount, rating, flags
+     * long sourceSize
+     * version
+     * string[] targetPlatforms
+     * dependency[] dependencies, optionalDependencies, conflicts, provides
+     * </pre>
+     *
+     * where a string is an index in the string table, a version is {@code int major} (or -1 if null),
+     * {@code int minor, int patch, string classifier, byte snapshot}, an array is its length (or -1 if null) followed
+     * by its elements and a dependency is {@code string name, version min, version max}. Null strings are written as
+     * -1.
+     */
+    protected static void writePackage(DataOutputStream out, DownloadablePackage pkg, Map<String, Integer> strings)
+            throws IOException {
+        writeString(out, pkg.getName(), strings);
+        writeString(out, pkg.getClassifier(), strings);
+        writeString(out, pkg.getTitle(), strings);
+        writeString(out, pkg.getDescription(), strings);
+        writeString(out, pkg.getVendor(), strings);
+        writeString(out, pkg.getLicenseType(), strings);
+        writeString(out, pkg.getLicenseUrl(), strings);
+        writeString(out, pkg.getOwner(), strings);
+        writeString(out, pkg.getType() == null ? null : pkg.getType().getValue(), strings);
+        writeString(out, pkg.getSourceDigest(), strings);
+        writeString(out, pkg.getSourceUrl(), strings);
+        writeString(out, pkg.getTargetPlatformRange(), strings);
+        writeString(out, pkg.getTargetPlatformName(), strings);
+        writeString(out, pkg instanceof AbstractJSONSerializableData
+                ? ((AbstractJSONSerializableData) pkg).getErrorMessage() : null, strings);
+        writeString(out, pkg.getPackageState().getLabel(), strings);
+        out.writeInt(pkg.getCommentsNumber());
+        out.writeInt(pkg.getDownloadsCount());
+        out.writeInt(pkg.getRating());
+        out.writeInt((pkg.supportsHotReload() ? FLAG_SUPPORTS_HOT_RELOAD : 0)
+                | (pkg.hasSubscriptionRequired() ? FLAG_SUBSCRIPTION_REQUIRED : 0));
+        out.writeLong(pkg.getSourceSize());
+        writeVersion(out, pkg.getVersion(), strings);
+        String[] targetPlatforms = pkg.getTargetPlatforms();
+        out.writeInt(targetPlatforms == null ? NULL : targetPlatforms.length);
+        if (targetPlatforms != null) {
+            for (String targetPlatform : targetPlatforms) {
+                writeString(out, targetPlatform, strings);
+            }
+        }
+        writeDependencies(out, pkg.getDependencies(), strings);
+        writeDependencies(out, pkg.getOptionalDependencies(), strings);
+        writeDependencies(out, pkg.getConflicts(), strings);
+        writeDependencies(out, pkg.getProvides(), strings);
+    }
+
+    protected static void writeString(DataOutputStream out, String string, Map<String, Integer> strings)
+            throws IOException {
+        out.writeInt(string == null ? NULL : strings.computeIfAbsent(string, k -> strings.size()));
+    }
+
+    protected static void writeVersion(DataOutputStream out, Version version, Map<String, Integer> strings)
+            throws IOException {
+        if (version == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(version.major());
+        out.writeInt(version.minor());
+        out.writeInt(version.patch());
+        writeString(out, version.classifier(), strings);
+        out.writeBoolean(version.isSnapshot());
+    }
+
+    protected static void writeDependencies(DataOutputStream out, PackageDependency[] dependencies,
+            Map<String, Integer> strings) throws IOException {
+        out.writeInt(dependencies == null ? NULL : dependencies.length);
+        if (dependencies != null) {
+            for (PackageDependency dependency : dependencies) {
+                writeString(out, dependency.getName(), strings);
+                PackageVersionRange range = dependency.getVersionRange();
+                writeVersion(out, range == null ? null : range.getMinVersion(), strings);
+                writeVersion(out, range == null ? null : range.getMaxVersion(), strings);
+            }
+        }
+    }
+
+    /**
+     * List of the packages of a snapshot, decoding each package on first access.
+     */
+    protected static class SnapshotList extends AbstractList<DownloadablePackage> implements RandomAccess {
+
+        protected final ByteBuffer buffer;
+
+        protected final int size;
+
+        protected final AtomicReferenceArray<DownloadablePackage> packages;
+
+        protected final AtomicReferenceArray<String> strings;
+
+        protected SnapshotList(ByteBuffer buffer, int size, int stringCount) {
+            this.buffer = buffer;
+            this.size = size;
+            packages = new AtomicReferenceArray<>(size);
+            strings = new AtomicReferenceArray<>(stringCount);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public DownloadablePackage get(int index) {
+            DownloadablePackage pkg = packages.get(index);
+            if (pkg == null) {
+                pkg = new Decoder(buffer.getInt(HEADER_SIZE + 4 * index)).readPackage();
+                packages.compareAndSet(index, null, pkg);
+                pkg = packages.get(index);
+            }
+            return pkg;
+        }
+
+        protected String getString(int index) {
+            if (index == NULL) {
+                return null;
+            }
+            String string = strings.get(index);
+            if (string == null) {
+                int offset = buffer.getInt(HEADER_SIZE + 4 * size + 4 * index);
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + 4);
+                view.get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings.compareAndSet(index, null, string);
+            }
+            return string;
+        }
+
+        /**
+         * Reads a package record with absolute reads, so that several packages can be decoded concurrently.
+         */
+        protected class Decoder {
+
+            protected int position;
+
+            protected Decoder(int position) {
+                this.position = position;
+            }
+
+            protected int readInt() {
+                int value = buffer.getInt(position);
+                position += 4;
+                return value;
+            }
+
+            protected String readString() {
+                return getString(readInt());
+            }
+
+            protected PackageDescriptor readPackage() {
+                PackageDescriptor pkg = new PackageDescriptor();
+                pkg.name = readString();
+                pkg.classifier = readString();
+                pkg.title = readString();
+                pkg.description = readString();
+                pkg.vendor = readString();
+                pkg.license = readString();
+                pkg.licenseUrl = readString();
+                pkg.owner = readString();
+                String type = readString();
+                pkg.type = type == null ? null : PackageType.getByValue(type);
+                pkg.sourceDigest = readString();
+                pkg.sourceUrl = readString();
+                pkg.targetPlatformRange = readString();
+                pkg.targetPlatformName = readString();
+                pkg.errorMessage = readString();
+                pkg.packageState = PackageState.getByLabel(readString());
+                pkg.commentsNumber = readInt();
+                pkg.downloadsCount = readInt();
+                pkg.rating = readInt();
+                int flags = readInt();
+                pkg.supportsHotReload = (flags & FLAG_SUPPORTS_HOT_RELOAD) != 0;
+                pkg.subscriptionRequired = (flags & FLAG_SUBSCRIPTION_REQUIRED) != 0;
+                pkg.sourceSize = buffer.getLong(position);
+                position += 8;
+                pkg.version = readVersion();
+                int nbTargetPlatforms = readInt();
+                if (nbTargetPlatforms != NULL) {
+                    pkg.targetPlatforms = new String[nbTargetPlatforms];
+                    for (int i = 0; i < nbTargetPlatforms; i++) {
+                        pkg.targetPlatforms[i] = readString();
+                    }
+                }
+                pkg.dependencies = readDependencies();
+                pkg.optionalDependencies = readDependencies();
+                pkg.conflicts = readDependencies();
+                pkg.provides = readDependencies();
+                return pkg;
+            }
+
+            protected Version readVersion() {
+                int major = readInt();
+                if (major == NULL) {
+                    return null;
+                }
+                int minor = readInt();
+                int patch = readInt();
+                Version version = new Version(major, minor, patch, readString());
+                version.setSnapshot(buffer.get(position++) != 0);
+                return version;
+            }
+
+            protected PackageDependency[] readDependencies() {
+                int nbDependencies = readInt();
+                if (nbDependencies == NULL) {
+                    return null;
+                }
+                List<PackageDependency> dependencies = new ArrayList<>(nbDependencies);
+                for (int i = 0; i < nbDependencies; i++) {
+                    String name = readString();
+                    Version min = readVersion();
+                    Version max = readVersion();
+                    PackageVersionRange range = min == null && max == null ? PackageVersionRange.ANY
+                            : new PackageVersionRange(min, max);
+                    dependencies.add(new PackageDependency(name, range));
+                }
+                return dependencies.toArray(new PackageDependency[nbDependencies]);
+            }
+
+        }
+
+    }
+
+}
@@ -44,4 +44,35 @@ public interface ConnectDownloadManager {
      */
     DownloadingPackage getDownloadingPackage(String packageId);
 
+    /**
+     * Registers a listener notified of the progress of the downloads, as an alternative to polling
+     * {@link #listDownloadingPackages()}.
+     * <p>
+     * The default implementation does not support listeners.
+     *
+     * @throws UnsupportedOperationException if this download manager does not notify listeners
+     * @since 1.8.2
+     */
+    default void addDownloadListener(DownloadListener listener) {
+        throw new UnsupportedOperationException("Download listeners are not supported by " + getClass().getName());
+    }
+
+    /**
+     * The default implementation does nothing, as no listener can be registered.
+     *
+     * @since 1.8.2
+     */
+    default void removeDownloadListener(DownloadListener listener) {
+        // no listener registered
+    }
+
+    /**
+     * @return a value changing whenever a download is started, completed or removed, or null if not tracked
+     * @see org.nuxeo.connect.packages.PackageSource#getRevision()
+     * @since 1.8.2
+     */
+    default Object getRevision() {
+        return null;
+    }
+
 }
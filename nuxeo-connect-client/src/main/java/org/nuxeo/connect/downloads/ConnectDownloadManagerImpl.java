@@ -19,16 +19,21 @@ package org.nuxeo.connect.downloads;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.connect.NuxeoConnectClient;
 import org.nuxeo.connect.connector.service.ConnectGatewayComponent;
 import org.nuxeo.connect.data.DownloadingPackage;
@@ -42,16 +47,121 @@ import org.nuxeo.connect.data.PackageDescriptor;
  */
 public class ConnectDownloadManagerImpl implements ConnectDownloadManager {
 
+    protected static final Log log = LogFactory.getLog(ConnectDownloadManagerImpl.class);
+
+    /**
+     * @deprecated since 1.8.2, the pending downloads are no longer bounded
+     */
+    @Deprecated
     public static final int PENDING_DOWNLOAD_CAPACITY = 80;
 
     public static final String NUXEO_TMP_DIR_PROPERTY = "nuxeo.tmp.dir";
 
-    protected BlockingQueue<Runnable> pendingDownloadTasks = new ArrayBlockingQueue<>(PENDING_DOWNLOAD_CAPACITY);
+    /**
+     * Maximum number of packages downloaded concurrently, the other ones waiting in queue.
+     *
+     * @since 1.8.2
+     */
+    public static final String DOWNLOAD_PARALLELISM_PROPERTY = "org.nuxeo.connect.download.parallelism";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_DOWNLOAD_PARALLELISM = "5";
+
+    /**
+     * Maximum number of downloads waiting in queue, unbounded if 0.
+     *
+     * @since 1.8.2
+     */
+    public static final String DOWNLOAD_QUEUE_CAPACITY_PROPERTY = "org.nuxeo.connect.download.queue.capacity";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_DOWNLOAD_QUEUE_CAPACITY = "0";
+
+    /**
+     * What to do with a download when the queue is full: {@value #REJECTION_POLICY_ABORT} to fail it, or
+     * {@value #REJECTION_POLICY_CALLER_RUNS} to run it in the calling thread.
+     *
+     * @since 1.8.2
+     */
+    public static final String DOWNLOAD_REJECTION_POLICY_PROPERTY = "org.nuxeo.connect.download.rejectionPolicy";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String REJECTION_POLICY_ABORT = "abort";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String REJECTION_POLICY_CALLER_RUNS = "callerRuns";
+
+    /**
+     * Whether to download in virtual threads, ignored if the JVM does not support them.
+     *
+     * @since 1.8.2
+     */
+    public static final String DOWNLOAD_VIRTUAL_THREADS_PROPERTY = "org.nuxeo.connect.download.virtualThreads";
+
+    protected BlockingQueue<Runnable> pendingDownloadTasks = new LinkedBlockingQueue<>(getQueueCapacity());
+
+    protected ThreadPoolExecutor tpexec = newExecutor(getParallelism(), pendingDownloadTasks);
+
+    protected Map<String, LocalDownloadingPackage> downloadingPackages = new ConcurrentHashMap<>();
 
-    protected ThreadPoolExecutor tpexec = new ThreadPoolExecutor(0, 5, 0L, TimeUnit.SECONDS, pendingDownloadTasks,
-            new DaemonThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+    /**
+     * Store of the already downloaded packages, null if disabled.
+     *
+     * @see DownloadStore#STORE_DIR_PROPERTY
+     * @since 1.8.2
+     */
+    protected final DownloadStore store = DownloadStore.fromProperties();
 
-    protected Map<String, LocalDownloadingPackage> downloadingPackages = new HashMap<>();
+    /**
+     * Incremented each time a download is started, completed or removed.
+     *
+     * @since 1.8.2
+     */
+    protected final AtomicLong revision = new AtomicLong();
+
+    /**
+     * @since 1.8.2
+     */
+    protected final List<DownloadListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Forwards the notifications of the downloading packages to the registered {@link #listeners}.
+     *
+     * @since 1.8.2
+     */
+    protected final DownloadListener listenersDispatcher = new DownloadListener() {
+
+        @Override
+        public void downloadProgress(DownloadingPackage pkg) {
+            for (DownloadListener listener : listeners) {
+                try {
+                    listener.downloadProgress(pkg);
+                } catch (RuntimeException e) {
+                    log.warn("Download listener failed on " + pkg.getId(), e);
+                }
+            }
+        }
+
+        @Override
+        public void downloadCompleted(DownloadingPackage pkg) {
+            revision.incrementAndGet();
+            for (DownloadListener listener : listeners) {
+                try {
+                    listener.downloadCompleted(pkg);
+                } catch (RuntimeException e) {
+                    log.warn("Download listener failed on " + pkg.getId(), e);
+                }
+            }
+        }
+    };
 
     @Override
     public List<DownloadingPackage> listDownloadingPackages() {
@@ -60,11 +170,36 @@ public class ConnectDownloadManagerImpl implements ConnectDownloadManager {
         return result;
     }
 
+    /**
+     * Starts the download of the package, unless it is already in progress. The package is taken from the
+     * {@link #store} when it holds a verified copy.
+     *
+     * @return the downloading package, shared with the concurrent requests of the same package
+     */
     @Override
     public DownloadingPackage storeDownloadedBundle(PackageDescriptor descriptor) {
         LocalDownloadingPackage localPackage = new LocalDownloadingPackage(descriptor);
-        tpexec.execute(localPackage);
-        downloadingPackages.put(localPackage.getId(), localPackage);
+        localPackage.setDownloadListener(listenersDispatcher);
+        localPackage.setDownloadStore(store);
+        String id = localPackage.getId();
+        LocalDownloadingPackage inProgress = downloadingPackages.putIfAbsent(id, localPackage);
+        while (inProgress != null) {
+            if (!inProgress.isCompleted()) {
+                return inProgress;
+            }
+            if (downloadingPackages.replace(id, inProgress, localPackage)) {
+                break;
+            }
+            inProgress = downloadingPackages.putIfAbsent(id, localPackage);
+        }
+        revision.incrementAndGet();
+        try {
+            tpexec.execute(localPackage);
+        } catch (RejectedExecutionException e) {
+            downloadingPackages.remove(id, localPackage);
+            log.warn("Download queue is full, rejecting the download of " + id);
+            localPackage.fail("Too many pending downloads, retry later");
+        }
         return localPackage;
     }
 
@@ -83,34 +218,91 @@ public class ConnectDownloadManagerImpl implements ConnectDownloadManager {
     public void removeDownloadingPackage(String packageId) {
         LocalDownloadingPackage localPackage = downloadingPackages.remove(packageId);
         if (localPackage != null) {
+            revision.incrementAndGet();
+        }
+        if (localPackage != null && tpexec.remove(localPackage)) {
             // avoid later run if cancelled but not yet started
-            tpexec.remove(localPackage);
+            localPackage.cancel();
         }
     }
 
-    protected static class DaemonThreadFactory implements ThreadFactory {
+    /**
+     * @see #DOWNLOAD_PARALLELISM_PROPERTY
+     * @since 1.8.2
+     */
+    protected static int getParallelism() {
+        return NuxeoConnectClient.getIntProperty(DOWNLOAD_PARALLELISM_PROPERTY, DEFAULT_DOWNLOAD_PARALLELISM, 1);
+    }
 
-        private final ThreadGroup group;
+    /**
+     * @see #DOWNLOAD_QUEUE_CAPACITY_PROPERTY
+     * @since 1.8.2
+     */
+    protected static int getQueueCapacity() {
+        int capacity = NuxeoConnectClient.getIntProperty(DOWNLOAD_QUEUE_CAPACITY_PROPERTY,
+                DEFAULT_DOWNLOAD_QUEUE_CAPACITY, 0);
+        return capacity == 0 ? Integer.MAX_VALUE : capacity;
+    }
 
-        private final String namePrefix;
+    /**
+     * @see #DOWNLOAD_REJECTION_POLICY_PROPERTY
+     * @since 1.8.2
+     */
+    protected static RejectedExecutionHandler getRejectionPolicy() {
+        String policy = NuxeoConnectClient.getProperty(DOWNLOAD_REJECTION_POLICY_PROPERTY, REJECTION_POLICY_ABORT);
+        if (REJECTION_POLICY_CALLER_RUNS.equals(policy)) {
+            return new ThreadPoolExecutor.CallerRunsPolicy() {
+                @Override
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                    log.warn("Download queue is full, downloading " + r + " in the calling thread");
+                    super.rejectedExecution(r, e);
+                }
+            };
+        } else if (!REJECTION_POLICY_ABORT.equals(policy)) {
+            log.warn("Invalid value for " + DOWNLOAD_REJECTION_POLICY_PROPERTY + ": " + policy);
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
 
-        private static final AtomicInteger poolNumber = new AtomicInteger();
+    /**
+     * @return a factory of virtual threads if enabled and supported by the JVM, of daemon threads otherwise
+     * @see #DOWNLOAD_VIRTUAL_THREADS_PROPERTY
+     * @since 1.8.2
+     */
+    protected static ThreadFactory newThreadFactory() {
+        if (Boolean.parseBoolean(NuxeoConnectClient.getProperty(DOWNLOAD_VIRTUAL_THREADS_PROPERTY, "false"))) {
+            try {
+                // Thread.ofVirtual().name("ConnectDownloadThread-", 0).factory(), only available since Java 21
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class, long.class)
+                                      .invoke(builder, "ConnectDownloadThread-", 0L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not supported by this JVM, downloading in platform threads");
+            }
+        }
+        return new org.nuxeo.connect.DaemonThreadFactory("ConnectDownloadThread");
+    }
 
-        private final AtomicInteger threadNumber = new AtomicInteger();
+    /**
+     * @since 1.8.2
+     */
+    protected static ThreadPoolExecutor newExecutor(int parallelism, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS, queue,
+                newThreadFactory(), getRejectionPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-        public DaemonThreadFactory() {
-            SecurityManager s = System.getSecurityManager();
-            group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            namePrefix = "ConnectDownloadThread-" + poolNumber.incrementAndGet() + '-';
-        }
+    /**
+     * @deprecated since 1.8.2, use {@link org.nuxeo.connect.DaemonThreadFactory} instead
+     */
+    @Deprecated
+    protected static class DaemonThreadFactory extends org.nuxeo.connect.DaemonThreadFactory {
 
-        @Override
-        public Thread newThread(Runnable r) {
-            String name = namePrefix + threadNumber.incrementAndGet();
-            Thread t = new Thread(group, r, name);
-            t.setDaemon(true);
-            t.setPriority(Thread.NORM_PRIORITY);
-            return t;
+        public DaemonThreadFactory() {
+            super("ConnectDownloadThread");
         }
 
     }
@@ -119,4 +311,20 @@ public class ConnectDownloadManagerImpl implements ConnectDownloadManager {
     public LocalDownloadingPackage getDownloadingPackage(String packageId) {
         return downloadingPackages.get(packageId);
     }
+
+    @Override
+    public Object getRevision() {
+        return revision.get();
+    }
+
+    @Override
+    public void addDownloadListener(DownloadListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeDownloadListener(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.nuxeo.connect.data.DownloadingPackage;
+
+/**
+ * The downloads of a set of packages, to follow or await as a whole rather than polling each
+ * {@link DownloadingPackage}.
+ *
+ * @since 1.8.2
+ */
+public class DownloadBatch {
+
+    protected final List<DownloadingPackage> packages;
+
+    protected final List<String> notFound;
+
+    protected final CompletableFuture<List<DownloadingPackage>> completion;
+
+    /**
+     * @param downloads the downloading packages by id, null for the packages which were not found
+     */
+    public DownloadBatch(Map<String, DownloadingPackage> downloads) {
+        List<DownloadingPackage> pkgs = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, DownloadingPackage> entry : downloads.entrySet()) {
+            if (entry.getValue() == null) {
+                missing.add(entry.getKey());
+            } else {
+                pkgs.add(entry.getValue());
+            }
+        }
+        packages = Collections.unmodifiableList(pkgs);
+        notFound = Collections.unmodifiableList(missing);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[pkgs.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pkgs.get(i).whenCompleted();
+        }
+        completion = CompletableFuture.allOf(futures).thenApply(v -> packages);
+    }
+
+    /**
+     * @return the downloading packages, in the requested order
+     */
+    public List<DownloadingPackage> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return the ids of the packages which were not found on the Connect Server
+     */
+    public List<String> getNotFound() {
+        return notFound;
+    }
+
+    /**
+     * @return the overall download progress in %, weighted by the size of the packages when they are all known
+     */
+    public int getDownloadProgress() {
+        if (packages.isEmpty()) {
+            return 100;
+        }
+        long totalSize = 0;
+        long downloaded = 0;
+        int progress = 0;
+        boolean sized = true;
+        for (DownloadingPackage pkg : packages) {
+            int pkgProgress = pkg.isCompleted() ? 100 : pkg.getDownloadProgress();
+            progress += pkgProgress;
+            if (pkg.getSourceSize() > 0) {
+                totalSize += pkg.getSourceSize();
+                downloaded += pkg.getSourceSize() * pkgProgress / 100;
+            } else {
+                sized = false;
+            }
+        }
+        if (sized) {
+            return (int) (downloaded * 100 / totalSize);
+        }
+        return progress / packages.size();
+    }
+
+    /**
+     * @return true once the download process of all the packages is terminated, successfully or not
+     */
+    public boolean isCompleted() {
+        return completion.isDone();
+    }
+
+    /**
+     * @return the error messages of the terminated downloads which failed, by package id
+     */
+    public Map<String, String> getErrors() {
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (DownloadingPackage pkg : packages) {
+            if (pkg.isCompleted() && pkg.getErrorMessage() != null) {
+                errors.put(pkg.getId(), pkg.getErrorMessage());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return a future completed with the downloading packages once their download process is terminated
+     */
+    public CompletableFuture<List<DownloadingPackage>> whenCompleted() {
+        return completion.thenApply(pkgs -> pkgs);
+    }
+
+    /**
+     * Waits for the download process of all the packages to terminate.
+     *
+     * @return true if terminated, false if the timeout elapsed
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadBatch(packages=" + packages.size() + ", notFound=" + notFound + ", progress="
+                + getDownloadProgress() + "%)";
+    }
+
+}
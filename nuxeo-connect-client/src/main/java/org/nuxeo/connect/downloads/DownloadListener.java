@@ -0,0 +1,44 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import org.nuxeo.connect.data.DownloadingPackage;
+
+/**
+ * Listener notified of the progress of the package downloads, registered on the {@link ConnectDownloadManager}.
+ * <p>
+ * The notifications are sent from the download threads: implementations must be thread safe and return quickly.
+ *
+ * @since 1.8.2
+ */
+public interface DownloadListener {
+
+    /**
+     * Called while the package is downloading, at most every {@link LocalDownloadingPackage#PROGRESS_INTERVAL_MS}.
+     */
+    default void downloadProgress(DownloadingPackage pkg) {
+    }
+
+    /**
+     * Called once the download process of the package is terminated, successfully or not.
+     */
+    default void downloadCompleted(DownloadingPackage pkg) {
+    }
+
+}
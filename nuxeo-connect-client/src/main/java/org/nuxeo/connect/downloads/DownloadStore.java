@@ -0,0 +1,256 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.connect.NuxeoConnectClient;
+
+/**
+ * Content-addressed store of the downloaded packages, keyed by their verified source digest.
+ * <p>
+ * The store directory can be shared between the nodes of a cluster, so that a package is downloaded only once. The
+ * blobs are written atomically, and the least recently used ones are evicted once the store exceeds its maximum size,
+ * the last modification time of a blob being updated on each use.
+ *
+ * @since 1.8.2
+ */
+public class DownloadStore {
+
+    protected static final Log log = LogFactory.getLog(DownloadStore.class);
+
+    /**
+     * Directory of the store, disabled if not set.
+     */
+    public static final String STORE_DIR_PROPERTY = "org.nuxeo.connect.download.store.dir";
+
+    /**
+     * Maximum size of the store in MB.
+     */
+    public static final String STORE_MAX_SIZE_PROPERTY = "org.nuxeo.connect.download.store.maxSize";
+
+    public static final String DEFAULT_STORE_MAX_SIZE = "2048";
+
+    protected static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{32,128}");
+
+    protected static final String TMP_PREFIX = ".tmp-";
+
+    protected final Path root;
+
+    protected final long maxSize;
+
+    /**
+     * @param maxSize the maximum size of the store in bytes
+     */
+    public DownloadStore(Path root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the store configured by {@link #STORE_DIR_PROPERTY}, null if not configured
+     */
+    public static DownloadStore fromProperties() {
+        String dir = NuxeoConnectClient.getProperty(STORE_DIR_PROPERTY, null);
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        long maxSize = NuxeoConnectClient.getIntProperty(STORE_MAX_SIZE_PROPERTY, DEFAULT_STORE_MAX_SIZE, 1);
+        return new DownloadStore(Paths.get(dir.trim()), maxSize * 1024 * 1024);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the blob of the given digest, null if not in store or if the digest is not a hexadecimal digest
+     */
+    public File get(String digest) {
+        Path blob = getPath(digest);
+        if (blob == null || !Files.isRegularFile(blob)) {
+            return null;
+        }
+        try {
+            // keep track of the last use for eviction
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted meanwhile
+            return null;
+        }
+        return blob.toFile();
+    }
+
+    /**
+     * Adds a copy of the file to the store, the file content being expected to match the digest.
+     */
+    public void put(String digest, File file) throws IOException {
+        Path blob = getPath(digest);
+        if (blob == null) {
+            throw new IllegalArgumentException("Invalid digest: " + digest);
+        }
+        if (Files.isRegularFile(blob)) {
+            return;
+        }
+        Files.createDirectories(blob.getParent());
+        // never a hard link, the file being the working copy of the package
+        copy(file.toPath(), blob, null);
+        log.debug("Stored " + file + " as " + blob);
+        try {
+            evict();
+        } catch (IOException | DirectoryIteratorException e) {
+            // the blob is stored, it will be evicted later
+            log.warn("Could not evict blobs from download store " + root, e);
+        }
+    }
+
+    /**
+     * Removes the blob of the given digest, found corrupted.
+     */
+    public void remove(String digest) throws IOException {
+        Path blob = getPath(digest);
+        if (blob != null && Files.deleteIfExists(blob)) {
+            log.debug("Removed " + blob);
+        }
+    }
+
+    /**
+     * Removes the least recently used blobs until the store fits its maximum size.
+     * <p>
+     * The store can be shared by several nodes: the blobs removed by another node while walking the store are skipped.
+     */
+    protected synchronized void evict() throws IOException {
+        Map<Path, BasicFileAttributes> blobs = new HashMap<>();
+        long size = 0;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                    for (Path blob : files) {
+                        if (!blob.getFileName().toString().startsWith(TMP_PREFIX)) {
+                            BasicFileAttributes attributes = readAttributes(blob);
+                            if (attributes != null) {
+                                blobs.put(blob, attributes);
+                                size += attributes.size();
+                            }
+                        }
+                    }
+                } catch (NoSuchFileException e) {
+                    // removed meanwhile
+                }
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        // sorted on the times read once, as they can be updated meanwhile
+        List<Path> lru = new ArrayList<>(blobs.keySet());
+        lru.sort(Comparator.comparing(blob -> blobs.get(blob).lastModifiedTime()));
+        for (Path blob : lru) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (Files.deleteIfExists(blob)) {
+                log.debug("Evicted " + blob);
+            }
+            size -= blobs.get(blob).size();
+        }
+    }
+
+    /**
+     * @return the attributes of the given blob, null if removed meanwhile
+     */
+    protected BasicFileAttributes readAttributes(Path blob) throws IOException {
+        try {
+            return Files.readAttributes(blob, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the path of the blob, sharded by the first two characters of the digest, null if the digest is invalid
+     */
+    protected Path getPath(String digest) {
+        if (digest == null) {
+            return null;
+        }
+        String key = digest.toLowerCase();
+        if (!DIGEST_PATTERN.matcher(key).matches()) {
+            return null;
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Atomically replaces the target by a copy of the source, so that they never share their content.
+     *
+     * @param md the digest to update with the copied bytes, null if none
+     */
+    public static void copy(Path source, Path target, MessageDigest md) throws IOException {
+        Path tmp = target.resolveSibling(TMP_PREFIX + UUID.randomUUID());
+        try {
+            try (InputStream in = Files.newInputStream(source);
+                    OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW)) {
+                byte[] buffer = new byte[LocalDownloadingPackage.BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    if (md != null) {
+                        md.update(buffer, 0, n);
+                    }
+                    out.write(buffer, 0, n);
+                }
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+}
@@ -21,13 +21,27 @@
 package org.nuxeo.connect.downloads;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
@@ -70,14 +84,97 @@ public class LocalDownloadingPackage extends PackageDescriptor implements Downlo
      */
     public static final int SO_TIMEOUT_MS = 120000; // 120s
 
+    /**
+     * Number of automatic retries of a failed download, resuming after the bytes already received.
+     *
+     * @since 1.8.2
+     */
+    public static final String RETRIES_PROPERTY = "org.nuxeo.connect.download.retries";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_RETRIES = "3";
+
+    /**
+     * Delay in milliseconds before the first retry of a failed download, doubled on each retry.
+     *
+     * @since 1.8.2
+     */
+    public static final String RETRY_DELAY_PROPERTY = "org.nuxeo.connect.download.retryDelay";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_RETRY_DELAY = "1000";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String PART_FILE_SUFFIX = ".part";
+
+    /**
+     * Suffix of the file holding the validator of the {@link #getPartFile() part file} content, sent back as
+     * {@code If-Range} to resume it.
+     *
+     * @since 1.8.2
+     */
+    public static final String VALIDATOR_FILE_SUFFIX = ".validator";
+
+    /**
+     * Minimal interval between two progress notifications of a {@link DownloadListener}.
+     *
+     * @since 1.8.2
+     */
+    public static final long PROGRESS_INTERVAL_MS = 500;
+
+    protected static final int BUFFER_SIZE = 256 * 1024;
+
     protected static final Log log = LogFactory.getLog(LocalDownloadingPackage.class);
 
     protected File file = null;
 
-    private boolean completed = false;
+    private volatile boolean completed = false;
+
+    /**
+     * @since 1.8.2
+     */
+    protected final CompletableFuture<DownloadingPackage> completion = new CompletableFuture<>();
 
     private boolean serverError = false;
 
+    /**
+     * Digest of the content received so far, null if there is no source digest to verify.
+     *
+     * @since 1.8.2
+     */
+    protected MessageDigest digest;
+
+    private volatile boolean digestOk = false;
+
+    /**
+     * Bytes received so far, updated by the copy loop.
+     *
+     * @since 1.8.2
+     */
+    protected final AtomicLong downloadedBytes = new AtomicLong();
+
+    private volatile long transferStartNanos;
+
+    private volatile long transferStartBytes;
+
+    private long lastNotificationNanos;
+
+    /**
+     * @since 1.8.2
+     */
+    protected DownloadListener listener;
+
+    /**
+     * @since 1.8.2
+     */
+    protected DownloadStore store;
+
     public LocalDownloadingPackage(PackageDescriptor descriptor) {
         super(descriptor);
         sourceUrl = ConnectUrlConfig.getDownloadBaseUrl() + descriptor.getSourceUrl();
@@ -85,43 +182,318 @@ public class LocalDownloadingPackage extends PackageDescriptor implements Downlo
         sourceSize = descriptor.getSourceSize();
     }
 
+    /**
+     * @deprecated since 1.8.2, use {@link #saveStreamAsFile(InputStream, boolean)} on the {@link #getPartFile() part
+     *             file} instead
+     */
+    @Deprecated
     protected void saveStreamAsFile(InputStream in) throws IOException {
         ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
         String path = cdm.getDownloadedBundleLocalStorage();
         file = new File(path, getId());
-        OutputStream out = null;
-        try {
-            out = new FileOutputStream(file);
-            byte[] buffer = new byte[1024];
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                out.write(buffer, 0, read);
+        saveStreamAsFile(in, false);
+    }
+
+    /**
+     * Writes the stream to the current {@link #file}, from its start or after its current content, updating the
+     * {@link #digest} on the way.
+     *
+     * @since 1.8.2
+     */
+    protected void saveStreamAsFile(InputStream in, boolean append) throws IOException {
+        digest = newDigest(append);
+        if (!append) {
+            downloadedBytes.set(0);
+        }
+        transferStartBytes = downloadedBytes.get();
+        transferStartNanos = System.nanoTime();
+        lastNotificationNanos = transferStartNanos;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+                FileChannel target = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                updateDigest(digest, buffer);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                downloadedBytes.addAndGet(buffer.limit());
+                notifyProgress();
+                buffer.clear();
             }
-        } finally {
-            if (out != null) {
-                out.close();
+        }
+    }
+
+    /**
+     * @param includeFile whether to digest the current content of the {@link #file}, the received bytes being
+     *            appended to it
+     * @return a new digest matching the {@link #getSourceDigest() source digest}, null if there is none to verify
+     * @since 1.8.2
+     */
+    protected MessageDigest newDigest(boolean includeFile) throws IOException {
+        String algorithm = getDigestAlgorithm(sourceDigest);
+        if (algorithm == null) {
+            return null;
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5, SHA-1 and SHA-256 are available on every platform
+            throw new IllegalStateException(e);
+        }
+        if (includeFile && file.exists()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    updateDigest(md, buffer);
+                    buffer.clear();
+                }
             }
         }
+        return md;
+    }
+
+    /**
+     * Updates the digest, if any, with the remaining bytes of the buffer, leaving its position unchanged.
+     *
+     * @since 1.8.2
+     */
+    protected static void updateDigest(MessageDigest md, ByteBuffer buffer) {
+        if (md != null) {
+            buffer.mark();
+            md.update(buffer);
+            buffer.reset();
+        }
+    }
+
+    /**
+     * @return the algorithm of the given hexadecimal digest according to its length, null if unknown
+     * @since 1.8.2
+     */
+    protected static String getDigestAlgorithm(String hexDigest) {
+        if (hexDigest == null) {
+            return null;
+        }
+        switch (hexDigest.length()) {
+        case 32:
+            return "MD5";
+        case 40:
+            return "SHA-1";
+        case 64:
+            return "SHA-256";
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return the file receiving the content while downloading, kept on failure to resume the download later
+     * @since 1.8.2
+     */
+    protected File getPartFile() {
+        ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
+        return new File(cdm.getDownloadedBundleLocalStorage(), getId() + PART_FILE_SUFFIX);
+    }
+
+    /**
+     * @return the file holding the {@code ETag} or {@code Last-Modified} of the content of the part file
+     * @since 1.8.2
+     */
+    protected File getValidatorFile(File partFile) {
+        return new File(partFile.getPath() + VALIDATOR_FILE_SUFFIX);
+    }
+
+    /**
+     * @return the strong {@code ETag} of the response, or else its {@code Last-Modified}, null if none
+     * @since 1.8.2
+     */
+    protected static String getValidator(CloseableHttpResponse httpResponse) {
+        Header etag = httpResponse.getFirstHeader("ETag");
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = httpResponse.getFirstHeader("Last-Modified");
+        return lastModified == null ? null : lastModified.getValue();
+    }
+
+    /**
+     * Records the validator of the content about to be written to the part file, so that it is resumed only if it did
+     * not change on the server.
+     *
+     * @since 1.8.2
+     */
+    protected void saveValidator(File partFile, String validator) throws IOException {
+        File validatorFile = getValidatorFile(partFile);
+        if (validator == null) {
+            Files.deleteIfExists(validatorFile.toPath());
+        } else {
+            Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the validator recorded for the content of the part file, null if none
+     * @since 1.8.2
+     */
+    protected String readValidator(File partFile) throws IOException {
+        File validatorFile = getValidatorFile(partFile);
+        if (!validatorFile.isFile()) {
+            return null;
+        }
+        String validator = new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8).trim();
+        return validator.isEmpty() ? null : validator;
+    }
+
+    /**
+     * Deletes the part file and its validator, so that the next download starts from scratch.
+     *
+     * @since 1.8.2
+     */
+    protected void deletePartFile(File partFile) throws IOException {
+        Files.deleteIfExists(partFile.toPath());
+        Files.deleteIfExists(getValidatorFile(partFile).toPath());
     }
 
     @Override
     public int getDownloadProgress() {
-        if (file == null || !file.exists()) {
+        if (getSourceSize() == 0) {
             return 0;
         }
-        if (getSourceSize() == 0) {
+        return (int) Math.min(100, downloadedBytes.get() * 100 / getSourceSize());
+    }
+
+    @Override
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    /**
+     * @return the average throughput since the start of the current transfer, 0 once completed
+     */
+    @Override
+    public long getDownloadRate() {
+        long start = transferStartNanos;
+        long elapsed = System.nanoTime() - start;
+        if (completed || start == 0 || elapsed <= 0) {
             return 0;
         }
-        return (int) ((file.length() * 100) / getSourceSize());
+        return (downloadedBytes.get() - transferStartBytes) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    public void setDownloadListener(DownloadListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    public void setDownloadStore(DownloadStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Gets the package from the {@link #store} instead of downloading it, if it holds a blob of the source digest.
+     * The blob is copied, and digested on the way, so that a corrupted blob is removed from the store and downloaded
+     * again.
+     *
+     * @return true if restored
+     * @since 1.8.2
+     */
+    protected boolean restoreFromStore() {
+        if (store == null || getDigestAlgorithm(sourceDigest) == null) {
+            return false;
+        }
+        File blob = store.get(sourceDigest);
+        if (blob == null) {
+            return false;
+        }
+        if (sourceSize > 0 && blob.length() != sourceSize) {
+            log.warn(String.format("Ignoring %s for %s: size %s instead of %s", blob, getId(), blob.length(),
+                    sourceSize));
+            return false;
+        }
+        ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
+        File target = new File(cdm.getDownloadedBundleLocalStorage(), getId());
+        try {
+            MessageDigest md = newDigest(false);
+            DownloadStore.copy(blob.toPath(), target.toPath(), md);
+            String actualDigest = Hex.encodeHexString(md.digest());
+            if (!actualDigest.equalsIgnoreCase(sourceDigest)) {
+                log.warn(String.format("Ignoring %s for %s: digest %s instead of %s", blob, getId(), actualDigest,
+                        sourceDigest));
+                Files.delete(target.toPath());
+                store.remove(sourceDigest);
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("Could not get " + getId() + " from the download store, downloading it", e);
+            return false;
+        }
+        log.debug("Got " + getId() + " from the download store");
+        file = target;
+        downloadedBytes.set(target.length());
+        digestOk = true;
+        return true;
+    }
+
+    /**
+     * Adds the downloaded package to the {@link #store} once its digest is verified.
+     *
+     * @since 1.8.2
+     */
+    protected void saveToStore() {
+        if (store == null || !digestOk) {
+            return;
+        }
+        try {
+            store.put(sourceDigest, file);
+        } catch (IOException e) {
+            log.warn("Could not add " + getId() + " to the download store", e);
+        }
+    }
+
+    /**
+     * Notifies the {@link #listener} of the progress, at most every {@link #PROGRESS_INTERVAL_MS}.
+     *
+     * @since 1.8.2
+     */
+    protected void notifyProgress() {
+        if (listener == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastNotificationNanos >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MS)) {
+            lastNotificationNanos = now;
+            listener.downloadProgress(this);
+        }
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected void notifyCompleted() {
+        if (listener != null) {
+            listener.downloadCompleted(this);
+        }
     }
 
     public File getFile() {
         return file;
     }
 
+    /**
+     * @return true once the downloaded content has been verified against the {@link #getSourceDigest() source digest}
+     */
     @Override
     public boolean isDigestOk() {
-        return false;
+        return digestOk;
     }
 
     @Override
@@ -132,40 +504,35 @@ public class LocalDownloadingPackage extends PackageDescriptor implements Downlo
 
         try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
             setPackageState(PackageState.DOWNLOADING);
-            HttpGet method = new HttpGet(sourceUrl);
-            if (!sourceUrl.contains(ConnectUrlConfig.getBaseUrl() + "test")) { // for testing
-                Map<String, String> headers = SecurityHeaderGenerator.getHeaders();
-                for (String headerName : headers.keySet()) {
-                    method.addHeader(headerName, headers.get(headerName));
-                }
+            if (restoreFromStore()) {
+                registerDownloadedPackage();
+                setPackageState(PackageState.DOWNLOADED);
+                return;
             }
-            try (CloseableHttpResponse httpResponse = httpClient.execute(method)) {
-                int rc = httpResponse.getStatusLine().getStatusCode();
-                switch (rc) {
-                case HttpStatus.SC_OK:
-                    if (sourceSize == 0) {
-                        Header clheader = httpResponse.getFirstHeader("content-length");
-                        if (clheader != null) {
-                            sourceSize = Long.parseLong(clheader.getValue());
-                        }
-                    }
-                    InputStream in = httpResponse.getEntity().getContent();
-                    saveStreamAsFile(in);
-                    registerDownloadedPackage();
-                    setPackageState(PackageState.DOWNLOADED);
+            int retries = NuxeoConnectClient.getIntProperty(RETRIES_PROPERTY, DEFAULT_RETRIES, 0);
+            long delay = NuxeoConnectClient.getIntProperty(RETRY_DELAY_PROPERTY, DEFAULT_RETRY_DELAY, 0);
+            for (int attempt = 0;; attempt++) {
+                try {
+                    download(httpClient);
                     break;
-
-                case HttpStatus.SC_NOT_FOUND:
-                    throw new ConnectServerError(String.format("Package not found (%s).", rc));
-                case HttpStatus.SC_FORBIDDEN:
-                    throw new ConnectServerError(String.format("Access refused (%s).", rc));
-                case HttpStatus.SC_UNAUTHORIZED:
-                    throw new ConnectServerError(String.format("Registration required (%s).", rc));
-                default:
-                    serverError = true;
-                    throw new ConnectServerError(String.format("Connect server HTTP response code %s.", rc));
+                } catch (IOException | ConnectServerError e) {
+                    if (attempt >= retries || !(e instanceof IOException || serverError)) {
+                        throw e;
+                    }
+                    log.debug(String.format("Download of %s failed (%s), retrying in %sms", getId(), e.getMessage(),
+                            delay), e);
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                    delay *= 2;
                 }
             }
+            saveToStore();
+            registerDownloadedPackage();
+            setPackageState(PackageState.DOWNLOADED);
         } catch (IOException e) { // Expected SocketTimeoutException or ConnectTimeoutException
             serverError = true;
             setPackageState(PackageState.REMOTE);
@@ -177,11 +544,147 @@ public class LocalDownloadingPackage extends PackageDescriptor implements Downlo
             errorMessage = e.getMessage();
         } finally {
             ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
-            cdm.removeDownloadingPackage(getId());
+            if (cdm.getDownloadingPackage(getId()) == this) {
+                cdm.removeDownloadingPackage(getId());
+            }
             completed = true;
+            completion.complete(this);
+            notifyCompleted();
         }
     }
 
+    /**
+     * Downloads the package into its {@link #getPartFile() part file}, resuming after the already received bytes, then
+     * verifies its digest and atomically renames it to its final name.
+     * <p>
+     * The received bytes are only resumed if the server confirms, through {@code If-Range}, that the content did not
+     * change since they were received, or if a digest will verify the whole content. Otherwise they are discarded.
+     *
+     * @throws IOException on network failure, the received bytes being kept
+     * @throws ConnectServerError on unexpected HTTP response, {@link #isServerError()} telling whether it is worth
+     *             retrying, or if the content does not match the {@link #getSourceDigest() source digest}
+     * @since 1.8.2
+     */
+    protected void download(CloseableHttpClient httpClient) throws IOException, ConnectServerError {
+        serverError = false;
+        digest = null;
+        file = getPartFile();
+        long offset = file.length();
+        String validator = offset > 0 ? readValidator(file) : null;
+        if (sourceSize > 0 && offset > sourceSize
+                || offset > 0 && validator == null && getDigestAlgorithm(sourceDigest) == null) {
+            deletePartFile(file);
+            offset = 0;
+        }
+        downloadedBytes.set(offset);
+        HttpGet method = new HttpGet(sourceUrl);
+        if (!sourceUrl.contains(ConnectUrlConfig.getBaseUrl() + "test")) { // for testing
+            Map<String, String> headers = SecurityHeaderGenerator.getHeaders();
+            for (String headerName : headers.keySet()) {
+                method.addHeader(headerName, headers.get(headerName));
+            }
+        }
+        if (offset > 0) {
+            method.addHeader("Range", "bytes=" + offset + "-");
+            if (validator != null) {
+                method.addHeader("If-Range", validator);
+            }
+        }
+        try (CloseableHttpResponse httpResponse = httpClient.execute(method)) {
+            int rc = httpResponse.getStatusLine().getStatusCode();
+            switch (rc) {
+            case HttpStatus.SC_OK: // whole content, the range was not requested or was ignored
+                if (sourceSize == 0) {
+                    Header clheader = httpResponse.getFirstHeader("content-length");
+                    if (clheader != null) {
+                        sourceSize = Long.parseLong(clheader.getValue());
+                    }
+                }
+                saveValidator(file, getValidator(httpResponse));
+                saveStreamAsFile(httpResponse.getEntity().getContent(), false);
+                break;
+
+            case HttpStatus.SC_PARTIAL_CONTENT:
+                // Content-Range: bytes <first>-<last>/<total>
+                Header crheader = httpResponse.getFirstHeader("content-range");
+                String contentRange = crheader == null ? "" : crheader.getValue();
+                if (!contentRange.startsWith("bytes " + offset + "-")) {
+                    deletePartFile(file);
+                    throw new IOException("Unexpected content range: " + contentRange);
+                }
+                if (sourceSize == 0) {
+                    String total = contentRange.substring(contentRange.indexOf('/') + 1);
+                    if (!"*".equals(total)) {
+                        sourceSize = Long.parseLong(total);
+                    }
+                }
+                saveStreamAsFile(httpResponse.getEntity().getContent(), true);
+                break;
+
+            case HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE:
+                if (offset == sourceSize) {
+                    log.debug(getId() + " was already fully downloaded");
+                    digest = newDigest(true);
+                    break;
+                }
+                deletePartFile(file);
+                throw new IOException(String.format("Partial download of %s is not resumable (%s).", getId(), rc));
+            case HttpStatus.SC_NOT_FOUND:
+                deletePartFile(file);
+                throw new ConnectServerError(String.format("Package not found (%s).", rc));
+            case HttpStatus.SC_FORBIDDEN:
+                throw new ConnectServerError(String.format("Access refused (%s).", rc));
+            case HttpStatus.SC_UNAUTHORIZED:
+                throw new ConnectServerError(String.format("Registration required (%s).", rc));
+            default:
+                serverError = true;
+                throw new ConnectServerError(String.format("Connect server HTTP response code %s.", rc));
+            }
+        }
+        if (digest != null) {
+            String actualDigest = Hex.encodeHexString(digest.digest());
+            if (!actualDigest.equalsIgnoreCase(sourceDigest)) {
+                // corrupted, download again from scratch next time
+                deletePartFile(file);
+                throw new ConnectServerError(String.format("Digest mismatch for %s: expected %s but was %s.",
+                        getId(), sourceDigest, actualDigest));
+            }
+            digestOk = true;
+        } else {
+            log.debug("No digest to verify the download of " + getId());
+        }
+        Files.deleteIfExists(getValidatorFile(file).toPath());
+        File target = new File(file.getParentFile(), getId());
+        try {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        file = target;
+    }
+
+    /**
+     * Terminates the download process of this package, cancelled before it started.
+     *
+     * @since 1.8.2
+     */
+    protected void cancel() {
+        fail("Download cancelled");
+    }
+
+    /**
+     * Terminates the download process of this package with the given error, before it started.
+     *
+     * @since 1.8.2
+     */
+    protected void fail(String message) {
+        errorMessage = message;
+        completed = true;
+        completion.complete(this);
+        notifyCompleted();
+    }
+
     protected void registerDownloadedPackage() {
         PackageUpdateService pus = NuxeoConnectClient.getPackageUpdateService();
         try {
@@ -204,4 +707,9 @@ public class LocalDownloadingPackage extends PackageDescriptor implements Downlo
         return serverError;
     }
 
+    @Override
+    public CompletableFuture<DownloadingPackage> whenCompleted() {
+        return completion.thenApply(Function.identity());
+    }
+
 }
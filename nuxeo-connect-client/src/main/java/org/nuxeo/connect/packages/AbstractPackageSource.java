@@ -48,14 +48,18 @@ public abstract class AbstractPackageSource implements PackageSource {
     @Override
     public List<DownloadablePackage> listPackages(PackageType type, PlatformId currentTargetPlatform) {
         List<DownloadablePackage> all = listPackages();
-        return all.stream()
-                  .filter(pkg -> {
-                      // the TP filter only applies on remote packages
-                      return (pkg.getPackageState() != PackageState.REMOTE
-                              || TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(pkg, currentTargetPlatform))
-                              && (type == null || type.equals(pkg.getType()));
-                  })
-                  .collect(Collectors.toList());
+        return all.stream().filter(pkg -> accepts(pkg, type, currentTargetPlatform)).collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if {@link #listPackages(PackageType, PlatformId)} keeps the given package
+     * @since 1.8.2
+     */
+    public static boolean accepts(DownloadablePackage pkg, PackageType type, PlatformId currentTargetPlatform) {
+        // the TP filter only applies on remote packages
+        return (pkg.getPackageState() != PackageState.REMOTE
+                || TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(pkg, currentTargetPlatform))
+                && (type == null || type.equals(pkg.getType()));
     }
 
     @Override
@@ -51,6 +51,14 @@ public class DownloadingPackageSource extends AbstractPackageSource implements P
         return result;
     }
 
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    public Object getRevision() {
+        return NuxeoConnectClient.getDownloadManager().getRevision();
+    }
+
     @Override
     public DownloadablePackage getPackageById(String packageId) {
         ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
@@ -18,9 +18,13 @@
 
 package org.nuxeo.connect.packages;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -59,6 +63,25 @@ public class LocalPackageSource extends AbstractPackageSource implements Package
         return result;
     }
 
+    /**
+     * @return the digest of the packages registry content, updated on each install state change, or null if there is
+     *         none
+     * @since 1.8.2
+     */
+    @Override
+    public Object getRevision() {
+        File registry = NuxeoConnectClient.getPackageUpdateService().getRegistry();
+        if (registry == null) {
+            return null;
+        }
+        try {
+            return DigestUtils.sha256Hex(Files.readAllBytes(registry.toPath()));
+        } catch (IOException e) {
+            // not yet written
+            return null;
+        }
+    }
+
     @Override
     public LocalPackageAsDownloadablePackage getPackageById(String packageId) {
         PackageUpdateService pus = NuxeoConnectClient.getPackageUpdateService();
@@ -21,6 +21,7 @@ package org.nuxeo.connect.packages;
 import java.util.Comparator;
 
 import org.nuxeo.connect.update.Package;
+import org.nuxeo.connect.update.PackageType;
 
 /**
  * Compares {@link Package} by ID (name+version)
@@ -30,8 +31,10 @@ import org.nuxeo.connect.update.Package;
 public class PackageComparator implements Comparator<Package> {
     @Override
     public int compare(Package arg0, Package arg1) {
-        if (!arg0.getType().equals(arg1.getType())) {
-            return arg0.getType().compareTo(arg1.getType());
+        if (arg0.getType() != arg1.getType()) {
+            // packages without type last
+            return Comparator.nullsLast(Comparator.<PackageType> naturalOrder()).compare(arg0.getType(),
+                    arg1.getType());
         }
         if (!arg0.getName().equals(arg1.getName())) {
             return arg0.getName().compareToIgnoreCase(arg1.getName());
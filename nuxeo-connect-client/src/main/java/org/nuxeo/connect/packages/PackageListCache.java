@@ -21,11 +21,16 @@
 package org.nuxeo.connect.packages;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.connector.ConnectServerError;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.update.PackageType;
 
@@ -43,30 +48,153 @@ public class PackageListCache {
      */
     public static final String CONNECT_CLIENT_CACHE_MINUTES_PROPERTY = "org.nuxeo.ecm.connect.client.cache";
 
-    protected Map<String, PackageListCacheEntry> cache = new HashMap<>();
+    protected Map<String, PackageListCacheEntry> cache = new ConcurrentHashMap<>();
 
     // in minutes
     protected int cache_duration = 5;
 
+    /**
+     * @since 1.8.2
+     */
+    protected final StaleCacheRevalidator revalidator = new StaleCacheRevalidator("package list");
+
+    /**
+     * Loads in progress, by key.
+     *
+     * @since 1.8.2
+     */
+    protected final Map<String, CompletableFuture<List<DownloadablePackage>>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Cached packages by id, across all the keys.
+     *
+     * @since 1.8.2
+     */
+    protected final Map<String, PackageCacheEntry> idIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time packages are stored.
+     *
+     * @since 1.8.2
+     */
+    protected final AtomicLong revision = new AtomicLong();
+
     public PackageListCache() {
         String cacheParam = NuxeoConnectClient.getProperty(CONNECT_CLIENT_CACHE_MINUTES_PROPERTY, "5");
         cache_duration = Integer.parseInt(cacheParam);
     }
 
     public void add(List<DownloadablePackage> pkgs, String type) {
-        cache.put(type, new PackageListCacheEntry(pkgs));
+        PackageListCacheEntry entry = new PackageListCacheEntry(pkgs);
+        PackageListCacheEntry previous = cache.put(type, entry);
+        if (previous != null) {
+            for (PackageCacheEntry pkgEntry : previous.getPackageCacheEntries()) {
+                idIndex.remove(pkgEntry.getPackage().getId(), pkgEntry);
+            }
+        }
+        for (PackageCacheEntry pkgEntry : entry.getPackageCacheEntries()) {
+            index(pkgEntry);
+        }
+        revision.incrementAndGet();
     }
 
     /**
      * @since 1.4.18
      */
     public void add(DownloadablePackage pkg) {
-        PackageListCacheEntry packageListCacheEntry = cache.get(pkg.getType().toString());
-        if (packageListCacheEntry == null) {
-            packageListCacheEntry = new PackageListCacheEntry();
-            cache.put(pkg.getType().toString(), packageListCacheEntry);
+        PackageListCacheEntry packageListCacheEntry = cache.computeIfAbsent(pkg.getType().toString(),
+                k -> new PackageListCacheEntry());
+        PackageCacheEntry pkgEntry = new PackageCacheEntry(pkg);
+        packageListCacheEntry.add(pkgEntry);
+        index(pkgEntry);
+        revision.incrementAndGet();
+    }
+
+    /**
+     * @return a counter incremented each time packages are stored in this cache
+     * @since 1.8.2
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
+    /**
+     * @return true if at least one entry of this cache is expired
+     * @since 1.8.2
+     */
+    public boolean hasExpiredEntries() {
+        for (PackageListCacheEntry entry : cache.values()) {
+            if (entry.isExpired(cache_duration)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected void index(PackageCacheEntry pkgEntry) {
+        String id = pkgEntry.getPackage().getId();
+        if (id != null) {
+            idIndex.put(id, pkgEntry);
+        }
+    }
+
+    /**
+     * Loads the packages of the given key with the given loader and stores them in the cache. Concurrent calls for the
+     * same key share a single call to the loader: the first caller runs it while the others wait for its result.
+     *
+     * @param loader fetches the packages of the given key
+     * @return the loaded packages
+     * @throws ConnectServerError if the loader failed; nothing is stored in the cache in such case
+     * @since 1.8.2
+     */
+    public List<DownloadablePackage> load(String key, Callable<List<DownloadablePackage>> loader)
+            throws ConnectServerError {
+        CompletableFuture<List<DownloadablePackage>> future = new CompletableFuture<>();
+        CompletableFuture<List<DownloadablePackage>> pending = loading.putIfAbsent(key, future);
+        if (pending != null) {
+            return await(key, pending);
+        }
+        try {
+            // a load may have completed since the caller looked up the cache
+            PackageListCacheEntry entry = cache.get(key);
+            List<DownloadablePackage> pkgs;
+            if (entry != null && !entry.isExpired(cache_duration)) {
+                pkgs = entry.getPackages();
+            } else {
+                pkgs = loader.call();
+                add(pkgs, key);
+            }
+            future.complete(pkgs);
+            return new ArrayList<>(pkgs);
+        } catch (ConnectServerError | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) { // NOSONAR
+            ConnectServerError error = new ConnectServerError("Unable to load packages for " + key, e);
+            future.completeExceptionally(error);
+            throw error;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    protected List<DownloadablePackage> await(String key, CompletableFuture<List<DownloadablePackage>> pending)
+            throws ConnectServerError {
+        try {
+            // copy the list as it is shared with the other callers
+            return new ArrayList<>(pending.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectServerError("Interrupted while waiting for packages of " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectServerError) {
+                throw (ConnectServerError) e.getCause();
+            }
+            throw new ConnectServerError("Unable to load packages for " + key, e.getCause());
         }
-        packageListCacheEntry.getPackageCacheEntries().add(new PackageCacheEntry(pkg));
     }
 
     /**
@@ -80,21 +208,96 @@ public class PackageListCache {
         return entry.getPackages();
     }
 
+    /**
+     * Same as {@link #getFromCache(String)}, except that an expired entry is still returned if the
+     * stale-while-revalidate mode is enabled and the entry expired less than the max staleness ago. In such case, the
+     * entry is refreshed in background with the given loader, through {@link #load(String, Callable)} so that the
+     * refresh is shared with the concurrent loads of the same key.
+     *
+     * @param loader fetches the up-to-date packages of the given key from the server, bypassing any other cache, and
+     *            failing if they cannot be fetched
+     * @return an empty list if no entry in cache or if entry is expired and cannot be served
+     * @see StaleCacheRevalidator
+     * @since 1.8.2
+     */
+    public List<DownloadablePackage> getFromCache(String key, Callable<List<DownloadablePackage>> loader) {
+        List<DownloadablePackage> pkgs = getPackages(key, loader);
+        return pkgs == null ? new ArrayList<>() : pkgs;
+    }
+
+    /**
+     * Same as {@link #getFromCache(String, Callable)}, except that a cached empty list is told apart from a missing
+     * entry.
+     *
+     * @return the cached packages, possibly empty, or null if no entry in cache or if entry is expired and cannot be
+     *         served
+     * @since 1.8.2
+     */
+    public List<DownloadablePackage> getPackages(String key, Callable<List<DownloadablePackage>> loader) {
+        PackageListCacheEntry entry = getEntry(key, loader);
+        return entry == null ? null : entry.getPackages();
+    }
+
+    /**
+     * Looks up the packages with the given name in the entry of the given key, with the same expiration rules as
+     * {@link #getFromCache(String, Callable)}.
+     *
+     * @return the packages with the given name, sorted by version, or null if no entry in cache or if entry is expired
+     *         and cannot be served
+     * @since 1.8.2
+     */
+    public List<DownloadablePackage> getPackagesByName(String key, String name,
+            Callable<List<DownloadablePackage>> loader) {
+        PackageListCacheEntry entry = getEntry(key, loader);
+        return entry == null ? null : entry.getPackagesByName(name);
+    }
+
+    /**
+     * @return the entry of the given key, possibly empty, if it is either fresh or servable while being revalidated,
+     *         null otherwise
+     * @since 1.8.2
+     */
+    protected PackageListCacheEntry getEntry(String key, Callable<List<DownloadablePackage>> loader) {
+        PackageListCacheEntry entry = cache.get(key);
+        if (entry == null) {
+            revalidator.blockingMiss();
+            return null;
+        }
+        if (!entry.isExpired(cache_duration)) {
+            revalidator.freshHit();
+            return entry;
+        }
+        long staleness = System.currentTimeMillis() - entry.getTimeStamp() - cache_duration * 60 * 1000L;
+        if (!revalidator.canServeStale(staleness)) {
+            revalidator.blockingMiss();
+            return null;
+        }
+        revalidator.staleHit();
+        revalidator.revalidate(key, () -> load(key, loader));
+        return entry;
+    }
+
+    /**
+     * @return the stale-while-revalidate policy of this cache, holding its hit and miss counters
+     * @since 1.8.2
+     */
+    public StaleCacheRevalidator getRevalidator() {
+        return revalidator;
+    }
+
     /**
      * @since 1.4.18
      */
     public DownloadablePackage getPackageByID(String packageId) {
-        for (PackageListCacheEntry entry : cache.values()) {
-            for (PackageCacheEntry pkgEntry : entry.getPackageCacheEntries()) {
-                if (packageId.equals(pkgEntry.getPackage().getId())) {
-                    if (pkgEntry.isExpired(cache_duration)) {
-                        return null;
-                    }
-                    return pkgEntry.getPackage();
-                }
-            }
+        PackageCacheEntry pkgEntry = idIndex.get(packageId);
+        if (pkgEntry == null) {
+            return null;
+        }
+        if (pkgEntry.isExpired(cache_duration)) {
+            idIndex.remove(packageId, pkgEntry);
+            return null;
         }
-        return null;
+        return pkgEntry.getPackage();
     }
 
     /**
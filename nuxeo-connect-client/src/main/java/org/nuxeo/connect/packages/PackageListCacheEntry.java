@@ -21,15 +21,36 @@
 package org.nuxeo.connect.packages;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.update.Version;
 
 public class PackageListCacheEntry {
 
-    protected List<PackageCacheEntry> pkgEntries = new ArrayList<>();
+    /**
+     * @since 1.8.2
+     */
+    protected static final Comparator<DownloadablePackage> VERSION_ORDER = Comparator.comparing(
+            DownloadablePackage::getVersion, Comparator.nullsFirst(Comparator.<Version> naturalOrder()));
+
+    protected List<PackageCacheEntry> pkgEntries = new CopyOnWriteArrayList<>();
 
     protected long ts;
 
+    /**
+     * Packages by name, sorted by version. Built on first lookup, reset when a package is added. Both happen under the
+     * entry lock, so that a package added while the index is built is not left out of it.
+     *
+     * @since 1.8.2
+     */
+    protected volatile Map<String, List<DownloadablePackage>> nameIndex;
+
     /**
      * @since 1.4.21
      */
@@ -39,9 +60,11 @@ public class PackageListCacheEntry {
 
     public PackageListCacheEntry(List<DownloadablePackage> pkgs) {
         if (pkgs != null) {
+            List<PackageCacheEntry> entries = new ArrayList<>(pkgs.size());
             for (DownloadablePackage pkg : pkgs) {
-                pkgEntries.add(new PackageCacheEntry(pkg));
+                entries.add(new PackageCacheEntry(pkg));
             }
+            pkgEntries.addAll(entries);
             ts = System.currentTimeMillis();
         }
     }
@@ -53,6 +76,46 @@ public class PackageListCacheEntry {
         return pkgEntries;
     }
 
+    /**
+     * @since 1.8.2
+     */
+    public synchronized void add(PackageCacheEntry pkgEntry) {
+        pkgEntries.add(pkgEntry);
+        nameIndex = null;
+    }
+
+    /**
+     * @return the packages with the given name, sorted by version
+     * @since 1.8.2
+     */
+    public List<DownloadablePackage> getPackagesByName(String name) {
+        Map<String, List<DownloadablePackage>> index = nameIndex;
+        if (index == null) {
+            index = buildNameIndex();
+        }
+        List<DownloadablePackage> pkgs = index.get(name);
+        return pkgs == null ? Collections.emptyList() : Collections.unmodifiableList(pkgs);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected synchronized Map<String, List<DownloadablePackage>> buildNameIndex() {
+        Map<String, List<DownloadablePackage>> index = nameIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (PackageCacheEntry pkgEntry : pkgEntries) {
+                DownloadablePackage pkg = pkgEntry.getPackage();
+                index.computeIfAbsent(pkg.getName(), k -> new ArrayList<>()).add(pkg);
+            }
+            for (List<DownloadablePackage> pkgs : index.values()) {
+                pkgs.sort(VERSION_ORDER);
+            }
+            nameIndex = index;
+        }
+        return index;
+    }
+
     public long getTimeStamp() {
         return ts;
     }
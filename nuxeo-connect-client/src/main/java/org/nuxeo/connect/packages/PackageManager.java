@@ -21,12 +21,14 @@
 
 package org.nuxeo.connect.packages;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.nuxeo.connect.connector.ConnectServerError;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.downloads.DownloadBatch;
 import org.nuxeo.connect.packages.dependencies.DependencyException;
 import org.nuxeo.connect.packages.dependencies.DependencyResolution;
 import org.nuxeo.connect.packages.dependencies.DependencyResolver;
@@ -311,6 +313,26 @@ public interface PackageManager extends BasePackageManager {
      */
     List<DownloadingPackage> download(List<String> packageIds) throws ConnectServerError;
 
+    /**
+     * Get the Download descriptors for a given list of package ids, concurrently or in a single call to the Connect
+     * Server, and queue their download.
+     * <p>
+     * The default implementation calls {@link #download(List)}, the packages it does not return being not found.
+     *
+     * @return the downloads, to follow or await as a whole
+     * @since 1.8.2
+     */
+    default DownloadBatch downloadBatch(List<String> packageIds) throws ConnectServerError {
+        Map<String, DownloadingPackage> downloads = new LinkedHashMap<>();
+        for (String packageId : packageIds) {
+            downloads.put(packageId, null);
+        }
+        for (DownloadingPackage pkg : download(packageIds)) {
+            downloads.put(pkg.getId(), pkg);
+        }
+        return new DownloadBatch(downloads);
+    }
+
     /**
      * Start installation process via {@link PackageUpdateService}
      *
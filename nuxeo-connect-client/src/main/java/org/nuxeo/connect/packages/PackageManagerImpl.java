@@ -21,27 +21,37 @@
 
 package org.nuxeo.connect.packages;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.ResizableExecutor;
 import org.nuxeo.connect.connector.ConnectServerError;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.data.DownloadingPackage;
 import org.nuxeo.connect.downloads.ConnectDownloadManager;
+import org.nuxeo.connect.downloads.DownloadBatch;
 import org.nuxeo.connect.packages.dependencies.CUDFHelper;
 import org.nuxeo.connect.packages.dependencies.DependencyException;
 import org.nuxeo.connect.packages.dependencies.DependencyResolution;
@@ -87,6 +97,64 @@ public class PackageManagerImpl implements PackageManager {
 
     private PlatformId currentTargetPlatform;
 
+    /**
+     * The last built snapshot of the sources, null if invalidated.
+     *
+     * @since 1.8.2
+     */
+    protected volatile PackageUniverse universe;
+
+    /**
+     * @since 1.8.2
+     */
+    protected final AtomicLong universeVersion = new AtomicLong();
+
+    /**
+     * The snapshot of the sources pinned for the operation running in the current thread, if any.
+     *
+     * @since 1.8.2
+     */
+    protected final ThreadLocal<PackageUniverse[]> pinnedUniverse = new ThreadLocal<>();
+
+    /**
+     * Maximum number of install tasks validated or run concurrently by {@link #install(List, Map)}. Defaults to 1, the
+     * sequential installation through {@link #install(String, Map)}.
+     *
+     * @since 1.8.2
+     */
+    public static final String INSTALL_PARALLELISM = "org.nuxeo.connect.install.parallelism";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_INSTALL_PARALLELISM = "1";
+
+    /**
+     * Executor used to validate and run install tasks concurrently.
+     *
+     * @since 1.8.2
+     */
+    protected static final ResizableExecutor installExecutor = new ResizableExecutor("ConnectInstallThread");
+
+    /**
+     * Maximum number of dependency resolutions kept by {@link #resolveDependencies(List, List, List, PlatformId,
+     * boolean, boolean, boolean)} for identical requests on an unchanged package universe. A value of 0 disables the
+     * cache.
+     *
+     * @since 1.8.2
+     */
+    public static final String RESOLUTION_CACHE_SIZE = "org.nuxeo.connect.resolution.cache.size";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_RESOLUTION_CACHE_SIZE = "64";
+
+    /**
+     * @since 1.8.2
+     */
+    protected final ResolutionCache resolutionCache = new ResolutionCache(getResolutionCacheSize());
+
     @Override
     public List<PackageSource> getAllSources() {
         List<PackageSource> allSources = new ArrayList<>();
@@ -123,6 +191,72 @@ public class PackageManagerImpl implements PackageManager {
     @Override
     public void setCurrentTargetPlatform(PlatformId currentTargetPlatform) {
         this.currentTargetPlatform = currentTargetPlatform;
+        invalidateUniverse();
+    }
+
+    /**
+     * Returns the snapshot of the packages of all the sources, for the current target platform.
+     * <p>
+     * Within an operation {@link #pinUniverse() pinning} it, the same snapshot is returned. Otherwise, the last built
+     * snapshot is returned if the sources did not change since, or a new one is built.
+     *
+     * @since 1.8.2
+     */
+    public PackageUniverse getUniverse() {
+        PackageUniverse[] pinned = pinnedUniverse.get();
+        if (pinned != null && pinned[0] != null) {
+            return pinned[0];
+        }
+        PackageUniverse current = universe;
+        if (current == null || !current.isFor(currentTargetPlatform)
+                || !current.getStamp().equals(PackageUniverse.stamp(localSources, remoteSources))) {
+            current = new PackageUniverse(universeVersion.incrementAndGet(), currentTargetPlatform, localSources,
+                    remoteSources);
+            log.debug("Built " + current);
+            universe = current;
+            // resolutions computed from previous universes won't be reused
+            resolutionCache.clear();
+        }
+        if (pinned != null) {
+            pinned[0] = current;
+        }
+        return current;
+    }
+
+    /**
+     * Pins the {@link #getUniverse() universe} for the operation running in the current thread, so that it is neither
+     * checked nor rebuilt until {@link #unpinUniverse()}, unless {@link #invalidateUniverse() invalidated}.
+     *
+     * @return true if pinned by this call, false if already pinned by an enclosing operation
+     * @since 1.8.2
+     */
+    protected boolean pinUniverse() {
+        if (pinnedUniverse.get() != null) {
+            return false;
+        }
+        pinnedUniverse.set(new PackageUniverse[1]);
+        return true;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected void unpinUniverse() {
+        pinnedUniverse.remove();
+    }
+
+    /**
+     * Discards the {@link #getUniverse() universe}, to be called when the packages of a source changed.
+     *
+     * @since 1.8.2
+     */
+    public void invalidateUniverse() {
+        universe = null;
+        resolutionCache.clear();
+        PackageUniverse[] pinned = pinnedUniverse.get();
+        if (pinned != null) {
+            pinned[0] = null;
+        }
     }
 
     /**
@@ -139,6 +273,7 @@ public class PackageManagerImpl implements PackageManager {
                     + DEFAULT_DEPENDENCY_RESOLVER);
             resolver = new P2CUDFDependencyResolver(this);
         }
+        resolutionCache.clear();
     }
 
     public void resetSources() {
@@ -148,6 +283,7 @@ public class PackageManagerImpl implements PackageManager {
         if (cachedPackageList != null) {
             cachedPackageList.clear();
         }
+        invalidateUniverse();
     }
 
     /**
@@ -164,29 +300,19 @@ public class PackageManagerImpl implements PackageManager {
                 targetPlatforms = new String[] { null };
             }
             for (String tp : targetPlatforms) {
-                Map<String, DownloadablePackage> packagesById = packagesByIdAndTargetPlatform.get(tp);
-                if (packagesById == null) {
-                    packagesById = new HashMap<>();
-                    packagesByIdAndTargetPlatform.put(tp, packagesById);
-                }
-                String key = pkg.getId();
-                if (packagesById.containsKey(key)) {
-                    if (pkg.getVersion().greaterThan(packagesById.get(key).getVersion())) {
-                        packagesById.put(key, pkg);
-                    }
-                } else {
-                    packagesById.put(key, pkg);
-                }
+                Map<String, DownloadablePackage> packagesById = packagesByIdAndTargetPlatform.computeIfAbsent(tp,
+                        k -> new HashMap<>());
+                packagesById.merge(pkg.getId(), pkg,
+                        (previous, current) -> current.getVersion().greaterThan(previous.getVersion()) ? current
+                                : previous);
             }
         }
-        List<DownloadablePackage> result = new ArrayList<>();
+        // a package is kept once, even if it is the greatest version for several target platforms
+        Set<DownloadablePackage> merged = new LinkedHashSet<>();
         for (Map<String, DownloadablePackage> packagesById : packagesByIdAndTargetPlatform.values()) {
-            for (DownloadablePackage pkg : packagesById.values()) {
-                if (!result.contains(pkg)) {
-                    result.add(pkg);
-                }
-            }
+            merged.addAll(packagesById.values());
         }
+        List<DownloadablePackage> result = new ArrayList<>(merged);
         Collections.sort(result, new PackageComparator());
         return result;
     }
@@ -229,12 +355,14 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public Map<String, DownloadablePackage> getAllPackagesByID() {
-        return getAllPackagesByID(getAllSources(), null);
+        return new HashMap<>(getUniverse().getPackagesById());
     }
 
     @Override
     public Map<String, List<DownloadablePackage>> getAllPackagesByName() {
-        return getAllPackagesByName(getAllSources(), null);
+        Map<String, List<DownloadablePackage>> packagesByName = new HashMap<>();
+        getUniverse().getPackagesByName().forEach((name, pkgs) -> packagesByName.put(name, new ArrayList<>(pkgs)));
+        return packagesByName;
     }
 
     /**
@@ -271,41 +399,21 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> findLocalPackages(String packageName) {
-        List<DownloadablePackage> pkgs = new ArrayList<>();
-        for (PackageSource source : localSources) {
-            for (DownloadablePackage pkg : source.listPackages()) {
-                if (pkg.getName().equals(packageName)) {
-                    pkgs.add(pkg);
-                }
-            }
-        }
-        return pkgs;
+        return new ArrayList<>(getUniverse().getLocalPackagesByName(packageName));
     }
 
     @Override
     public List<Version> findLocalPackageVersions(String packageName) {
         List<Version> versions = new ArrayList<>();
-        for (PackageSource source : localSources) {
-            for (DownloadablePackage pkg : source.listPackages()) {
-                if (pkg.getName().equals(packageName)) {
-                    versions.add(pkg.getVersion());
-                }
-            }
+        for (DownloadablePackage pkg : getUniverse().getLocalPackagesByName(packageName)) {
+            versions.add(pkg.getVersion());
         }
         return versions;
     }
 
     @Override
     public List<Version> findLocalPackageInstalledVersions(String packageName) {
-        List<Version> versions = new ArrayList<>();
-        for (PackageSource source : localSources) {
-            for (DownloadablePackage pkg : source.listPackages()) {
-                if (pkg.getName().equals(packageName) && pkg.getPackageState().isInstalled()) {
-                    versions.add(pkg.getVersion());
-                }
-            }
-        }
-        return versions;
+        return getUniverse().getInstalledVersions(packageName);
     }
 
     @Override
@@ -373,15 +481,15 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<Version> getAvailableVersion(String pkgName, PackageVersionRange range, PlatformId targetPlatform) {
-        List<Version> versions = new ArrayList<>();
+        Set<Version> versions = new LinkedHashSet<>();
         for (PackageSource source : getAllSources()) {
             for (DownloadablePackage pkg : source.listPackagesByName(pkgName, targetPlatform)) {
-                if (range.matchVersion(pkg.getVersion()) && !versions.contains(pkg.getVersion())) {
+                if (range.matchVersion(pkg.getVersion())) {
                     versions.add(pkg.getVersion());
                 }
             }
         }
-        return versions;
+        return new ArrayList<>(versions);
     }
 
     @Override
@@ -401,6 +509,10 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listPackages(PackageType pkgType, PlatformId targetPlatform) {
+        PackageUniverse current = getUniverse();
+        if (current.isFor(targetPlatform)) {
+            return new ArrayList<>(current.getPackages(pkgType));
+        }
         return doMergePackages(getAllSources(), pkgType, targetPlatform);
     }
 
@@ -418,6 +530,7 @@ public class PackageManagerImpl implements PackageManager {
             } else {
                 remoteSources.add(source);
             }
+            invalidateUniverse();
         } else {
             log.warn("Already registered a package source named " + name);
         }
@@ -425,16 +538,7 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listInstalledPackages() {
-        List<DownloadablePackage> res = new ArrayList<>();
-        for (PackageSource source : localSources) {
-            for (DownloadablePackage pkg : source.listPackages()) {
-                if (pkg.getPackageState().isInstalled()) {
-                    res.add(pkg);
-                }
-            }
-        }
-        Collections.sort(res, new PackageComparator());
-        return res;
+        return new ArrayList<>(getUniverse().getInstalledPackages());
     }
 
     @Override
@@ -492,6 +596,10 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listRemotePackages(PackageType pkgType, PlatformId targetPlatform) {
+        PackageUniverse current = getUniverse();
+        if (current.isFor(targetPlatform)) {
+            return new ArrayList<>(current.getRemotePackages(pkgType));
+        }
         return doMergePackages(remoteSources, pkgType, targetPlatform);
     }
 
@@ -502,19 +610,7 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listLocalPackages(PackageType type) {
-        List<DownloadablePackage> result = new ArrayList<>();
-        List<String> pkgIds = new ArrayList<>();
-        for (PackageSource source : localSources) {
-            List<DownloadablePackage> pkgs = source.listPackages(type);
-            for (DownloadablePackage pkg : pkgs) {
-                if (!pkgIds.contains(pkg.getId())) {
-                    pkgIds.add(pkg.getId());
-                    result.add(pkg);
-                }
-            }
-        }
-        Collections.sort(result, new PackageComparator());
-        return result;
+        return new ArrayList<>(getUniverse().getLocalPackages(type));
     }
 
     @Override
@@ -534,26 +630,37 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listUpdatePackages(PackageType type, PlatformId targetPlatform) {
-        List<String> installedPackagesNames = listInstalledPackagesNames(type);
-        List<String> hotfixesNames = null;
-        if (type == null || type == PackageType.HOT_FIX) {
-            // list last version of available hot-fixes too, but always for the current target platform
-            hotfixesNames = listHotfixesNames(currentTargetPlatform, CUDFHelper.defaultAllowSNAPSHOT);
-            hotfixesNames.removeAll(installedPackagesNames);
+        boolean pinned = pinUniverse();
+        try {
+            List<String> installedPackagesNames = listInstalledPackagesNames(type);
+            List<String> hotfixesNames = null;
+            if (type == null || type == PackageType.HOT_FIX) {
+                // list last version of available hot-fixes too, but always for the current target platform
+                hotfixesNames = listHotfixesNames(currentTargetPlatform, CUDFHelper.defaultAllowSNAPSHOT);
+                hotfixesNames.removeAll(installedPackagesNames);
+            }
+            DependencyResolution resolution = resolveDependencies(hotfixesNames, null, installedPackagesNames,
+                    targetPlatform, CUDFHelper.defaultAllowSNAPSHOT);
+
+            List<String> toUpdateIds = resolution.getOrderedPackageIdsToInstall();
+            return toUpdateIds.stream().map(this::getPackage).collect(Collectors.toList());
+        } finally {
+            if (pinned) {
+                unpinUniverse();
+            }
         }
-        DependencyResolution resolution = resolveDependencies(hotfixesNames, null, installedPackagesNames,
-                targetPlatform, CUDFHelper.defaultAllowSNAPSHOT);
-
-        List<String> toUpdateIds = resolution.getOrderedPackageIdsToInstall();
-        List<DownloadablePackage> toUpdate = toUpdateIds.stream().map(this::getPackage).collect(Collectors.toList());
-
-        return toUpdate;
     }
 
     @Override
     public List<DownloadablePackage> listPrivatePackages(PackageType pkgType, PlatformId targetPlatform) {
-        List<DownloadablePackage> allPackages = getAllPackages(getAllSources(), pkgType, targetPlatform);
-        Collections.sort(allPackages, new PackageComparator());
+        List<DownloadablePackage> allPackages;
+        PackageUniverse current = getUniverse();
+        if (current.isFor(targetPlatform)) {
+            allPackages = current.getPackages(pkgType);
+        } else {
+            allPackages = getAllPackages(getAllSources(), pkgType, targetPlatform);
+            Collections.sort(allPackages, new PackageComparator());
+        }
         List<DownloadablePackage> allPrivatePackages = new ArrayList<>();
         for (DownloadablePackage downloadablePackage : allPackages) {
             if (downloadablePackage.getOwner() != null) {
@@ -571,21 +678,31 @@ public class PackageManagerImpl implements PackageManager {
     @Override
     public DownloadingPackage download(String packageId) throws ConnectServerError {
         ConnectRegistrationService crs = NuxeoConnectClient.getConnectRegistrationService();
-        return crs.getConnector().getDownload(packageId);
+        try {
+            return crs.getConnector().getDownload(packageId);
+        } finally {
+            invalidateUniverse();
+        }
     }
 
     @Override
     public List<DownloadingPackage> download(List<String> packageIds) throws ConnectServerError {
-        List<DownloadingPackage> downloadings = new ArrayList<>();
-        for (String packageId : packageIds) {
-            DownloadingPackage download = download(packageId);
-            if (download != null) {
-                downloadings.add(download);
-            } else {
-                log.error("Download failed for " + packageId);
-            }
+        return downloadBatch(packageIds).getPackages();
+    }
+
+    @Override
+    public DownloadBatch downloadBatch(List<String> packageIds) throws ConnectServerError {
+        ConnectRegistrationService crs = NuxeoConnectClient.getConnectRegistrationService();
+        DownloadBatch batch;
+        try {
+            batch = new DownloadBatch(crs.getConnector().getDownloadsById(packageIds));
+        } finally {
+            invalidateUniverse();
+        }
+        for (String packageId : batch.getNotFound()) {
+            log.error("Download failed for " + packageId);
         }
-        return downloadings;
+        return batch;
     }
 
     @Override
@@ -594,16 +711,191 @@ public class PackageManagerImpl implements PackageManager {
         LocalPackage pkg = pus.getPackage(packageId);
         Task installationTask = pkg.getInstallTask();
         installationTask.validate();
-        installationTask.run(params);
+        try {
+            installationTask.run(params);
+        } finally {
+            invalidateUniverse();
+        }
     }
 
+    /**
+     * Installs the given packages, in the given order, calling {@link #install(String, Map)} for each of them.
+     * <p>
+     * If {@link #INSTALL_PARALLELISM} is greater than 1, the packages are instead resolved up front and their install
+     * tasks are validated concurrently, ahead of their execution, without calling {@link #install(String, Map)}, so
+     * that subclasses overriding it must keep the parallel installation disabled. A task is run once the tasks of the
+     * packages it depends on completed, so that independent packages are installed concurrently, but a task requiring
+     * a restart is run alone, after all the previous ones. The first failure stops the installation once the running
+     * tasks completed, each task rolling back its own work on failure.
+     */
     @Override
     public void install(List<String> packageIds, Map<String, String> params) throws PackageException {
+        if (Math.min(getInstallParallelism(), packageIds.size()) <= 1) {
+            for (String packageId : packageIds) {
+                install(packageId, params);
+            }
+            return;
+        }
+        List<Task> tasks = getInstallTasks(packageIds);
+        try {
+            runInstallTasks(tasks, params);
+        } finally {
+            invalidateUniverse();
+        }
+    }
+
+    /**
+     * @return the install tasks of the given packages, resolved with one listing of the local packages
+     * @since 1.8.2
+     */
+    protected List<Task> getInstallTasks(List<String> packageIds) throws PackageException {
+        PackageUpdateService pus = NuxeoConnectClient.getPackageUpdateService();
+        Map<String, LocalPackage> localPackages = new HashMap<>();
+        for (LocalPackage pkg : pus.getPackages()) {
+            localPackages.put(pkg.getId(), pkg);
+        }
+        List<Task> tasks = new ArrayList<>(packageIds.size());
         for (String packageId : packageIds) {
-            install(packageId, params);
+            LocalPackage pkg = localPackages.get(packageId);
+            if (pkg == null) {
+                pkg = pus.getPackage(packageId);
+            }
+            if (pkg == null) {
+                throw new PackageException("Package not found: " + packageId);
+            }
+            tasks.add(pkg.getInstallTask());
+        }
+        return tasks;
+    }
+
+    /**
+     * Validates then runs the given install tasks on the {@link #getInstallExecutor() install executor}, in an order
+     * compatible with the dependencies of their packages.
+     *
+     * @since 1.8.2
+     */
+    protected void runInstallTasks(List<Task> tasks, Map<String, String> params) throws PackageException {
+        int size = tasks.size();
+        // the previous tasks each task depends on
+        List<List<Integer>> dependencies = new ArrayList<>(size);
+        boolean[] exclusive = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            List<Integer> taskDependencies = new ArrayList<>();
+            for (PackageDependency pkgDep : getAllDependencies(tasks.get(i).getPackage())) {
+                for (int j = 0; j < i; j++) {
+                    if (!taskDependencies.contains(j) && matchDependency(pkgDep, tasks.get(j).getPackage())) {
+                        taskDependencies.add(j);
+                    }
+                }
+            }
+            dependencies.add(taskDependencies);
+            exclusive[i] = tasks.get(i).isRestartRequired();
+        }
+
+        // completions of validations are tagged with negative indexes, the ones of runs with positive indexes
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(getInstallExecutor());
+        Throwable[] validationErrors = new Throwable[size];
+        Throwable[] runErrors = new Throwable[size];
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            completion.submit(() -> {
+                try {
+                    tasks.get(index).validate();
+                } catch (Throwable t) { // NOSONAR
+                    validationErrors[index] = t;
+                }
+                return -1 - index;
+            });
+        }
+        boolean[] validated = new boolean[size];
+        boolean[] started = new boolean[size];
+        boolean[] done = new boolean[size];
+        int running = size;
+        Throwable failure = null;
+        while (true) {
+            // start the tasks which are ready
+            int barrier = -1;
+            boolean previousDone = true;
+            for (int i = 0; i < size && failure == null; i++) {
+                if (!started[i] && validated[i] && (barrier < 0 || done[barrier]) && (!exclusive[i] || previousDone)
+                        && dependencies.get(i).stream().allMatch(j -> done[j])) {
+                    started[i] = true;
+                    if (validationErrors[i] != null) {
+                        failure = validationErrors[i];
+                        break;
+                    }
+                    int index = i;
+                    completion.submit(() -> {
+                        try {
+                            tasks.get(index).run(params);
+                        } catch (Throwable t) { // NOSONAR
+                            runErrors[index] = t;
+                        }
+                        return index;
+                    });
+                    running++;
+                }
+                previousDone &= done[i];
+                if (exclusive[i]) {
+                    barrier = i;
+                }
+            }
+            if (running == 0) {
+                break;
+            }
+            int index;
+            try {
+                index = completion.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PackageException("Interrupted while installing packages", e);
+            } catch (ExecutionException e) {
+                throw new PackageException(e.getCause());
+            }
+            running--;
+            if (index < 0) {
+                validated[-1 - index] = true;
+            } else {
+                done[index] = true;
+                if (failure == null) {
+                    failure = runErrors[index];
+                }
+            }
+        }
+        if (failure instanceof PackageException) {
+            throw (PackageException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new PackageException(failure);
         }
     }
 
+    /**
+     * @see #INSTALL_PARALLELISM
+     * @since 1.8.2
+     */
+    protected int getInstallParallelism() {
+        return NuxeoConnectClient.getIntProperty(INSTALL_PARALLELISM, DEFAULT_INSTALL_PARALLELISM, 1);
+    }
+
+    /**
+     * @see #RESOLUTION_CACHE_SIZE
+     * @since 1.8.2
+     */
+    protected int getResolutionCacheSize() {
+        return NuxeoConnectClient.getIntProperty(RESOLUTION_CACHE_SIZE, DEFAULT_RESOLUTION_CACHE_SIZE, 0);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected ExecutorService getInstallExecutor() {
+        return installExecutor.get(getInstallParallelism());
+    }
+
     /**
      * @deprecated Since 1.4.25. Unused.
      */
@@ -637,24 +929,21 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public DownloadablePackage getLocalPackage(String pkgId) {
-        List<DownloadablePackage> pkgs = listLocalPackages();
-        return getPkgInList(pkgs, pkgId);
+        return getUniverse().getLocalPackage(pkgId);
     }
 
     @Override
     public DownloadablePackage getRemotePackage(String pkgId) {
-        List<DownloadablePackage> pkgs = listRemotePackages();
-        return getPkgInList(pkgs, pkgId);
+        return getUniverse().getRemotePackage(pkgId);
     }
 
     @Override
     public DownloadablePackage getPackage(String pkgId) {
         // Merge is an issue for P2CUDFDependencyResolver
-        List<DownloadablePackage> pkgs = listAllPackages();
-        DownloadablePackage pkg = getPkgInList(pkgs, pkgId);
+        PackageUniverse current = getUniverse();
+        DownloadablePackage pkg = current.getPackage(pkgId);
         if (pkg == null) {
-            List<DownloadablePackage> studioPkgs = listAllStudioRemotePackages();
-            pkg = getPkgInList(studioPkgs, pkgId);
+            pkg = getPkgInList(current.getRemotePackages(PackageType.STUDIO), pkgId);
         }
         return pkg;
     }
@@ -680,14 +969,11 @@ public class PackageManagerImpl implements PackageManager {
     public List<DownloadablePackage> listRemoteOrLocalPackages(PackageType pkgType, PlatformId targetPlatform) {
         List<DownloadablePackage> result = new ArrayList<>();
         List<DownloadablePackage> all = listPackages(pkgType, targetPlatform);
-        List<DownloadablePackage> remotes = listRemotePackages(pkgType, targetPlatform);
+        Set<String> remoteIds = getIds(listRemotePackages(pkgType, targetPlatform));
         // Return only packages which are available on remote sources
         for (DownloadablePackage pkg : all) {
-            for (DownloadablePackage remote : remotes) {
-                if (remote.getId().equals(pkg.getId())) {
-                    result.add(pkg);
-                    break;
-                }
+            if (remoteIds.contains(pkg.getId())) {
+                result.add(pkg);
             }
         }
         return result;
@@ -699,18 +985,28 @@ public class PackageManagerImpl implements PackageManager {
         List<DownloadablePackage> local = listLocalPackages(PackageType.STUDIO);
         List<DownloadablePackage> result = new ArrayList<>();
         result.addAll(local);
-        REMOTE: for (DownloadablePackage rpkg : remote) {
-            for (DownloadablePackage lpkg : local) {
-                if (lpkg.getId().equals(rpkg.getId())) {
-                    continue REMOTE;
-                }
+        Set<String> localIds = getIds(local);
+        for (DownloadablePackage rpkg : remote) {
+            if (!localIds.contains(rpkg.getId())) {
+                result.add(rpkg);
             }
-            result.add(rpkg);
         }
         Collections.sort(result, new PackageComparator());
         return result;
     }
 
+    /**
+     * @return the ids of the given packages
+     * @since 1.8.2
+     */
+    protected Set<String> getIds(List<DownloadablePackage> pkgs) {
+        Set<String> ids = new HashSet<>(pkgs.size() * 2);
+        for (DownloadablePackage pkg : pkgs) {
+            ids.add(pkg.getId());
+        }
+        return ids;
+    }
+
     @Deprecated
     @Override
     public List<DownloadablePackage> listOnlyRemotePackages() {
@@ -730,14 +1026,23 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listOnlyRemotePackages(PackageType pkgType, PlatformId targetPlatform) {
-        List<DownloadablePackage> result = listRemotePackages(pkgType, targetPlatform);
-        List<DownloadablePackage> local = listLocalPackages(pkgType);
-        for (DownloadablePackage pkg : local) {
-            for (DownloadablePackage remote : result) {
-                if (remote.getName().equals(pkg.getName())) {
-                    result.remove(remote);
-                    break;
-                }
+        List<DownloadablePackage> remotes = listRemotePackages(pkgType, targetPlatform);
+        // each local package hides the first remaining remote package with the same name
+        Map<String, Deque<Integer>> remoteIndexesByName = new HashMap<>();
+        for (int i = 0; i < remotes.size(); i++) {
+            remoteIndexesByName.computeIfAbsent(remotes.get(i).getName(), k -> new ArrayDeque<>()).add(i);
+        }
+        boolean[] hidden = new boolean[remotes.size()];
+        for (DownloadablePackage pkg : listLocalPackages(pkgType)) {
+            Deque<Integer> indexes = remoteIndexesByName.get(pkg.getName());
+            if (indexes != null && !indexes.isEmpty()) {
+                hidden[indexes.poll()] = true;
+            }
+        }
+        List<DownloadablePackage> result = new ArrayList<>();
+        for (int i = 0; i < remotes.size(); i++) {
+            if (!hidden[i]) {
+                result.add(remotes.get(i));
             }
         }
         return result;
@@ -751,12 +1056,11 @@ public class PackageManagerImpl implements PackageManager {
     @Override
     public List<DownloadablePackage> listRemoteAssociatedStudioPackages() {
         List<DownloadablePackage> result = new ArrayList<>();
-        List<String> pkgIds = new ArrayList<>();
+        Set<String> pkgIds = new HashSet<>();
         for (PackageSource source : remoteSources) {
             List<DownloadablePackage> pkgs = source.listStudioPackages();
             for (DownloadablePackage pkg : pkgs) {
-                if (!pkgIds.contains(pkg.getId())) {
-                    pkgIds.add(pkg.getId());
+                if (pkgIds.add(pkg.getId())) {
                     result.add(pkg);
                 }
             }
@@ -769,6 +1073,7 @@ public class PackageManagerImpl implements PackageManager {
         for (PackageSource source : getAllSources()) {
             source.flushCache();
         }
+        invalidateUniverse();
     }
 
     @Override
@@ -825,14 +1130,33 @@ public class PackageManagerImpl implements PackageManager {
     public DependencyResolution resolveDependencies(List<String> pkgInstall, List<String> pkgRemove,
             List<String> pkgUpgrade, PlatformId targetPlatform, boolean allowSNAPSHOT, boolean doKeep,
             boolean isSubResolution) {
+        boolean pinned = pinUniverse();
         try {
+            ResolutionCache.Key key = null;
+            if (resolutionCache.isEnabled()) {
+                key = new ResolutionCache.Key(pkgInstall, pkgRemove, pkgUpgrade, targetPlatform, allowSNAPSHOT, doKeep,
+                        isSubResolution, getUniverse().getStamp());
+                DependencyResolution cached = resolutionCache.get(key);
+                if (cached != null) {
+                    log.debug("Reusing cached resolution");
+                    return cached;
+                }
+            }
             DependencyResolution resolution = resolver.resolve(pkgInstall, pkgRemove, pkgUpgrade, targetPlatform,
                     allowSNAPSHOT, doKeep, isSubResolution);
 
             log.debug(beforeAfterResolutionToString(resolution));
+            if (key != null && resolution.isOptimal()) {
+                // a resolution cut short by the solver timeout may be improved next time
+                resolutionCache.put(key, resolution);
+            }
             return resolution;
         } catch (DependencyException e) {
             return new DependencyResolution(e);
+        } finally {
+            if (pinned) {
+                unpinUniverse();
+            }
         }
     }
 
@@ -892,7 +1216,7 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public List<DownloadablePackage> listAllPackages() {
-        return getAllPackages(getAllSources(), null);
+        return new ArrayList<>(getUniverse().getPackagesById().values());
     }
 
     @Override
@@ -908,16 +1232,23 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public void order(DependencyResolution res) throws DependencyException {
-        Map<String, DownloadablePackage> allPackagesByID = getAllPackagesByID();
-        synchronized (res) {
-            if (!res.isSorted()) {
-                res.sort(this);
+        boolean pinned = pinUniverse();
+        try {
+            Map<String, DownloadablePackage> allPackagesByID = getUniverse().getPackagesById();
+            synchronized (res) {
+                if (!res.isSorted()) {
+                    res.sort(this);
+                }
+                List<String> installOrder = res.getOrderedPackageIdsToInstall();
+                List<String> removeOrder = res.getOrderedPackageIdsToRemove();
+                orderByDependencies(allPackagesByID, installOrder, removeOrder, false);
+                orderByDependencies(allPackagesByID, removeOrder, removeOrder, true);
+                Collections.reverse(removeOrder);
+            }
+        } finally {
+            if (pinned) {
+                unpinUniverse();
             }
-            List<String> installOrder = res.getOrderedPackageIdsToInstall();
-            List<String> removeOrder = res.getOrderedPackageIdsToRemove();
-            orderByDependencies(allPackagesByID, installOrder, removeOrder, false);
-            orderByDependencies(allPackagesByID, removeOrder, removeOrder, true);
-            Collections.reverse(removeOrder);
         }
     }
 
@@ -926,6 +1257,11 @@ public class PackageManagerImpl implements PackageManager {
      * dependency on a package B, B will be ordered before A. If B is missing, a {@link DependencyException} will be
      * thrown. If a package C has an optional dependency on a package D, D will be ordered before C. If D is missing, a
      * message will be logged to inform that D will be ignored.
+     * <p>
+     * The packages are the nodes of a dependency graph, built once: each dependency on packages of the list, matched
+     * by name or by what they provide, is an edge satisfied by any of them. The graph is then ordered with Kahn's
+     * algorithm, by successive sweeps over the list keeping its order among the packages which are ready at the same
+     * time. The packages left out by a cycle are appended at the end if only optional dependencies are unsatisfied.
      *
      * @param allPackagesByID all available packages sorted by id
      * @param listToOrder the package ids list to order
@@ -935,124 +1271,182 @@ public class PackageManagerImpl implements PackageManager {
      */
     private void orderByDependencies(Map<String, DownloadablePackage> allPackagesByID, List<String> listToOrder,
             List<String> orderedRemoveList, boolean isRemoveList) throws DependencyException {
-        Map<String, Package> orderedMap = Collections.synchronizedMap(new LinkedHashMap<String, Package>());
-        boolean hasChanged = true;
-        Set<String> missingDeps = new HashSet<>();
+        Set<String> removeIds = new LinkedHashSet<>(orderedRemoveList);
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(listToOrder));
+        int size = ids.size();
+        DownloadablePackage[] pkgs = new DownloadablePackage[size];
+        // nodes by name and by provided name
+        Map<String, List<Integer>> nodesByName = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            pkgs[i] = allPackagesByID.get(ids.get(i));
+            addNode(nodesByName, pkgs[i].getName(), i);
+            if (pkgs[i].getProvides() != null) {
+                for (PackageDependency provide : pkgs[i].getProvides()) {
+                    addNode(nodesByName, provide.getName(), i);
+                }
+            }
+        }
+
+        // dependency edges: each dependency on nodes is satisfied once one of them is ordered
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        List<Integer> edgeOwners = new ArrayList<>();
+        int[][] nodeEdges = new int[size][];
+        int[] unsatisfied = new int[size];
         Map<String, Set<String>> optionalMissingDeps = new HashMap<>();
-        while (!listToOrder.isEmpty() && hasChanged) {
-            hasChanged = false;
-            for (String id : listToOrder) {
-                DownloadablePackage pkg = allPackagesByID.get(id);
-                if (pkg.getDependencies().length == 0 && pkg.getOptionalDependencies().length == 0) {
-                    // Add pkg to orderedMap if it has no dependencies nor optional dependencies
-                    orderedMap.put(id, pkg);
-                    hasChanged = true;
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            PackageDependency[] deps = getAllDependencies(pkgs[i]);
+            int nbMandatory = pkgs[i].getDependencies().length;
+            nodeEdges[i] = new int[deps.length];
+            for (int d = 0; d < deps.length; d++) {
+                PackageDependency pkgDep = deps[d];
+                List<Integer> candidates = new ArrayList<>();
+                for (int node : nodesByName.getOrDefault(pkgDep.getName(), Collections.emptyList())) {
+                    if (matchDependency(pkgDep, pkgs[node])) {
+                        candidates.add(node);
+                    }
+                }
+                if (!candidates.isEmpty()) {
+                    int edge = edgeOwners.size();
+                    edgeOwners.add(i);
+                    for (int node : candidates) {
+                        dependents.get(node).add(edge);
+                    }
+                    nodeEdges[i][d] = edge;
+                    unsatisfied[i]++;
+                } else if (isSatisfiedByInstalled(pkgDep, removeIds, isRemoveList)) {
+                    nodeEdges[i][d] = SATISFIED;
+                } else if (d >= nbMandatory) {
+                    // consider an optional dependency that will not be installed as satisfied, but log it if it is not
+                    // going to be removed
+                    nodeEdges[i][d] = SATISFIED;
+                    if (!isRemoveList && !hasMatchInIdList(pkgDep, removeIds, allPackagesByID)) {
+                        optionalMissingDeps.computeIfAbsent(ids.get(i), k -> new HashSet<>()).add(pkgDep.toString());
+                    }
                 } else {
-                    // Add to orderedMap if all its dependencies and optional dependencies are satisfied
-                    boolean allSatisfied = true;
-                    List<PackageDependency> allDependencies = new ArrayList<>();
-                    CollectionUtils.addAll(allDependencies, pkg.getDependencies());
-                    List<PackageDependency> optionalDependencies = Arrays.asList(pkg.getOptionalDependencies());
-                    allDependencies.addAll(optionalDependencies);
-                    for (PackageDependency pkgDep : allDependencies) {
-                        // is pkDep optional?
-                        boolean isOptionalPkgDep = optionalDependencies.contains(pkgDep);
-                        // is pkgDep satisfied in orderedMap?
-                        boolean satisfied = false;
-                        for (Package orderedPkg : orderedMap.values()) {
-                            if (matchDependency(pkgDep, orderedPkg)) {
-                                satisfied = true;
-                                if (isOptionalPkgDep) {
-                                    if (optionalMissingDeps.get(id) != null) {
-                                        optionalMissingDeps.get(id).remove(pkgDep.toString());
-                                    }
-                                } else {
-                                    missingDeps.remove(pkgDep.toString());
-                                }
-                                break;
-                            }
-                        }
-                        // else, is pkgDep satisfied in already installed pkgs and is not going to be removed or
-                        // upgraded ?
-                        if (!satisfied && !hasMatchInIdList(pkgDep, listToOrder)) {
-                            for (Version version : findLocalPackageInstalledVersions(pkgDep.getName())) {
-                                if ((isRemoveList || !hasMatchInIdList(pkgDep.getName(), version, orderedRemoveList))
-                                        && pkgDep.getVersionRange().matchVersion(version)) {
-                                    satisfied = true;
-                                    if (isOptionalPkgDep) {
-                                        if (optionalMissingDeps.get(id) != null) {
-                                            optionalMissingDeps.get(id).remove(pkgDep.toString());
-                                        }
-                                    } else {
-                                        missingDeps.remove(pkgDep.toString());
-                                    }
-                                    break;
-                                }
-                            }
-                            // if it's an optional dependency that will not be installed
-                            if (!satisfied && isOptionalPkgDep) {
-                                // consider the pkDep as satisfied, but add it in optional missing dependencies for
-                                // logging if it is not going to be removed
-                                satisfied = true;
-                                if (!hasMatchInIdList(pkgDep, orderedRemoveList)) {
-                                    optionalMissingDeps.computeIfAbsent(id, k -> new HashSet<>())
-                                                       .add(pkgDep.toString());
-                                }
-                            }
-                        }
+                    nodeEdges[i][d] = MISSING;
+                    unsatisfied[i]++;
+                }
+            }
+        }
 
-                        if (!satisfied) { // couldn't satisfy pkgDep
-                            allSatisfied = false;
-                            if (isOptionalPkgDep) {
-                                optionalMissingDeps.computeIfAbsent(id, k -> new HashSet<>()).add(pkgDep.toString());
-                            } else {
-                                missingDeps.add(pkgDep.toString());
-                            }
-                            break;
+        // Kahn's algorithm, sweeping the list in order: a node ready before the current one waits for the next sweep
+        boolean[] satisfiedEdges = new boolean[edgeOwners.size()];
+        boolean[] ordered = new boolean[size];
+        List<String> orderedIds = new ArrayList<>(size);
+        PriorityQueue<Integer> sweep = new PriorityQueue<>();
+        PriorityQueue<Integer> nextSweep = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            if (unsatisfied[i] == 0) {
+                sweep.add(i);
+            }
+        }
+        while (!sweep.isEmpty()) {
+            while (!sweep.isEmpty()) {
+                int i = sweep.poll();
+                ordered[i] = true;
+                orderedIds.add(ids.get(i));
+                for (int edge : dependents.get(i)) {
+                    if (!satisfiedEdges[edge]) {
+                        satisfiedEdges[edge] = true;
+                        int owner = edgeOwners.get(edge);
+                        if (--unsatisfied[owner] == 0) {
+                            (owner > i ? sweep : nextSweep).add(owner);
                         }
                     }
-                    if (allSatisfied) {
-                        orderedMap.put(id, pkg);
-                        orderedRemoveList.remove(pkg.getName());
-                        hasChanged = true;
+                }
+            }
+            PriorityQueue<Integer> swap = sweep;
+            sweep = nextSweep;
+            nextSweep = swap;
+        }
+
+        // diagnose the packages left out by the first of their dependencies which is not satisfied
+        List<String> remaining = new ArrayList<>();
+        Set<String> missingDeps = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (ordered[i]) {
+                continue;
+            }
+            remaining.add(ids.get(i));
+            PackageDependency[] deps = getAllDependencies(pkgs[i]);
+            for (int d = 0; d < deps.length; d++) {
+                int edge = nodeEdges[i][d];
+                if (edge == MISSING || edge >= 0 && !satisfiedEdges[edge]) {
+                    if (d < pkgs[i].getDependencies().length) {
+                        missingDeps.add(deps[d].toString());
+                    } else {
+                        optionalMissingDeps.computeIfAbsent(ids.get(i), k -> new HashSet<>())
+                                           .add(deps[d].toString());
                     }
+                    break;
                 }
             }
-            listToOrder.removeAll(orderedMap.keySet());
         }
         if (!optionalMissingDeps.isEmpty() && !isRemoveList) {
             for (Entry<String, Set<String>> entry : optionalMissingDeps.entrySet()) {
-                if (entry.getValue() != null && !entry.getValue().isEmpty()) {
-                    log.info(String.format("Optional dependencies %s will be ignored for '%s'.", entry.getValue(),
-                            entry.getKey()));
-                }
+                log.info(String.format("Optional dependencies %s will be ignored for '%s'.", entry.getValue(),
+                        entry.getKey()));
             }
         }
-        if (!listToOrder.isEmpty()) {
-            if (missingDeps.isEmpty()) {
-                for (String id : listToOrder) {
-                    DownloadablePackage pkg = allPackagesByID.get(id);
-                    orderedMap.put(id, pkg);
-                }
-                listToOrder.clear();
-            } else {
+        if (!remaining.isEmpty()) {
+            if (!missingDeps.isEmpty()) {
                 throw new DependencyException(
                         String.format("Couldn't order %s missing %s (consider using --relax true or --snapshot).",
-                                listToOrder, missingDeps));
+                                remaining, missingDeps));
             }
+            orderedIds.addAll(remaining);
+        }
+        listToOrder.clear();
+        listToOrder.addAll(orderedIds);
+    }
+
+    private static final int SATISFIED = -1;
+
+    private static final int MISSING = -2;
+
+    private static void addNode(Map<String, List<Integer>> nodesByName, String name, int node) {
+        List<Integer> nodes = nodesByName.computeIfAbsent(name, k -> new ArrayList<>());
+        if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != node) {
+            nodes.add(node);
         }
-        listToOrder.addAll(orderedMap.keySet());
     }
 
-    private boolean hasMatchInIdList(String pkgName, Version pkgVersion, List<String> pkgIdList) {
-        String pkgId = pkgName + "-" + pkgVersion;
-        return pkgIdList.contains(pkgId);
+    /**
+     * @return the dependencies then the optional dependencies of the given package
+     */
+    private static PackageDependency[] getAllDependencies(Package pkg) {
+        PackageDependency[] deps = pkg.getDependencies();
+        PackageDependency[] optionalDeps = pkg.getOptionalDependencies();
+        PackageDependency[] all = Arrays.copyOf(deps, deps.length + optionalDeps.length);
+        System.arraycopy(optionalDeps, 0, all, deps.length, optionalDeps.length);
+        return all;
+    }
+
+    /**
+     * @return true if the dependency is satisfied by an installed package which is not going to be removed
+     */
+    private boolean isSatisfiedByInstalled(PackageDependency pkgDep, Set<String> removeIds, boolean isRemoveList) {
+        for (Version version : findLocalPackageInstalledVersions(pkgDep.getName())) {
+            if ((isRemoveList || !removeIds.contains(pkgDep.getName() + "-" + version))
+                    && pkgDep.getVersionRange().matchVersion(version)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private boolean hasMatchInIdList(PackageDependency pkgDep, List<String> pkgIdList) {
+        return hasMatchInIdList(pkgDep, pkgIdList, getUniverse().getPackagesById());
+    }
+
+    private boolean hasMatchInIdList(PackageDependency pkgDep, Collection<String> pkgIdList,
+            Map<String, DownloadablePackage> allPackagesByID) {
         for (String pkgId : pkgIdList) {
-            Package pkg = getPackage(pkgId);
-            if (matchDependency(pkgDep, pkg)) {
+            Package pkg = allPackagesByID.get(pkgId);
+            if (pkg != null && matchDependency(pkgDep, pkg)) {
                 return true;
             }
         }
@@ -1078,6 +1472,7 @@ public class PackageManagerImpl implements PackageManager {
     public void cancelDownload(String pkgId) {
         ConnectDownloadManager cdm = NuxeoConnectClient.getDownloadManager();
         cdm.removeDownloadingPackage(pkgId);
+        invalidateUniverse();
     }
 
     @Override
@@ -1109,14 +1504,15 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public boolean matchesPlatform(String requestPkgStr, PlatformId targetPlatform) throws PackageException {
-        Map<String, DownloadablePackage> allPackagesByID = getAllPackagesByID();
+        PackageUniverse current = getUniverse();
+        Map<String, DownloadablePackage> allPackagesByID = current.getPackagesById();
         // Try ID match first
         if (allPackagesByID.containsKey(requestPkgStr)) {
             return TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(allPackagesByID.get(requestPkgStr),
                     targetPlatform);
         }
         // Fallback on name match
-        List<DownloadablePackage> allPackagesForName = getAllPackagesByName().get(requestPkgStr);
+        List<DownloadablePackage> allPackagesForName = current.getPackagesByName().get(requestPkgStr);
         if (allPackagesForName == null) {
             throw new PackageException("Package not found: " + requestPkgStr);
         }
@@ -1131,7 +1527,18 @@ public class PackageManagerImpl implements PackageManager {
 
     @Override
     public void checkOptionalDependenciesOnInstalledPackages(DependencyResolution res) {
-        List<DownloadablePackage> installedPackages = listInstalledPackages();
+        boolean pinned = pinUniverse();
+        try {
+            checkOptionalDependenciesOnInstalledPackages(res, listInstalledPackages());
+        } finally {
+            if (pinned) {
+                unpinUniverse();
+            }
+        }
+    }
+
+    protected void checkOptionalDependenciesOnInstalledPackages(DependencyResolution res,
+            List<DownloadablePackage> installedPackages) {
         synchronized (res) {
             Set<DownloadablePackage> packagesToReinstall = new HashSet<>();
             for (DownloadablePackage installedPkg : installedPackages) {
@@ -78,4 +78,17 @@ public interface PackageSource {
      */
     List<DownloadablePackage> listStudioPackages(PlatformId currentTargetPlatform);
 
+    /**
+     * Returns a value changing whenever the packages listed by this source change, so that callers can keep what they
+     * computed from them until then. It must be cheap to compute: it is checked on each read of the package manager.
+     *
+     * @return the current revision of this source, or null if unknown, in which case this source is listed again on
+     *         each read of the package manager, except within a single operation
+     * @see PackageUniverse
+     * @since 1.8.2
+     */
+    default Object getRevision() {
+        return null;
+    }
+
 }
@@ -0,0 +1,299 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.update.PackageType;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * Immutable snapshot of the packages of the {@link PackageSource}s of a {@link PackageManagerImpl}, for its current
+ * target platform, indexed by id, name and type.
+ * <p>
+ * A universe keeps the {@link #getStamp() stamp} of the sources it was built from, so that it can be reused as long as
+ * their revisions did not change, a source without revision being always seen as changed. The local packages of all
+ * the sources are listed once and filtered as
+ * {@link AbstractPackageSource#accepts(DownloadablePackage, PackageType, PlatformId)} does.
+ *
+ * @see PackageSource#getRevision()
+ * @since 1.8.2
+ */
+public class PackageUniverse {
+
+    protected final long version;
+
+    protected final PlatformId targetPlatform;
+
+    protected final List<Object> stamp;
+
+    protected final Map<String, DownloadablePackage> packagesById;
+
+    protected final Map<String, List<DownloadablePackage>> packagesByName;
+
+    protected final List<DownloadablePackage> packages;
+
+    protected final Map<PackageType, List<DownloadablePackage>> packagesByType;
+
+    protected final Map<String, DownloadablePackage> remotePackagesById;
+
+    protected final List<DownloadablePackage> remotePackages;
+
+    protected final Map<PackageType, List<DownloadablePackage>> remotePackagesByType;
+
+    protected final Map<String, DownloadablePackage> localPackagesById;
+
+    protected final List<DownloadablePackage> localPackages;
+
+    protected final Map<PackageType, List<DownloadablePackage>> localPackagesByType;
+
+    protected final Map<String, List<DownloadablePackage>> localPackagesByName;
+
+    protected final List<DownloadablePackage> installedPackages;
+
+    /**
+     * Lists the given sources and indexes their packages.
+     *
+     * @param version the version of the universe, increasing with each universe built by the package manager
+     * @param targetPlatform the target platform the remote packages are filtered on
+     */
+    public PackageUniverse(long version, PlatformId targetPlatform, List<PackageSource> localSources,
+            List<PackageSource> remoteSources) {
+        this.version = version;
+        this.targetPlatform = targetPlatform;
+        PackageComparator comparator = new PackageComparator();
+
+        List<List<DownloadablePackage>> localListings = new ArrayList<>();
+        for (PackageSource source : localSources) {
+            localListings.add(source.listPackages());
+        }
+        Map<String, DownloadablePackage> localById = new LinkedHashMap<>();
+        Map<String, List<DownloadablePackage>> localByName = new HashMap<>();
+        List<DownloadablePackage> installed = new ArrayList<>();
+        for (List<DownloadablePackage> listing : localListings) {
+            for (DownloadablePackage pkg : listing) {
+                localById.putIfAbsent(pkg.getId(), pkg);
+                localByName.computeIfAbsent(pkg.getName(), k -> new ArrayList<>()).add(pkg);
+                if (pkg.getPackageState().isInstalled()) {
+                    installed.add(pkg);
+                }
+            }
+        }
+        localPackagesById = Collections.unmodifiableMap(localById);
+        localPackages = sorted(localById.values(), comparator);
+        localPackagesByType = groupByType(localPackages);
+        localPackagesByName = unmodifiable(localByName);
+        installed.sort(comparator);
+        installedPackages = Collections.unmodifiableList(installed);
+
+        // all packages, the last listed source winning for a given id
+        Map<String, DownloadablePackage> remoteById = new HashMap<>();
+        Map<String, DownloadablePackage> allById = new HashMap<>();
+        Map<String, List<DownloadablePackage>> allByName = new HashMap<>();
+        for (PackageSource source : remoteSources) {
+            for (DownloadablePackage pkg : source.listPackages(null, targetPlatform)) {
+                remoteById.put(pkg.getId(), pkg);
+                allById.put(pkg.getId(), pkg);
+                allByName.computeIfAbsent(pkg.getName(), k -> new ArrayList<>()).add(pkg);
+            }
+        }
+        for (List<DownloadablePackage> listing : localListings) {
+            for (DownloadablePackage pkg : listing) {
+                if (AbstractPackageSource.accepts(pkg, null, targetPlatform)) {
+                    allById.put(pkg.getId(), pkg);
+                    allByName.computeIfAbsent(pkg.getName(), k -> new ArrayList<>()).add(pkg);
+                }
+            }
+        }
+        remotePackagesById = Collections.unmodifiableMap(remoteById);
+        remotePackages = sorted(remoteById.values(), comparator);
+        remotePackagesByType = groupByType(remotePackages);
+        packagesById = Collections.unmodifiableMap(allById);
+        packages = sorted(allById.values(), comparator);
+        packagesByType = groupByType(packages);
+        packagesByName = unmodifiable(allByName);
+
+        // stamped once listed, as listing a source may fill its cache
+        stamp = Collections.unmodifiableList(stamp(localSources, remoteSources));
+    }
+
+    /**
+     * @return the {@link PackageSource#getRevision() revision} of the given source if it has one, or a new object
+     *         otherwise, so that a source without revision is always seen as changed
+     */
+    protected static Object stamp(PackageSource source) {
+        Object revision = source.getRevision();
+        return revision != null ? revision : new Object();
+    }
+
+    /**
+     * Computes the current stamp of the given sources, to compare with {@link #getStamp()}, without listing them.
+     */
+    public static List<Object> stamp(List<PackageSource> localSources, List<PackageSource> remoteSources) {
+        List<Object> sourcesStamp = new ArrayList<>();
+        for (PackageSource source : remoteSources) {
+            sourcesStamp.add(stamp(source));
+        }
+        for (PackageSource source : localSources) {
+            sourcesStamp.add(stamp(source));
+        }
+        return sourcesStamp;
+    }
+
+    protected static List<DownloadablePackage> sorted(Iterable<DownloadablePackage> pkgs,
+            PackageComparator comparator) {
+        List<DownloadablePackage> list = new ArrayList<>();
+        pkgs.forEach(list::add);
+        list.sort(comparator);
+        return Collections.unmodifiableList(list);
+    }
+
+    protected static Map<PackageType, List<DownloadablePackage>> groupByType(List<DownloadablePackage> pkgs) {
+        Map<PackageType, List<DownloadablePackage>> byType = new EnumMap<>(PackageType.class);
+        for (DownloadablePackage pkg : pkgs) {
+            // packages without type are only listed among all packages
+            if (pkg.getType() != null) {
+                byType.computeIfAbsent(pkg.getType(), k -> new ArrayList<>()).add(pkg);
+            }
+        }
+        byType.replaceAll((type, list) -> Collections.unmodifiableList(list));
+        return Collections.unmodifiableMap(byType);
+    }
+
+    protected static Map<String, List<DownloadablePackage>> unmodifiable(Map<String, List<DownloadablePackage>> map) {
+        map.replaceAll((name, list) -> Collections.unmodifiableList(list));
+        return Collections.unmodifiableMap(map);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public PlatformId getTargetPlatform() {
+        return targetPlatform;
+    }
+
+    /**
+     * @return the revisions of the sources this universe was built from
+     */
+    public List<Object> getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return true if this universe was built for the given target platform
+     */
+    public boolean isFor(PlatformId platform) {
+        return Objects.equals(targetPlatform, platform);
+    }
+
+    /**
+     * @return the package with the given id, local packages taking precedence over remote ones
+     */
+    public DownloadablePackage getPackage(String id) {
+        return packagesById.get(id);
+    }
+
+    public Map<String, DownloadablePackage> getPackagesById() {
+        return packagesById;
+    }
+
+    public Map<String, List<DownloadablePackage>> getPackagesByName() {
+        return packagesByName;
+    }
+
+    /**
+     * @param type the type of the packages, all packages if null
+     * @return the packages, sorted with {@link PackageComparator}
+     */
+    public List<DownloadablePackage> getPackages(PackageType type) {
+        return type == null ? packages : packagesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    public DownloadablePackage getRemotePackage(String id) {
+        return remotePackagesById.get(id);
+    }
+
+    /**
+     * @param type the type of the packages, all packages if null
+     * @return the remote packages, sorted with {@link PackageComparator}
+     */
+    public List<DownloadablePackage> getRemotePackages(PackageType type) {
+        return type == null ? remotePackages
+                : remotePackagesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * @return the local package with the given id, from the first local source holding it
+     */
+    public DownloadablePackage getLocalPackage(String id) {
+        return localPackagesById.get(id);
+    }
+
+    /**
+     * @param type the type of the packages, all packages if null
+     * @return the local packages, sorted with {@link PackageComparator}
+     */
+    public List<DownloadablePackage> getLocalPackages(PackageType type) {
+        return type == null ? localPackages : localPackagesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * @return the local packages with the given name, from all the local sources
+     */
+    public List<DownloadablePackage> getLocalPackagesByName(String name) {
+        return localPackagesByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @return the installed versions of the local packages with the given name
+     */
+    public List<Version> getInstalledVersions(String name) {
+        List<Version> versions = new ArrayList<>();
+        for (DownloadablePackage pkg : getLocalPackagesByName(name)) {
+            if (pkg.getPackageState().isInstalled()) {
+                versions.add(pkg.getVersion());
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * @return the installed packages, sorted with {@link PackageComparator}
+     */
+    public List<DownloadablePackage> getInstalledPackages() {
+        return installedPackages;
+    }
+
+    @Override
+    public String toString() {
+        return "PackageUniverse(version=" + version + ", packages=" + packagesById.size() + ", local="
+                + localPackagesById.size() + ", installed=" + installedPackages.size() + ")";
+    }
+
+}
@@ -20,13 +20,24 @@
 
 package org.nuxeo.connect.packages;
 
+import static org.nuxeo.connect.connector.http.ConnectHttpConnector.CONNECT_HTTP_PARALLELISM;
+import static org.nuxeo.connect.connector.http.ConnectHttpConnector.DEFAULT_CONNECT_HTTP_PARALLELISM;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.ResizableExecutor;
 import org.nuxeo.connect.connector.ConnectServerError;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.platform.PlatformId;
@@ -45,6 +56,13 @@ public class RemotePackageSource extends AbstractPackageSource implements Packag
 
     protected PackageListCache cache;
 
+    /**
+     * Executor used to fetch the package lists of the different types concurrently.
+     *
+     * @since 1.8.2
+     */
+    protected static final ResizableExecutor fetchExecutor = new ResizableExecutor("ConnectPackageListThread");
+
     public RemotePackageSource() {
         cache = new PackageListCache();
         id = "remote";
@@ -65,18 +83,20 @@ public class RemotePackageSource extends AbstractPackageSource implements Packag
         }
         String cacheKey = PackageListCache.STUDIO_REGISTERED_KEY
                 + ((currentTargetPlatform != null) ? "_" + currentTargetPlatform.asString() : "");
-        result = cache.getFromCache(cacheKey);
-        if (!result.isEmpty()) {
+        result = cache.getPackages(cacheKey, () -> NuxeoConnectClient.getConnectRegistrationService()
+                                                                      .getConnector()
+                                                                      .fetchRegisteredStudio(currentTargetPlatform));
+        if (result != null) {
             return result;
         }
         try {
             ConnectRegistrationService crs = NuxeoConnectClient.getConnectRegistrationService();
-            result = crs.getConnector().getRegisteredStudio(currentTargetPlatform);
-            cache.add(result, cacheKey);
+            result = cache.load(cacheKey, () -> crs.getConnector().getRegisteredStudio(currentTargetPlatform));
         } catch (ConnectServerError e) {
             log.debug(e, e);
             log.warn("Unable to fetch remote packages list: " + e.getMessage());
             // do not store an empty list to force retries
+            result = new ArrayList<>();
         }
         return result;
     }
@@ -85,28 +105,160 @@ public class RemotePackageSource extends AbstractPackageSource implements Packag
     public List<DownloadablePackage> listPackages(PackageType type, PlatformId currentTargetPlatform) {
         if (type == null) {
             List<DownloadablePackage> all = new ArrayList<>();
-            for (PackageType pkgType : PackageType.values()) {
-                all.addAll(listPackages(pkgType, currentTargetPlatform));
+            for (List<DownloadablePackage> pkgs : listPackagesByType(currentTargetPlatform).values()) {
+                all.addAll(pkgs);
             }
             return all;
         }
-        String cacheKey = type.toString()
-                + ((currentTargetPlatform != null) ? "_" + currentTargetPlatform.asString() : "");
-        List<DownloadablePackage> result = cache.getFromCache(cacheKey);
-        if (!result.isEmpty()) {
+        String cacheKey = getCacheKey(type, currentTargetPlatform);
+        List<DownloadablePackage> result = cache.getPackages(cacheKey,
+                getRevalidationLoader(type, currentTargetPlatform));
+        if (result != null) {
             return result;
         }
+        return loadPackages(type, currentTargetPlatform);
+    }
+
+    /**
+     * Lists the packages of all the {@link PackageType}s. When several types are missing from the cache, they are
+     * fetched in a single call if the connector supports it, otherwise they are fetched concurrently from the Connect
+     * Server, with at most {@link #getParallelism()} requests at the same time.
+     *
+     * @return the packages grouped by type, in the {@link PackageType#values()} order
+     * @since 1.8.2
+     */
+    protected Map<PackageType, List<DownloadablePackage>> listPackagesByType(PlatformId currentTargetPlatform) {
+        Map<PackageType, List<DownloadablePackage>> result = new EnumMap<>(PackageType.class);
+        List<PackageType> missingTypes = new ArrayList<>();
+        for (PackageType type : PackageType.values()) {
+            List<DownloadablePackage> pkgs = cache.getPackages(getCacheKey(type, currentTargetPlatform),
+                    getRevalidationLoader(type, currentTargetPlatform));
+            if (pkgs != null) {
+                result.put(type, pkgs);
+            } else {
+                missingTypes.add(type);
+            }
+        }
+        if (missingTypes.size() > 1) {
+            Map<PackageType, List<DownloadablePackage>> all = fetchAllPackages(currentTargetPlatform);
+            if (all != null) {
+                for (PackageType type : missingTypes) {
+                    List<DownloadablePackage> pkgs = all.get(type);
+                    cache.add(pkgs, getCacheKey(type, currentTargetPlatform));
+                    result.put(type, pkgs);
+                }
+                return result;
+            }
+        }
+        Map<PackageType, Future<List<DownloadablePackage>>> fetches = new EnumMap<>(PackageType.class);
+        boolean parallel = missingTypes.size() > 1 && getParallelism() > 1;
+        for (PackageType type : missingTypes) {
+            if (parallel) {
+                fetches.put(type, getFetchExecutor().submit(() -> loadPackages(type, currentTargetPlatform)));
+            } else {
+                result.put(type, loadPackages(type, currentTargetPlatform));
+            }
+        }
+        for (Map.Entry<PackageType, Future<List<DownloadablePackage>>> fetch : fetches.entrySet()) {
+            PackageType type = fetch.getKey();
+            List<DownloadablePackage> pkgs;
+            try {
+                pkgs = fetch.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fetch.getValue().cancel(true);
+                log.warn("Interrupted while fetching remote packages list of type " + type);
+                pkgs = new ArrayList<>();
+            } catch (ExecutionException e) {
+                log.debug(e, e);
+                log.warn("Unable to fetch remote packages list of type " + type + ": " + e.getCause());
+                pkgs = new ArrayList<>();
+            }
+            result.put(type, pkgs);
+        }
+        return result;
+    }
+
+    /**
+     * Fetches the packages of all the types from the Connect Server in a single call, bypassing the in-memory cache.
+     *
+     * @return the packages grouped by type, or null if the connector does not support it or if the call failed
+     * @see org.nuxeo.connect.connector.ConnectConnector#getAllDownloads(PlatformId)
+     * @since 1.8.2
+     */
+    protected Map<PackageType, List<DownloadablePackage>> fetchAllPackages(PlatformId currentTargetPlatform) {
         try {
             ConnectRegistrationService crs = NuxeoConnectClient.getConnectRegistrationService();
-            result = crs.getConnector().getDownloads(type, currentTargetPlatform);
+            return crs.getConnector().getAllDownloads(currentTargetPlatform);
+        } catch (ConnectServerError e) {
+            log.debug(e, e);
+            log.warn("Unable to fetch all the remote packages at once, trying each type: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the packages of the given type from the Connect Server and stores them in the in-memory cache. Concurrent
+     * calls for the same type and target platform share a single request to the server.
+     *
+     * @return the packages, or an empty list, not stored in the cache, if they could not be fetched
+     * @see PackageListCache#load(String, Callable)
+     * @since 1.8.2
+     */
+    protected List<DownloadablePackage> loadPackages(PackageType type, PlatformId currentTargetPlatform) {
+        String cacheKey = getCacheKey(type, currentTargetPlatform);
+        try {
+            return cache.load(cacheKey, getLoader(type, currentTargetPlatform));
         } catch (ConnectServerError e) {
             log.debug(e, e);
             log.warn("Unable to fetch remote packages list: " + e.getMessage());
-            // store an empty list to avoid calling back the server since anyway we probably have no connection...
-            result = new ArrayList<>();
+            // do not store an empty list to force retries, an empty entry being served as is
+            return new ArrayList<>();
         }
-        cache.add(result, cacheKey);
-        return result;
+    }
+
+    /**
+     * @return the loader fetching the packages of the given type from the Connect Server, bypassing the in-memory cache
+     * @since 1.8.2
+     */
+    protected Callable<List<DownloadablePackage>> getLoader(PackageType type, PlatformId currentTargetPlatform) {
+        return () -> NuxeoConnectClient.getConnectRegistrationService()
+                                       .getConnector()
+                                       .getDownloads(type, currentTargetPlatform);
+    }
+
+    /**
+     * @return the loader refreshing the expired packages of the given type, always asking the Connect Server so that
+     *         an expired cache of the connector is not taken as up-to-date
+     * @since 1.8.2
+     */
+    protected Callable<List<DownloadablePackage>> getRevalidationLoader(PackageType type,
+            PlatformId currentTargetPlatform) {
+        return () -> NuxeoConnectClient.getConnectRegistrationService()
+                                       .getConnector()
+                                       .fetchDownloads(type, currentTargetPlatform);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected String getCacheKey(PackageType type, PlatformId currentTargetPlatform) {
+        return type.toString() + ((currentTargetPlatform != null) ? "_" + currentTargetPlatform.asString() : "");
+    }
+
+    /**
+     * @see org.nuxeo.connect.connector.http.ConnectHttpConnector#CONNECT_HTTP_PARALLELISM
+     * @since 1.8.2
+     */
+    protected int getParallelism() {
+        return NuxeoConnectClient.getIntProperty(CONNECT_HTTP_PARALLELISM, DEFAULT_CONNECT_HTTP_PARALLELISM, 1);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected ExecutorService getFetchExecutor() {
+        return fetchExecutor.get(getParallelism());
     }
 
     @Override
@@ -118,6 +270,16 @@ public class RemotePackageSource extends AbstractPackageSource implements Packag
         crs.getConnector().flushCache();
     }
 
+    /**
+     * @return the revision of the in-memory cache, changing when its entries expire so that they get listed again
+     * @since 1.8.2
+     */
+    @Override
+    public Object getRevision() {
+        PackageListCache current = cache;
+        return Arrays.asList(current, current.getRevision(), current.hasExpiredEntries());
+    }
+
     @Override
     public DownloadablePackage getPackageById(String packageId) {
         DownloadablePackage pkg = cache.getPackageByID(packageId);
@@ -141,11 +303,20 @@ public class RemotePackageSource extends AbstractPackageSource implements Packag
             PlatformId currentTargetPlatform) {
         List<DownloadablePackage> result = new ArrayList<>();
         for (PackageType type : PackageType.values()) {
-            for (DownloadablePackage pkg : listPackages(type, currentTargetPlatform)) {
-                if (packageName.equals(pkg.getName())) {
-                    result.add(pkg);
+            List<DownloadablePackage> pkgs = cache.getPackagesByName(getCacheKey(type, currentTargetPlatform),
+                    packageName, getRevalidationLoader(type, currentTargetPlatform));
+            if (pkgs == null) {
+                // some types are not in cache yet: fetch them and filter
+                result.clear();
+                for (List<DownloadablePackage> typePkgs : listPackagesByType(currentTargetPlatform).values()) {
+                    typePkgs.stream()
+                            .filter(pkg -> packageName.equals(pkg.getName()))
+                            .sorted(PackageListCacheEntry.VERSION_ORDER)
+                            .forEach(result::add);
                 }
+                return result;
             }
+            result.addAll(pkgs);
         }
         return result;
     }
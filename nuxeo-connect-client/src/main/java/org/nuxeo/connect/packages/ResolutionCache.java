@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.nuxeo.connect.packages.dependencies.DependencyResolution;
+import org.nuxeo.connect.platform.PlatformId;
+
+/**
+ * Bounded LRU cache of the {@link DependencyResolution}s computed by a {@link PackageManagerImpl}.
+ * <p>
+ * A resolution is keyed by its request and by the {@link PackageUniverse#getStamp() stamp} of the package universe it
+ * was computed from, so that it is not reused once the packages or their states changed. The cached resolutions are
+ * copied in and out, the callers being free to modify the ones they get.
+ *
+ * @since 1.8.2
+ */
+public class ResolutionCache {
+
+    /**
+     * A resolution request along with the stamp of the package universe.
+     */
+    public static class Key {
+
+        protected final List<String> pkgInstall;
+
+        protected final List<String> pkgRemove;
+
+        protected final List<String> pkgUpgrade;
+
+        protected final PlatformId targetPlatform;
+
+        protected final boolean allowSNAPSHOT;
+
+        protected final boolean doKeep;
+
+        protected final boolean isSubResolution;
+
+        protected final List<Object> stamp;
+
+        protected final int hash;
+
+        public Key(List<String> pkgInstall, List<String> pkgRemove, List<String> pkgUpgrade,
+                PlatformId targetPlatform, boolean allowSNAPSHOT, boolean doKeep, boolean isSubResolution,
+                List<Object> stamp) {
+            this.pkgInstall = copy(pkgInstall);
+            this.pkgRemove = copy(pkgRemove);
+            this.pkgUpgrade = copy(pkgUpgrade);
+            this.targetPlatform = targetPlatform;
+            this.allowSNAPSHOT = allowSNAPSHOT;
+            this.doKeep = doKeep;
+            this.isSubResolution = isSubResolution;
+            this.stamp = stamp;
+            hash = Objects.hash(this.pkgInstall, this.pkgRemove, this.pkgUpgrade, targetPlatform, allowSNAPSHOT,
+                    doKeep, isSubResolution, stamp);
+        }
+
+        protected static List<String> copy(List<String> list) {
+            return list == null ? null : new ArrayList<>(list);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && allowSNAPSHOT == other.allowSNAPSHOT && doKeep == other.doKeep
+                    && isSubResolution == other.isSubResolution && Objects.equals(pkgInstall, other.pkgInstall)
+                    && Objects.equals(pkgRemove, other.pkgRemove) && Objects.equals(pkgUpgrade, other.pkgUpgrade)
+                    && Objects.equals(targetPlatform, other.targetPlatform) && Objects.equals(stamp, other.stamp);
+        }
+    }
+
+    protected final int maxSize;
+
+    protected final Map<Key, DependencyResolution> resolutions;
+
+    /**
+     * @param maxSize the maximum number of resolutions kept, 0 disabling the cache
+     */
+    public ResolutionCache(int maxSize) {
+        this.maxSize = maxSize;
+        resolutions = new LinkedHashMap<Key, DependencyResolution>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, DependencyResolution> eldest) {
+                return size() > ResolutionCache.this.maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return a copy of the cached resolution, null if none
+     */
+    public DependencyResolution get(Key key) {
+        DependencyResolution resolution;
+        synchronized (this) {
+            resolution = resolutions.get(key);
+        }
+        return resolution == null ? null : new DependencyResolution(resolution);
+    }
+
+    /**
+     * Caches a copy of the given resolution.
+     */
+    public void put(Key key, DependencyResolution resolution) {
+        if (!isEnabled()) {
+            return;
+        }
+        DependencyResolution copy = new DependencyResolution(resolution);
+        synchronized (this) {
+            resolutions.put(key, copy);
+        }
+    }
+
+    public synchronized int size() {
+        return resolutions.size();
+    }
+
+    public synchronized void clear() {
+        resolutions.clear();
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.connect.DaemonThreadFactory;
+import org.nuxeo.connect.NuxeoConnectClient;
+
+/**
+ * Stale-while-revalidate policy shared by the package list caches: once expired, an entry can still be served for at
+ * most {@link #getMaxStaleness()} milliseconds while a single background refresh per key updates it.
+ * <p>
+ * Also counts the fresh hits, the stale hits and the blocking misses of the cache.
+ *
+ * @see #STALE_WHILE_REVALIDATE_PROPERTY
+ * @since 1.8.2
+ */
+public class StaleCacheRevalidator {
+
+    /**
+     * Enables serving expired cache entries while they are refreshed in background. Disabled by default.
+     */
+    public static final String STALE_WHILE_REVALIDATE_PROPERTY = "org.nuxeo.connect.client.cache.staleWhileRevalidate";
+
+    /**
+     * Maximum time, in minutes, an expired cache entry can be served before callers block on its refresh.
+     */
+    public static final String MAX_STALENESS_MINUTES_PROPERTY = "org.nuxeo.connect.client.cache.maxStaleness";
+
+    public static final String DEFAULT_CACHE_MAX_STALENESS_MINUTES = "60";
+
+    protected static final Log log = LogFactory.getLog(StaleCacheRevalidator.class);
+
+    protected static ThreadPoolExecutor refreshExecutor;
+
+    protected final String name;
+
+    protected final boolean enabled;
+
+    protected final long maxStaleness;
+
+    protected final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    protected final AtomicLong freshHits = new AtomicLong();
+
+    protected final AtomicLong staleHits = new AtomicLong();
+
+    protected final AtomicLong blockingMisses = new AtomicLong();
+
+    protected final AtomicLong refreshes = new AtomicLong();
+
+    protected final AtomicLong refreshFailures = new AtomicLong();
+
+    /**
+     * @param name the name of the cache, used for logging
+     */
+    public StaleCacheRevalidator(String name) {
+        this.name = name;
+        enabled = Boolean.parseBoolean(NuxeoConnectClient.getProperty(STALE_WHILE_REVALIDATE_PROPERTY, "false"));
+        maxStaleness = Long.parseLong(NuxeoConnectClient.getProperty(MAX_STALENESS_MINUTES_PROPERTY,
+                DEFAULT_CACHE_MAX_STALENESS_MINUTES)) * 60 * 1000;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the maximum staleness in milliseconds
+     */
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    /**
+     * @param staleness the time in milliseconds elapsed since the entry expired
+     * @return true if an entry expired since the given time can be served while being refreshed
+     */
+    public boolean canServeStale(long staleness) {
+        return enabled && staleness <= maxStaleness;
+    }
+
+    public void freshHit() {
+        freshHits.incrementAndGet();
+    }
+
+    public void staleHit() {
+        staleHits.incrementAndGet();
+    }
+
+    public void blockingMiss() {
+        blockingMisses.incrementAndGet();
+    }
+
+    /**
+     * Schedules the refresh of the given key in background, unless a refresh of that key is already pending.
+     *
+     * @param refresh the task refreshing the entry, in charge of storing it in the cache; failures are logged and
+     *            leave the stale entry in place
+     * @return true if the refresh was scheduled
+     */
+    public boolean revalidate(String key, Callable<?> refresh) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        try {
+            getRefreshExecutor().execute(() -> {
+                try {
+                    refresh.call();
+                    refreshes.incrementAndGet();
+                    log.debug("Refreshed " + name + " cache entry " + key);
+                } catch (Exception e) { // NOSONAR
+                    refreshFailures.incrementAndGet();
+                    log.debug(e, e);
+                    log.warn("Unable to refresh " + name + " cache entry " + key + ": " + e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            log.warn("Unable to schedule the refresh of " + name + " cache entry " + key + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return true if a refresh of the given key is pending
+     */
+    public boolean isRefreshing(String key) {
+        return refreshing.contains(key);
+    }
+
+    public long getFreshHits() {
+        return freshHits.get();
+    }
+
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    public long getBlockingMisses() {
+        return blockingMisses.get();
+    }
+
+    /**
+     * @return the number of successful background refreshes
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.get();
+    }
+
+    protected static ExecutorService getRefreshExecutor() {
+        synchronized (StaleCacheRevalidator.class) {
+            if (refreshExecutor == null) {
+                refreshExecutor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                        new DaemonThreadFactory("ConnectCacheRefreshThread"));
+                refreshExecutor.allowCoreThreadTimeOut(true);
+            }
+            return refreshExecutor;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " cache: " + freshHits + " fresh hits, " + staleHits + " stale hits, " + blockingMisses
+                + " blocking misses, " + refreshes + " refreshes, " + refreshFailures + " refresh failures";
+    }
+
+}
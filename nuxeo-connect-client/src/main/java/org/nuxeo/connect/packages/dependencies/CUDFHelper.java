@@ -23,19 +23,29 @@
 package org.nuxeo.connect.packages.dependencies;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.io.IOUtils;
@@ -44,6 +54,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.equinox.p2.cudf.metadata.InstallableUnit;
 import org.eclipse.equinox.p2.cudf.solver.OptimizationFunction.Criteria;
+import org.nuxeo.connect.NuxeoConnectClient;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.packages.PackageManager;
 import org.nuxeo.connect.platform.PlatformId;
@@ -85,12 +96,30 @@ public class CUDFHelper {
      */
     protected Map<String, NuxeoCUDFPackage> CUDF2NuxeoMap = new HashMap<>();
 
+    /**
+     * @since 1.8.2
+     */
+    protected CUDFUniverseIndex universeIndex;
+
     private PlatformId targetPlatform;
 
     private boolean allowSNAPSHOT = defaultAllowSNAPSHOT;
 
     private boolean keep = true;
 
+    /**
+     * Whether to filter the packages involved by a request concurrently by default, false by default.
+     *
+     * @since 1.8.2
+     * @see #setParallel(boolean)
+     */
+    public static final String PARALLEL_PROPERTY = "org.nuxeo.connect.cudf.parallel";
+
+    /**
+     * @since 1.8.2
+     */
+    protected boolean parallel = Boolean.parseBoolean(NuxeoConnectClient.getProperty(PARALLEL_PROPERTY, "false"));
+
     private static final int MATCH_ALL_CUDF_VERSION = -1;
 
     private static final int MATCH_NONE_CUDF_VERSION = -2;
@@ -120,6 +149,16 @@ public class CUDFHelper {
         this.keep = keep;
     }
 
+    /**
+     * @param parallel Whether to filter the packages involved by a request concurrently. Their closure is still
+     *            computed sequentially, since it depends on the listing order of the packages.
+     * @since 1.8.2
+     * @see #PARALLEL_PROPERTY
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     public CUDFHelper(PackageManager pm) {
         this.pm = pm;
     }
@@ -154,65 +193,31 @@ public class CUDFHelper {
             computeInvolvedPackages(removes, involvedPackages, installedOrRequiredSNAPSHOTPackages);
         }
 
-        // Build a map <pkgName,pkg>
-        List<DownloadablePackage> allPackages = getAllPackages();
-        Map<String, List<DownloadablePackage>> allPackagesMap = new HashMap<>();
-        for (DownloadablePackage pkg : allPackages) {
-            String key = pkg.getName();
-            List<DownloadablePackage> list;
-            if (!allPackagesMap.containsKey(key)) {
-                list = new ArrayList<>();
-                allPackagesMap.put(key, list);
-            } else {
-                list = allPackagesMap.get(key);
-            }
-            list.add(pkg);
-            // in the mean time, add installed packages to the involved packages list
-            if (keep && pkg.getPackageState().isInstalled()) {
-                involvedPackages.add(pkg.getName());
-            }
-        }
-        for (DownloadablePackage pkg : allPackages) {
-            computeInvolvedReferences(involvedPackages, installedOrRequiredSNAPSHOTPackages, pkg, allPackagesMap);
+        CUDFUniverseIndex index = getUniverseIndex();
+        if (keep) {
+            involvedPackages.addAll(index.getInstalledNames());
         }
+        computeInvolvedReferences(involvedPackages, installedOrRequiredSNAPSHOTPackages, index);
         installedOrRequiredSNAPSHOTPackages.addAll(getInstalledSNAPSHOTPackages());
+        // the packages to map: the involved ones, the ones providing an involved package, and the not involved
+        // installed or required SNAPSHOT ones to log them, browsed in their listing order
+        BitSet candidates = new BitSet(index.getPackages().size());
+        for (String name : involvedPackages) {
+            index.markPackages(candidates, index.getPackages(name));
+            index.markPackages(candidates, index.getProviders(name));
+        }
+        index.markPackages(candidates, installedOrRequiredSNAPSHOTPackages);
+        IntStream positions = candidates.stream();
+        if (parallel) {
+            positions = positions.parallel();
+        }
+        BitSet mapped = positions.filter(
+                i -> isMapped(index.getPackage(i), involvedPackages, installedOrRequiredSNAPSHOTPackages))
+                                 .collect(BitSet::new, BitSet::set, BitSet::or);
         // for each unique "name-classifier", sort versions so we can attribute them a "CUDF posint" version populate
         // Nuxeo2CUDFMap and the reverse CUDF2NuxeoMap
-        for (DownloadablePackage pkg : allPackages) {
-            // ignore not involved packages
-            if (!involvedPackages.contains(pkg.getName())) {
-                if (installedOrRequiredSNAPSHOTPackages.contains(pkg.getName())) {
-                    log.error("Ignore installedOrRequiredSNAPSHOTPackage " + pkg);
-                }
-
-                // check provides
-                boolean involved = false;
-                PackageDependency[] provides = pkg.getProvides();
-                for (PackageDependency provide : provides) {
-                    if (involvedPackages.contains(provide.getName())) {
-                        involved = true;
-                        break;
-                    }
-                }
-                if (!involved) {
-                    log.debug("Ignore " + pkg + " (not involved by request)");
-                    continue;
-                }
-            }
-
-            // ignore incompatible packages when a targetPlatform is set
-            if (!pkg.getPackageState().isInstalled()
-                    && !TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(pkg, targetPlatform)) {
-                log.debug("Ignore " + pkg + " (incompatible target platform)");
-                continue;
-            }
-            // Exclude SNAPSHOT by default for non Studio packages
-            if (!allowSNAPSHOT && pkg.getVersion().isSnapshot() && pkg.getType() != PackageType.STUDIO
-                    && !installedOrRequiredSNAPSHOTPackages.contains(pkg.getName())) {
-                log.debug("Ignore " + pkg + " (excluded SNAPSHOT)");
-                continue;
-            }
-
+        for (int i = mapped.nextSetBit(0); i >= 0; i = mapped.nextSetBit(i + 1)) {
+            DownloadablePackage pkg = index.getPackage(i);
             // SNAPSHOT upgrade requires referring the remote package
             if (pkg.getVersion().isSnapshot() && pkg.isLocal() && upgradesMap.containsKey(pkg.getName())) {
                 PackageDependency upgrade = upgradesMap.get(pkg.getName());
@@ -255,6 +260,49 @@ public class CUDFHelper {
         }
     }
 
+    /**
+     * @return true if the package must be part of the CUDF universe: involved by the request, compatible with the
+     *         target platform, and not an excluded SNAPSHOT
+     * @since 1.8.2
+     */
+    protected boolean isMapped(DownloadablePackage pkg, Set<String> involvedPackages,
+            Set<String> installedOrRequiredSNAPSHOTPackages) {
+        // ignore not involved packages
+        if (!involvedPackages.contains(pkg.getName())) {
+            if (installedOrRequiredSNAPSHOTPackages.contains(pkg.getName())) {
+                log.error("Ignore installedOrRequiredSNAPSHOTPackage " + pkg);
+            }
+
+            // check provides
+            boolean involved = false;
+            PackageDependency[] provides = pkg.getProvides();
+            for (PackageDependency provide : provides) {
+                if (involvedPackages.contains(provide.getName())) {
+                    involved = true;
+                    break;
+                }
+            }
+            if (!involved) {
+                log.debug("Ignore " + pkg + " (not involved by request)");
+                return false;
+            }
+        }
+
+        // ignore incompatible packages when a targetPlatform is set
+        if (!pkg.getPackageState().isInstalled()
+                && !TargetPlatformFilterHelper.isCompatibleWithTargetPlatform(pkg, targetPlatform)) {
+            log.debug("Ignore " + pkg + " (incompatible target platform)");
+            return false;
+        }
+        // Exclude SNAPSHOT by default for non Studio packages
+        if (!allowSNAPSHOT && pkg.getVersion().isSnapshot() && pkg.getType() != PackageType.STUDIO
+                && !installedOrRequiredSNAPSHOTPackages.contains(pkg.getName())) {
+            log.debug("Ignore " + pkg + " (excluded SNAPSHOT)");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Parse request to compute the list of directly involved packages
      *
@@ -282,6 +330,68 @@ public class CUDFHelper {
         }
     }
 
+    /**
+     * Populates the list of involved packages with the references of the involved packages, browsing them in their
+     * listing order as {@link #computeInvolvedReferences(Set, Set, DownloadablePackage, Map)} would when called for
+     * all the packages.
+     *
+     * @since 1.8.2
+     */
+    protected void computeInvolvedReferences(Set<String> involvedPackages,
+            Set<String> installedOrRequiredSNAPSHOTPackages, CUDFUniverseIndex index) {
+        InvolvedNames involved = new InvolvedNames(involvedPackages);
+        Map<String, List<DownloadablePackage>> allPackagesMap = index.getPackagesByName();
+        BitSet pending = new BitSet(index.getPackages().size());
+        index.markPackages(pending, involvedPackages);
+        for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1)) {
+            computeInvolvedReferences(involved, installedOrRequiredSNAPSHOTPackages, index.getPackage(i),
+                    allPackagesMap);
+            // the packages of the newly involved names are browsed in turn, unless already passed
+            index.markPackages(pending, involved.added);
+            involved.added.clear();
+        }
+    }
+
+    /**
+     * Set of involved package names keeping track of the names added to it.
+     *
+     * @since 1.8.2
+     */
+    protected static class InvolvedNames extends AbstractSet<String> {
+
+        protected final Set<String> names;
+
+        protected final List<String> added = new ArrayList<>();
+
+        public InvolvedNames(Set<String> names) {
+            this.names = names;
+        }
+
+        @Override
+        public boolean add(String name) {
+            if (names.add(name)) {
+                added.add(name);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object name) {
+            return names.contains(name);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Collections.unmodifiableSet(names).iterator();
+        }
+
+        @Override
+        public int size() {
+            return names.size();
+        }
+    }
+
     /**
      * Browse the given package's "dependencies", "conflicts" and "provides" to populate the list of involved packages
      *
@@ -333,13 +443,20 @@ public class CUDFHelper {
     }
 
     protected void addIfStrictSNAPSHOT(Set<String> installedOrRequiredSNAPSHOTPackages, PackageDependency pd) {
-        Version minVersion = pd.getVersionRange().getMinVersion();
-        Version maxVersion = pd.getVersionRange().getMaxVersion();
-        if (minVersion != null && minVersion.isSnapshot() && maxVersion != null && maxVersion.isSnapshot()) {
+        if (isStrictSNAPSHOT(pd)) {
             installedOrRequiredSNAPSHOTPackages.add(pd.getName());
         }
     }
 
+    /**
+     * @since 1.8.2
+     */
+    protected static boolean isStrictSNAPSHOT(PackageDependency pd) {
+        Version minVersion = pd.getVersionRange().getMinVersion();
+        Version maxVersion = pd.getVersionRange().getMaxVersion();
+        return minVersion != null && minVersion.isSnapshot() && maxVersion != null && maxVersion.isSnapshot();
+    }
+
     protected List<String> getInstalledSNAPSHOTPackages() {
         List<String> installedSNAPSHOTPackages = new ArrayList<>();
         for (DownloadablePackage pkg : pm.listInstalledPackages()) {
@@ -354,6 +471,27 @@ public class CUDFHelper {
         return pm.listAllPackages();
     }
 
+    /**
+     * @param universeIndex the index of the packages returned by {@link #getAllPackages()}, to be used instead of
+     *            indexing them on each mapping
+     * @since 1.8.2
+     */
+    public void setUniverseIndex(CUDFUniverseIndex universeIndex) {
+        this.universeIndex = universeIndex;
+    }
+
+    /**
+     * @return the index set with {@link #setUniverseIndex(CUDFUniverseIndex)}, or a new index of
+     *         {@link #getAllPackages()}
+     * @since 1.8.2
+     */
+    protected CUDFUniverseIndex getUniverseIndex() {
+        if (universeIndex != null) {
+            return universeIndex;
+        }
+        return new CUDFUniverseIndex(null, getAllPackages());
+    }
+
     /**
      * @param cudfKey in the form "pkgName-pkgCUDFVersion"
      * @return NuxeoCUDFPackage corresponding to the given cudfKey
@@ -392,29 +530,128 @@ public class CUDFHelper {
      */
     public String getCUDFFile() throws DependencyException {
         StringBuilder sb = new StringBuilder();
-        for (String cudfKey : CUDF2NuxeoMap.keySet()) {
-            sb.append(formatCUDF(CUDF2NuxeoMap.get(cudfKey)));
+        for (NuxeoCUDFPackage cudfPackage : CUDF2NuxeoMap.values()) {
+            appendCUDF(sb, cudfPackage);
             sb.append(newLine);
         }
         return sb.toString();
     }
 
+    /**
+     * Writes the CUDF universe and request stanza, one package stanza at a time.
+     *
+     * @since 1.8.2
+     * @see #getCUDFFile(PackageDependency[], PackageDependency[], PackageDependency[])
+     */
+    public void writeCUDFFile(Writer out, PackageDependency[] pkgInstall, PackageDependency[] pkgRemove,
+            PackageDependency[] pkgUpgrade) throws DependencyException, IOException {
+        initMapping(pkgInstall, pkgRemove, pkgUpgrade);
+        writeCUDF(out, pkgInstall, pkgRemove, pkgUpgrade);
+    }
+
+    /**
+     * Writes the CUDF universe of the current mapping and the request stanza.
+     *
+     * @since 1.8.2
+     */
+    protected void writeCUDF(Writer out, PackageDependency[] pkgInstall, PackageDependency[] pkgRemove,
+            PackageDependency[] pkgUpgrade) throws DependencyException, IOException {
+        // a single buffer reused for all the stanzas
+        StringBuilder sb = new StringBuilder(1024);
+        for (NuxeoCUDFPackage cudfPackage : CUDF2NuxeoMap.values()) {
+            sb.setLength(0);
+            appendCUDF(sb, cudfPackage);
+            sb.append(newLine);
+            out.append(sb);
+        }
+        sb.setLength(0);
+        appendCUDFRequest(sb, pkgInstall, pkgRemove, pkgUpgrade);
+        out.append(sb);
+    }
+
+    /**
+     * Returns the CUDF universe and request stanza, formatted into a single byte buffer, to be read by the p2cudf
+     * parser without building an intermediate string. The parser still builds the solver model from that text.
+     *
+     * @return an input stream over the buffer
+     * @since 1.8.2
+     */
+    public InputStream getCUDFInputStream(PackageDependency[] pkgInstall, PackageDependency[] pkgRemove,
+            PackageDependency[] pkgUpgrade) throws DependencyException {
+        initMapping(pkgInstall, pkgRemove, pkgUpgrade);
+        // sized once the packages to write are known
+        CUDFOutputStream bytes = new CUDFOutputStream(CUDF2NuxeoMap.size() * 256 + 1024);
+        try (Writer out = new OutputStreamWriter(bytes, Charset.defaultCharset())) {
+            writeCUDF(out, pkgInstall, pkgRemove, pkgUpgrade);
+        } catch (IOException e) {
+            // no I/O on a byte array
+            throw new DependencyException(e.getMessage(), e);
+        }
+        return bytes.toInputStream();
+    }
+
+    /**
+     * Byte array output stream giving back its content as an input stream without copy.
+     *
+     * @since 1.8.2
+     */
+    protected static class CUDFOutputStream extends java.io.ByteArrayOutputStream {
+
+        public CUDFOutputStream(int size) {
+            super(size);
+        }
+
+        public ByteArrayInputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
     /**
      * @return A string representation of a {@link NuxeoCUDFPackage}
      * @since 1.4.20
      */
     public String formatCUDF(NuxeoCUDFPackage cudfPackage) throws DependencyException {
-        StringBuilder sb2 = new StringBuilder();
-        sb2.append(cudfPackage.getCUDFStanza());
-        sb2.append(CUDFPackage.TAG_DEPENDS + formatCUDFDeps(cudfPackage.getDependencies(), false, true) + newLine);
+        StringBuilder sb = new StringBuilder();
+        appendCUDF(sb, cudfPackage);
+        return sb.toString();
+    }
+
+    /**
+     * @since 1.8.2
+     * @see #formatCUDF(NuxeoCUDFPackage)
+     */
+    protected void appendCUDF(StringBuilder sb, NuxeoCUDFPackage cudfPackage) throws DependencyException {
+        sb.append(cudfPackage.getCUDFStanza());
+        sb.append(CUDFPackage.TAG_DEPENDS);
+        appendCUDFDeps(sb, cudfPackage.getDependencies(), false, true, VersionMatchMappingPolicy.ALL_WHEN_NOT_FOUND);
+        sb.append(newLine);
         // Add conflicts to other versions of the same package
-        String conflictsFormatted = formatCUDFDeps(cudfPackage.getConflicts(), false, false,
-                VersionMatchMappingPolicy.NONE_WHEN_NOT_FOUND);
-        conflictsFormatted += (conflictsFormatted.trim().length() > 0 ? ", " : "") + cudfPackage.getCUDFName() + " != "
-                + cudfPackage.getCUDFVersion();
-        sb2.append(CUDFPackage.TAG_CONFLICTS + conflictsFormatted + newLine);
-        sb2.append(CUDFPackage.TAG_PROVIDES + formatCUDFDeps(cudfPackage.getProvides(), false, false) + newLine);
-        return sb2.toString();
+        sb.append(CUDFPackage.TAG_CONFLICTS);
+        if (appendCUDFDeps(sb, cudfPackage.getConflicts(), false, false,
+                VersionMatchMappingPolicy.NONE_WHEN_NOT_FOUND)) {
+            sb.append(", ");
+        }
+        sb.append(cudfPackage.getCUDFName()).append(" != ").append(cudfPackage.getCUDFVersion()).append(newLine);
+        sb.append(CUDFPackage.TAG_PROVIDES);
+        appendCUDFDeps(sb, cudfPackage.getProvides(), false, false, VersionMatchMappingPolicy.ALL_WHEN_NOT_FOUND);
+        sb.append(newLine);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    protected void appendCUDFRequest(StringBuilder sb, PackageDependency[] pkgInstall, PackageDependency[] pkgRemove,
+            PackageDependency[] pkgUpgrade) throws DependencyException {
+        sb.append(CUDFPackage.TAG_REQUEST).append(newLine);
+        sb.append(CUDFPackage.TAG_INSTALL);
+        appendCUDFDeps(sb, pkgInstall, true, true, VersionMatchMappingPolicy.ALL_WHEN_NOT_FOUND);
+        sb.append(newLine);
+        sb.append(CUDFPackage.TAG_REMOVE);
+        appendCUDFDeps(sb, pkgRemove, true, true, VersionMatchMappingPolicy.ALL_WHEN_NOT_FOUND);
+        sb.append(newLine);
+        sb.append(CUDFPackage.TAG_UPGRADE);
+        appendCUDFDeps(sb, pkgUpgrade, true, true, VersionMatchMappingPolicy.ALL_WHEN_NOT_FOUND);
+        sb.append(newLine);
     }
 
     protected String formatCUDFDeps(PackageDependency[] dependencies, boolean failOnError, boolean warnOnError)
@@ -427,10 +664,23 @@ public class CUDFHelper {
      */
     protected String formatCUDFDeps(PackageDependency[] dependencies, boolean failOnError, boolean warnOnError,
             VersionMatchMappingPolicy versionMatchMappingPolicy) throws DependencyException {
+        StringBuilder sb = new StringBuilder();
+        appendCUDFDeps(sb, dependencies, failOnError, warnOnError, versionMatchMappingPolicy);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the comma separated CUDF formatted dependencies.
+     *
+     * @return true if at least one dependency was appended
+     * @since 1.8.2
+     */
+    protected boolean appendCUDFDeps(StringBuilder sb, PackageDependency[] dependencies, boolean failOnError,
+            boolean warnOnError, VersionMatchMappingPolicy versionMatchMappingPolicy) throws DependencyException {
         if (dependencies == null) {
-            return "";
+            return false;
         }
-        StringBuilder sb = new StringBuilder();
+        int start = sb.length();
         for (PackageDependency packageDependency : dependencies) {
             String cudfName = NuxeoCUDFPackage.getCUDFName(packageDependency);
             Map<Version, NuxeoCUDFPackage> versionsMap = nuxeo2CUDFMap.get(cudfName);
@@ -464,24 +714,24 @@ public class CUDFHelper {
             }
             if (cudfMinVersion == cudfMaxVersion) {
                 if (cudfMinVersion == MATCH_ALL_CUDF_VERSION) {
-                    sb.append(cudfName + ", ");
+                    sb.append(cudfName).append(", ");
                 } else {
-                    sb.append(cudfName + " = " + cudfMinVersion + ", ");
+                    sb.append(cudfName).append(" = ").append(cudfMinVersion).append(", ");
                 }
                 continue;
             }
             if (cudfMinVersion != MATCH_ALL_CUDF_VERSION && cudfMinVersion != MATCH_NONE_CUDF_VERSION) {
-                sb.append(cudfName + " >= " + cudfMinVersion + ", ");
+                sb.append(cudfName).append(" >= ").append(cudfMinVersion).append(", ");
             }
             if (cudfMaxVersion != MATCH_ALL_CUDF_VERSION && cudfMaxVersion != MATCH_NONE_CUDF_VERSION) {
-                sb.append(cudfName + " <= " + cudfMaxVersion + ", ");
+                sb.append(cudfName).append(" <= ").append(cudfMaxVersion).append(", ");
             }
         }
-        if (sb.length() > 0) { // remove ending comma
-            return sb.toString().substring(0, sb.length() - 2);
-        } else {
-            return "";
+        if (sb.length() > start) { // remove ending comma
+            sb.setLength(sb.length() - 2);
+            return true;
         }
+        return false;
     }
 
     /**
@@ -649,13 +899,14 @@ public class CUDFHelper {
      */
     public String getCUDFFile(PackageDependency[] pkgInstall, PackageDependency[] pkgRemove,
             PackageDependency[] pkgUpgrade) throws DependencyException {
-        initMapping(pkgInstall, pkgRemove, pkgUpgrade);
-        StringBuilder sb = new StringBuilder(getCUDFFile());
-        sb.append(CUDFPackage.TAG_REQUEST + newLine);
-        sb.append(CUDFPackage.TAG_INSTALL + formatCUDFDeps(pkgInstall, true, true) + newLine);
-        sb.append(CUDFPackage.TAG_REMOVE + formatCUDFDeps(pkgRemove, true, true) + newLine);
-        sb.append(CUDFPackage.TAG_UPGRADE + formatCUDFDeps(pkgUpgrade, true, true) + newLine);
-        return sb.toString();
+        StringWriter out = new StringWriter();
+        try {
+            writeCUDFFile(out, pkgInstall, pkgRemove, pkgUpgrade);
+        } catch (IOException e) {
+            // no I/O on a string
+            throw new DependencyException(e.getMessage(), e);
+        }
+        return out.toString();
     }
 
     /**
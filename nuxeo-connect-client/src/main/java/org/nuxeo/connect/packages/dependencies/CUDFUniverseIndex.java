@@ -0,0 +1,266 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages.dependencies;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.update.PackageDependency;
+import org.nuxeo.connect.update.PackageState;
+
+/**
+ * Immutable index of the packages of a CUDF universe, by name and by provided name, used by the {@link CUDFHelper} to
+ * compute the packages involved by a request without browsing the whole universe.
+ * <p>
+ * The packages keep their listing order, given by their position, so that the CUDF universe does not depend on
+ * whether it was built from an index or not. An index is derived from the previous one when the packages change,
+ * only the names whose packages appeared, disappeared or changed of state being indexed again.
+ *
+ * @since 1.8.2
+ */
+public class CUDFUniverseIndex {
+
+    protected final Object revision;
+
+    protected final List<DownloadablePackage> packages;
+
+    protected final Map<String, Integer> positions;
+
+    protected final Map<String, PackageState> states;
+
+    protected final Map<String, List<DownloadablePackage>> packagesByName;
+
+    protected final Map<String, List<DownloadablePackage>> providersByName;
+
+    protected final Set<String> installedNames;
+
+    /**
+     * Indexes the given packages.
+     *
+     * @param revision a value identifying the given packages, see {@link #isFor(Object)}
+     */
+    public CUDFUniverseIndex(Object revision, List<DownloadablePackage> packages) {
+        this(null, revision, packages);
+    }
+
+    /**
+     * Indexes the given packages, reusing what was indexed by the previous index for the unchanged package names.
+     *
+     * @param previous the previous index, null to index all the packages
+     * @param revision a value identifying the given packages, see {@link #isFor(Object)}
+     */
+    public CUDFUniverseIndex(CUDFUniverseIndex previous, Object revision, List<DownloadablePackage> packages) {
+        this.revision = revision;
+        this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+        positions = new HashMap<>();
+        states = new HashMap<>();
+        Set<String> changedNames = new HashSet<>();
+        Set<String> changedProvides = new HashSet<>();
+        for (int i = 0; i < packages.size(); i++) {
+            DownloadablePackage pkg = packages.get(i);
+            positions.put(pkg.getId(), i);
+            states.put(pkg.getId(), pkg.getPackageState());
+            if (previous != null) {
+                DownloadablePackage previousPkg = previous.getPackage(pkg.getId());
+                if (previousPkg != pkg || previous.states.get(pkg.getId()) != pkg.getPackageState()) {
+                    changedNames.add(pkg.getName());
+                    addProvides(changedProvides, pkg);
+                    if (previousPkg != null) {
+                        changedNames.add(previousPkg.getName());
+                        addProvides(changedProvides, previousPkg);
+                    }
+                }
+            }
+        }
+        if (previous == null) {
+            packagesByName = new HashMap<>();
+            providersByName = new HashMap<>();
+            installedNames = new HashSet<>();
+            for (DownloadablePackage pkg : packages) {
+                index(pkg);
+            }
+            return;
+        }
+        for (DownloadablePackage previousPkg : previous.packages) {
+            if (!positions.containsKey(previousPkg.getId())) {
+                changedNames.add(previousPkg.getName());
+                addProvides(changedProvides, previousPkg);
+            }
+        }
+        packagesByName = new HashMap<>(previous.packagesByName);
+        packagesByName.keySet().removeAll(changedNames);
+        providersByName = new HashMap<>(previous.providersByName);
+        providersByName.keySet().removeAll(changedProvides);
+        installedNames = new HashSet<>(previous.installedNames);
+        installedNames.removeAll(changedNames);
+        if (!changedNames.isEmpty() || !changedProvides.isEmpty()) {
+            for (DownloadablePackage pkg : packages) {
+                if (changedNames.contains(pkg.getName())) {
+                    indexName(pkg);
+                }
+                for (PackageDependency provide : pkg.getProvides()) {
+                    if (changedProvides.contains(provide.getName())) {
+                        indexProvide(pkg, provide.getName());
+                    }
+                }
+            }
+        }
+        // the positions of the unchanged packages may have moved
+        Comparator<DownloadablePackage> byPosition = Comparator.comparing(pkg -> positions.get(pkg.getId()));
+        packagesByName.replaceAll((name, list) -> isSorted(list) ? list : sorted(list, byPosition));
+        providersByName.replaceAll((name, list) -> isSorted(list) ? list : sorted(list, byPosition));
+    }
+
+    protected static void addProvides(Set<String> names, DownloadablePackage pkg) {
+        for (PackageDependency provide : pkg.getProvides()) {
+            names.add(provide.getName());
+        }
+    }
+
+    protected void index(DownloadablePackage pkg) {
+        indexName(pkg);
+        for (PackageDependency provide : pkg.getProvides()) {
+            indexProvide(pkg, provide.getName());
+        }
+    }
+
+    protected void indexName(DownloadablePackage pkg) {
+        packagesByName.computeIfAbsent(pkg.getName(), k -> new ArrayList<>()).add(pkg);
+        if (pkg.getPackageState().isInstalled()) {
+            installedNames.add(pkg.getName());
+        }
+    }
+
+    protected void indexProvide(DownloadablePackage pkg, String name) {
+        List<DownloadablePackage> providers = providersByName.computeIfAbsent(name, k -> new ArrayList<>());
+        // a package may provide the same name more than once
+        if (providers.isEmpty() || providers.get(providers.size() - 1) != pkg) {
+            providers.add(pkg);
+        }
+    }
+
+    protected boolean isSorted(List<DownloadablePackage> list) {
+        int last = -1;
+        for (DownloadablePackage pkg : list) {
+            int position = positions.get(pkg.getId());
+            if (position <= last) {
+                return false;
+            }
+            last = position;
+        }
+        return true;
+    }
+
+    protected static List<DownloadablePackage> sorted(List<DownloadablePackage> list,
+            Comparator<DownloadablePackage> comparator) {
+        List<DownloadablePackage> sorted = new ArrayList<>(list);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    /**
+     * @return true if this index was built for the given revision, false if the revision is null
+     */
+    public boolean isFor(Object revision) {
+        return revision != null && revision == this.revision;
+    }
+
+    /**
+     * @return the indexed packages, in their listing order
+     */
+    public List<DownloadablePackage> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return the package at the given position
+     */
+    public DownloadablePackage getPackage(int position) {
+        return packages.get(position);
+    }
+
+    /**
+     * @return the package with the given id, null if not indexed
+     */
+    public DownloadablePackage getPackage(String id) {
+        Integer position = positions.get(id);
+        return position == null ? null : packages.get(position);
+    }
+
+    /**
+     * @return the packages by name, in their listing order
+     */
+    public Map<String, List<DownloadablePackage>> getPackagesByName() {
+        return Collections.unmodifiableMap(packagesByName);
+    }
+
+    /**
+     * @return the packages with the given name, in their listing order
+     */
+    public List<DownloadablePackage> getPackages(String name) {
+        return packagesByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @return the packages providing the given name, in their listing order
+     */
+    public List<DownloadablePackage> getProviders(String name) {
+        return providersByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @return the names of the installed packages
+     */
+    public Set<String> getInstalledNames() {
+        return Collections.unmodifiableSet(installedNames);
+    }
+
+    /**
+     * Sets the positions of the packages with the given names.
+     */
+    public void markPackages(BitSet positionSet, Collection<String> names) {
+        for (String name : names) {
+            markPackages(positionSet, getPackages(name));
+        }
+    }
+
+    /**
+     * Sets the positions of the given packages.
+     */
+    public void markPackages(BitSet positionSet, List<DownloadablePackage> pkgs) {
+        for (DownloadablePackage pkg : pkgs) {
+            positionSet.set(positions.get(pkg.getId()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CUDFUniverseIndex(packages=" + packages.size() + ", names=" + packagesByName.size() + ")";
+    }
+
+}
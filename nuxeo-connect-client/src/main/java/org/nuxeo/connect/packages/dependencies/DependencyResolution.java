@@ -85,6 +85,11 @@ public class DependencyResolution {
      */
     protected Map<String, Set<String>> reinstallForNewlyRemovedOptionals = new HashMap<>();
 
+    /**
+     * @since 1.8.2
+     */
+    protected boolean optimal = true;
+
     public DependencyResolution() {
 
     }
@@ -93,6 +98,33 @@ public class DependencyResolution {
         markAsFailed(ex.getMessage());
     }
 
+    /**
+     * Copy constructor, the copy being independent from the given resolution.
+     *
+     * @since 1.8.2
+     */
+    public DependencyResolution(DependencyResolution other) {
+        synchronized (other) {
+            resolution = other.resolution;
+            sorted = other.sorted;
+            failedMessage = other.failedMessage;
+            optimal = other.optimal;
+            allPackages.putAll(other.allPackages);
+            newPackagesToDownload.putAll(other.newPackagesToDownload);
+            localPackagesToInstall.putAll(other.localPackagesToInstall);
+            localPackagesToUpgrade.putAll(other.localPackagesToUpgrade);
+            localPackagesToRemove.putAll(other.localPackagesToRemove);
+            localUnchangedPackages.putAll(other.localUnchangedPackages);
+            orderedInstallablePackages.addAll(other.orderedInstallablePackages);
+            orderedRemovablePackages.addAll(other.orderedRemovablePackages);
+            allPackagesToDownload.addAll(other.allPackagesToDownload);
+            other.reinstallForNewlyInstalledOptionals.forEach(
+                    (id, optionals) -> reinstallForNewlyInstalledOptionals.put(id, new HashSet<>(optionals)));
+            other.reinstallForNewlyRemovedOptionals.forEach(
+                    (id, optionals) -> reinstallForNewlyRemovedOptionals.put(id, new HashSet<>(optionals)));
+        }
+    }
+
     /**
      * @deprecated Since 1.4, use {@link #markAsFailed(String)} instead
      */
@@ -129,6 +161,22 @@ public class DependencyResolution {
         return !resolution;
     }
 
+    /**
+     * @return false if the solver was stopped before proving that the resolution is the best one according to its
+     *         criteria, the resolution being valid nonetheless
+     * @since 1.8.2
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    public void setOptimal(boolean optimal) {
+        this.optimal = optimal;
+    }
+
     public boolean addPackage(String pkgName, Version v) {
         return addPackage(pkgName, v, false);
     }
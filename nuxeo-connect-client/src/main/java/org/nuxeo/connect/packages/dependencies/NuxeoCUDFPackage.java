@@ -94,10 +94,10 @@ class NuxeoCUDFPackage implements CUDFPackage {
 
     @Override
     public String getCUDFStanza() {
-        StringBuffer sb = new StringBuffer();
-        sb.append(TAG_PACKAGE + cudfName + newLine);
-        sb.append(TAG_VERSION + cudfVersion + newLine);
-        sb.append(TAG_INSTALLED + installed + newLine);
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(TAG_PACKAGE).append(cudfName).append(newLine);
+        sb.append(TAG_VERSION).append(cudfVersion).append(newLine);
+        sb.append(TAG_INSTALLED).append(installed).append(newLine);
         return sb.toString();
     }
 
@@ -21,10 +21,15 @@
 
 package org.nuxeo.connect.packages.dependencies;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.IOUtils;
@@ -35,8 +40,12 @@ import org.eclipse.equinox.p2.cudf.metadata.InstallableUnit;
 import org.eclipse.equinox.p2.cudf.solver.ProfileChangeRequest;
 import org.eclipse.equinox.p2.cudf.solver.SimplePlanner;
 import org.eclipse.equinox.p2.cudf.solver.SolverConfiguration;
+import org.nuxeo.connect.DaemonThreadFactory;
+import org.nuxeo.connect.NuxeoConnectClient;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.packages.PackageManager;
+import org.nuxeo.connect.packages.PackageManagerImpl;
+import org.nuxeo.connect.packages.PackageUniverse;
 import org.nuxeo.connect.platform.PlatformId;
 import org.nuxeo.connect.update.PackageDependency;
 import org.nuxeo.connect.update.Version;
@@ -83,12 +92,41 @@ public class P2CUDFDependencyResolver implements DependencyResolver {
      */
     public static final String SOLVER_CRITERIA_LESS_OUTDATED_WITH_REMOVE = "+removed,-notuptodate,-changed,-new,-versionchanged";
 
+    /**
+     * Maximum time in seconds given to the solver to find the optimal solution, the best solution found so far being
+     * used once elapsed.
+     *
+     * @since 1.8.2
+     */
+    public static final String SOLVER_TIMEOUT_PROPERTY = "org.nuxeo.connect.solver.timeout";
+
+    /**
+     * @since 1.8.2
+     */
+    public static final String DEFAULT_SOLVER_TIMEOUT = "30";
+
+    /**
+     * Time given to the solver to stop once its timeout is reached.
+     *
+     * @since 1.8.2
+     */
+    protected static final long SOLVER_STOP_TIMEOUT_MS = 5000;
+
+    protected static final ThreadFactory SOLVER_THREAD_FACTORY = new DaemonThreadFactory("ConnectSolverThread");
+
     protected static Log log = LogFactory.getLog(P2CUDFDependencyResolver.class);
 
     protected PackageManager pm;
 
     protected CUDFHelper cudfHelper;
 
+    /**
+     * The index of the packages used by the last resolution, kept up to date with the package manager.
+     *
+     * @since 1.8.2
+     */
+    protected volatile CUDFUniverseIndex universeIndex;
+
     protected P2CUDFDependencyResolver() {
     }
 
@@ -154,13 +192,18 @@ public class P2CUDFDependencyResolver implements DependencyResolver {
         cudfHelper.setTargetPlatform(targetPlatform);
         cudfHelper.setAllowSNAPSHOT(allowSNAPSHOT);
         cudfHelper.setKeep(doKeep);
-        // generate CUDF package universe and request stanza
-        String cudf = cudfHelper.getCUDFFile(str2PkgDep(pkgInstall), str2PkgDep(pkgRemove), str2PkgDep(pkgUpgrade));
-        log.debug("CUDF request:\n" + cudf);
+        cudfHelper.setUniverseIndex(getUniverseIndex());
+        // generate CUDF package universe and request stanza, buffered for the parser
+        InputStream cudf = cudfHelper.getCUDFInputStream(str2PkgDep(pkgInstall), str2PkgDep(pkgRemove),
+                str2PkgDep(pkgUpgrade));
+        if (log.isDebugEnabled()) {
+            log.debug("CUDF request:\n" + toString(cudf));
+        }
 
-        // pass to p2cudf for solving
-        ProfileChangeRequest req = new Parser().parse(IOUtils.toInputStream(cudf));
+        // pass to p2cudf for solving, its parser building the model from the CUDF text
+        ProfileChangeRequest req = new Parser().parse(cudf);
         SolverConfiguration configuration = new SolverConfiguration(solverCriteria);
+        configuration.timeout = getSolverTimeout() / 1000 + "s";
         // Upgrade + verbose + explain is unsupported
         // verbose + explain changes results
         // if (log.isTraceEnabled()) {
@@ -168,22 +211,18 @@ public class P2CUDFDependencyResolver implements DependencyResolver {
         // configuration.explain = true;
         // }
         SimplePlanner planner = new SimplePlanner();
-        planner.getSolutionFor(req, configuration);
-        planner.stopSolver();
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            // Hazardous wait for the solver stop
-        }
+        boolean completed = solve(planner, req, configuration);
         Collection<InstallableUnit> solution = planner.getBestSolutionFoundSoFar();
         if (log.isTraceEnabled()) {
             log.trace(planner.getExplanation());
         }
-        if (!planner.isSolutionOptimal()) {
+        boolean optimal = completed && planner.isSolutionOptimal();
+        if (!optimal) {
             log.warn("The solution found might not be optimal");
         }
         DependencyResolution resolution = cudfHelper.buildResolution(solution, planner.getSolutionDetails(),
                 isSubResolution);
+        resolution.setOptimal(optimal);
         if (!doKeep) {
             // Make sub-resolution to remove all packages that are not part of
             // our target list
@@ -204,11 +243,103 @@ public class P2CUDFDependencyResolver implements DependencyResolver {
                     subRemove.add(pkgId);
                 }
             }
-            resolution = resolve(subInstall, subRemove, null, targetPlatform, allowSNAPSHOT, true);
+            DependencyResolution subResolution = resolve(subInstall, subRemove, null, targetPlatform, allowSNAPSHOT,
+                    true);
+            subResolution.setOptimal(optimal && subResolution.isOptimal());
+            resolution = subResolution;
         }
         return resolution;
     }
 
+    /**
+     * Runs the solver in a dedicated thread, stopping it once the {@link #SOLVER_TIMEOUT_PROPERTY timeout} is reached.
+     *
+     * @return true if the solver completed before the timeout, false if it was stopped
+     * @since 1.8.2
+     */
+    protected boolean solve(SimplePlanner planner, ProfileChangeRequest req, SolverConfiguration configuration)
+            throws DependencyException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread solver = SOLVER_THREAD_FACTORY.newThread(() -> {
+            try {
+                planner.getSolutionFor(req, configuration);
+            } catch (Throwable t) { // NOSONAR rethrown in the calling thread
+                failure.set(t);
+            }
+        });
+        long timeout = getSolverTimeout();
+        boolean completed;
+        try {
+            solver.start();
+            solver.join(timeout);
+            completed = !solver.isAlive();
+            if (!completed) {
+                log.warn(String.format("Solver timeout of %sms reached, keeping the best solution found so far",
+                        timeout));
+            }
+            planner.stopSolver();
+            // wait for the solver to actually stop
+            solver.join(SOLVER_STOP_TIMEOUT_MS);
+            if (solver.isAlive()) {
+                log.warn("Solver still running after being stopped");
+            }
+        } catch (InterruptedException e) {
+            planner.stopSolver();
+            Thread.currentThread().interrupt();
+            throw new DependencyException("Interrupted while solving dependencies", e);
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new DependencyException(t.getMessage(), t);
+        }
+        return completed;
+    }
+
+    /**
+     * @return the index of all the packages, reused as long as the {@link PackageManagerImpl#getUniverse() package
+     *         universe} did not change, and updated from the previous one otherwise
+     * @since 1.8.2
+     */
+    protected CUDFUniverseIndex getUniverseIndex() {
+        PackageUniverse universe = pm instanceof PackageManagerImpl ? ((PackageManagerImpl) pm).getUniverse() : null;
+        CUDFUniverseIndex index = universeIndex;
+        if (index == null || !index.isFor(universe)) {
+            List<DownloadablePackage> packages = universe != null ? new ArrayList<>(
+                    universe.getPackagesById().values()) : pm.listAllPackages();
+            index = new CUDFUniverseIndex(index, universe, packages);
+            log.debug("Indexed " + index);
+            universeIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * @see #SOLVER_TIMEOUT_PROPERTY
+     * @since 1.8.2
+     */
+    protected static long getSolverTimeout() {
+        return NuxeoConnectClient.getIntProperty(SOLVER_TIMEOUT_PROPERTY, DEFAULT_SOLVER_TIMEOUT, 1) * 1000L;
+    }
+
+    /**
+     * @return the content of the stream, reset to be read again
+     */
+    private static String toString(InputStream cudf) {
+        try {
+            cudf.mark(Integer.MAX_VALUE);
+            String content = IOUtils.toString(cudf, Charset.defaultCharset());
+            cudf.reset();
+            return content;
+        } catch (IOException e) {
+            // no I/O on a byte array
+            throw new IllegalStateException(e);
+        }
+    }
+
     private PackageDependency[] str2PkgDep(List<String> pkgList) {
         List<PackageDependency> list = new ArrayList<>();
         if (pkgList == null || pkgList.size() == 0) {
@@ -22,12 +22,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -43,10 +48,13 @@ import org.nuxeo.connect.connector.ConnectSecurityError;
 import org.nuxeo.connect.connector.ConnectServerError;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.data.PackageListSnapshot;
 import org.nuxeo.connect.data.SubscriptionStatus;
+import org.nuxeo.connect.packages.StaleCacheRevalidator;
 import org.nuxeo.connect.platform.PlatformId;
 import org.nuxeo.connect.update.PackageType;
 
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -82,6 +90,7 @@ public class TestConnectHttpConnector {
                 NuxeoConnectClient.getDownloadManager().removeDownloadingPackage(downloadingPackage.getId());
             }
         } finally {
+            httpConnector.close();
             mockServer.shutdown();
         }
     }
@@ -516,6 +525,322 @@ public class TestConnectHttpConnector {
 
     }
 
+    @Test
+    public void successive_calls_reuse_the_same_connection() throws Exception {
+        // GIVEN a server answering with OK responses
+        mockServer.enqueue(buildDefaultResponse().setBody("[]"));
+        mockServer.enqueue(buildDefaultResponse().setBody("[]"));
+        mockServer.enqueue(buildDefaultResponse().setResponseCode(HttpServletResponse.SC_UNAUTHORIZED));
+        mockServer.enqueue(buildDefaultResponse());
+
+        // WHEN listing several package types, then getting an error, then getting the connect status
+        httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+        httpConnector.getDownloads(PackageType.HOT_FIX, testTargetPlatform);
+        try {
+            httpConnector.getConnectStatus();
+            Fail.failBecauseExceptionWasNotThrown(ConnectSecurityError.class);
+        } catch (ConnectSecurityError e) {
+            // expected
+        }
+        httpConnector.getConnectStatus();
+
+        // THEN all the requests should have been sent on a single pooled connection
+        assertEquals(0, mockServer.takeRequest().getSequenceNumber());
+        assertEquals(1, mockServer.takeRequest().getSequenceNumber());
+        assertEquals(2, mockServer.takeRequest().getSequenceNumber());
+        assertEquals(3, mockServer.takeRequest().getSequenceNumber());
+        assertEquals(4, mockServer.getRequestCount());
+    }
+
+    @Test
+    public void it_should_list_all_types_in_a_single_call_in_bulk_mode() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server supporting bulk listing
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"addon1\", \"type\" : \"addon\"}, "
+                    + "{\"name\" : \"hotfix1\", \"type\" : \"hotfix\"},"
+                    + "{\"name\" : \"addon2\", \"type\" : \"addon\"}]"));
+
+            // WHEN getting all the downloads
+            Map<PackageType, List<DownloadablePackage>> downloads = httpConnector.getAllDownloads(testTargetPlatform);
+
+            // THEN a single call was made and the packages are grouped by type
+            assertThatPathIsCalled(mockServer, AbstractConnectConnector.GET_DOWNLOADS_SUFFIX + "/"
+                    + AbstractConnectConnector.GET_ALL_DOWNLOADS_SUFFIX + "?targetPlatform="
+                    + testTargetPlatform.asString());
+            assertThat(downloads.get(PackageType.ADDON)).extracting(DownloadablePackage::getName)
+                                                        .containsExactly("addon1", "addon2");
+            assertThat(downloads.get(PackageType.HOT_FIX)).extracting(DownloadablePackage::getName)
+                                                          .containsExactly("hotfix1");
+            assertThat(downloads.get(PackageType.STUDIO)).isEmpty();
+
+            // AND each type is cached on disk
+            assertThat(httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform)).hasSize(2);
+            assertThat(httpConnector.getDownloads(PackageType.STUDIO, testTargetPlatform)).isEmpty();
+            assertThat(httpConnector.getAllDownloads(testTargetPlatform).get(PackageType.HOT_FIX)).hasSize(1);
+            assertEquals(1, mockServer.getRequestCount());
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_fall_back_on_per_type_calls_when_bulk_mode_is_not_supported() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server which does not know the bulk listing
+            mockServer.enqueue(buildDefaultResponse().setResponseCode(404).setBody("<html>Not Found</html>"));
+
+            // WHEN getting all the downloads twice
+            assertThat(httpConnector.getAllDownloads(testTargetPlatform)).isNull();
+            assertThat(httpConnector.getAllDownloads(testTargetPlatform)).isNull();
+
+            // THEN the server was only called once
+            assertEquals(1, mockServer.getRequestCount());
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_keep_bulk_mode_after_an_unreadable_payload() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server answering a truncated payload, then a complete one
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"addon1\", \"type\" : \"addon\"}, {\"na"));
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"addon1\", \"type\" : \"addon\"}]"));
+
+            // WHEN getting all the downloads twice
+            assertThat(httpConnector.getAllDownloads(testTargetPlatform)).isNull();
+            Map<PackageType, List<DownloadablePackage>> downloads = httpConnector.getAllDownloads(testTargetPlatform);
+
+            // THEN the bulk listing was called again
+            assertEquals(2, mockServer.getRequestCount());
+            assertThat(downloads.get(PackageType.ADDON)).extracting(DownloadablePackage::getName)
+                                                        .containsExactly("addon1");
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_get_download_descriptors_in_a_single_call_in_bulk_mode() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server supporting bulk download descriptors
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test1\", \"version\" : \"1.0.0\"}, "
+                    + "{\"name\" : \"test2\", \"version\" : \"1.0.0\"}]"));
+
+            // WHEN getting the downloads of several packages
+            Map<String, DownloadingPackage> downloads = httpConnector.getDownloadsById(
+                    Arrays.asList("test1-1.0.0", "test2-1.0.0", "unknown-1.0.0"));
+
+            // THEN a single call was made and the unknown package has no download
+            assertThatPathIsCalled(mockServer,
+                    AbstractConnectConnector.GET_DOWNLOAD_SUFFIX + "?id=test1-1.0.0&id=test2-1.0.0&id=unknown-1.0.0");
+            assertThat(downloads).containsOnlyKeys("test1-1.0.0", "test2-1.0.0", "unknown-1.0.0");
+            assertThat(downloads.get("test1-1.0.0").getName()).isEqualTo("test1");
+            assertThat(downloads.get("test2-1.0.0").getName()).isEqualTo("test2");
+            assertThat(downloads.get("unknown-1.0.0")).isNull();
+            assertEquals(1, mockServer.getRequestCount());
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_keep_bulk_download_descriptors_after_an_unreadable_payload() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server answering a truncated payload, then the descriptor of the package, then complete payloads
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test1\", \"vers"));
+            mockServer.enqueue(buildDefaultResponse().setBody("{\"name\" : \"test1\", \"version\" : \"1.0.0\"}"));
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test2\", \"version\" : \"1.0.0\"}]"));
+
+            // WHEN getting the downloads of packages twice
+            Map<String, DownloadingPackage> downloads = httpConnector.getDownloadsById(Arrays.asList("test1-1.0.0"));
+            assertThat(downloads.get("test1-1.0.0").getName()).isEqualTo("test1");
+            downloads = httpConnector.getDownloadsById(Arrays.asList("test2-1.0.0"));
+
+            // THEN the bulk download descriptors were called again
+            assertThatPathIsCalled(mockServer, AbstractConnectConnector.GET_DOWNLOAD_SUFFIX + "?id=test1-1.0.0");
+            mockServer.takeRequest();
+            assertThatPathIsCalled(mockServer, AbstractConnectConnector.GET_DOWNLOAD_SUFFIX + "?id=test2-1.0.0");
+            assertThat(downloads.get("test2-1.0.0").getName()).isEqualTo("test2");
+            for (String id : Arrays.asList("test1-1.0.0", "test2-1.0.0")) {
+                NuxeoConnectClient.getDownloadManager().removeDownloadingPackage(id);
+            }
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_get_download_descriptors_concurrently() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            // GIVEN a server which does not know the bulk download descriptors
+            mockServer.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    String path = request.getPath();
+                    if (path.contains("?")) {
+                        return buildDefaultResponse().setResponseCode(404).setBody("<html>Not Found</html>");
+                    }
+                    String id = path.substring(path.lastIndexOf('/') + 1);
+                    String name = id.substring(0, id.lastIndexOf('-'));
+                    return buildDefaultResponse().setBody(
+                            String.format("{\"name\" : \"%s\", \"version\" : \"1.0.0\"}", name));
+                }
+            });
+
+            // WHEN getting the downloads of several packages
+            Map<String, DownloadingPackage> downloads = httpConnector.getDownloadsById(
+                    Arrays.asList("test1-1.0.0", "test2-1.0.0", "test3-1.0.0"));
+
+            // THEN they were got with one call per package, after the failed bulk call
+            assertThat(downloads.keySet()).containsExactly("test1-1.0.0", "test2-1.0.0", "test3-1.0.0");
+            assertThat(downloads.values()).extracting(DownloadingPackage::getName)
+                                          .containsExactly("test1", "test2", "test3");
+            assertEquals(4, mockServer.getRequestCount());
+            for (DownloadingPackage download : downloads.values()) {
+                NuxeoConnectClient.getDownloadManager().removeDownloadingPackage(download.getId());
+            }
+            httpConnector.getDownloadsById(Arrays.asList("test1-1.0.0"));
+            assertEquals(5, mockServer.getRequestCount());
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_revalidate_expired_cache_with_conditional_requests() throws Exception {
+        // GIVEN a server answering with validators
+        mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test1\"}, {\"name\" : \"test2\"}]")
+                                                 .setHeader("ETag", "\"v1\"")
+                                                 .setHeader("Last-Modified", "Wed, 17 Jun 2020 16:00:18 GMT"));
+        httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+        RecordedRequest request = mockServer.takeRequest();
+        assertThat(request.getHeader("If-None-Match")).isNull();
+
+        // WHEN the cache expires and the list did not change on the server
+        File cacheFile = new File(System.getProperty("java.io.tmpdir"),
+                getCacheFileName(PackageType.ADDON + "_" + testTargetPlatform.asString()));
+        assertThat(cacheFile).exists();
+        assertThat(cacheFile.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000)).isTrue();
+        mockServer.enqueue(new MockResponse().setResponseCode(HttpServletResponse.SC_NOT_MODIFIED));
+        List<DownloadablePackage> downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+
+        // THEN a conditional request is sent and the cached list is reused and refreshed
+        request = mockServer.takeRequest();
+        assertThat(request.getHeader("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(request.getHeader("If-Modified-Since")).isEqualTo("Wed, 17 Jun 2020 16:00:18 GMT");
+        assertThat(downloads).extracting(DownloadablePackage::getName).containsExactly("test1", "test2");
+        assertThat(System.currentTimeMillis() - cacheFile.lastModified()).isLessThan(60 * 1000);
+
+        // AND a new content is fetched when the list changed on the server
+        assertThat(cacheFile.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000)).isTrue();
+        mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test3\"}]"));
+        downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+        assertThat(downloads).extracting(DownloadablePackage::getName).containsExactly("test3");
+        assertThat(mockServer.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v1\"");
+
+        // AND the validators are dropped when the server does not send them anymore
+        assertThat(cacheFile.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000)).isTrue();
+        mockServer.enqueue(buildDefaultResponse().setBody("[]"));
+        httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+        assertThat(mockServer.takeRequest().getHeader("If-None-Match")).isNull();
+    }
+
+    @Test
+    public void it_should_serve_expired_cache_while_refreshing_it() throws Exception {
+        System.setProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY, "true");
+        try {
+            httpConnector.close();
+            httpConnector = new ConnectHttpConnector();
+            httpConnector.overrideUrl = mockServer.url("/").toString();
+            StaleCacheRevalidator revalidator = httpConnector.getCacheRevalidator();
+
+            // GIVEN an expired cache, within the max staleness
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test1\"}, {\"name\" : \"test2\"}]"));
+            httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            mockServer.takeRequest();
+            File cacheFile = new File(System.getProperty("java.io.tmpdir"),
+                    getCacheFileName(PackageType.ADDON + "_" + testTargetPlatform.asString()));
+            assertThat(cacheFile.setLastModified(System.currentTimeMillis() - 90 * 60 * 1000)).isTrue();
+
+            // WHEN getting the downloads
+            mockServer.enqueue(buildDefaultResponse().setBody("[{\"name\" : \"test3\"}]"));
+            List<DownloadablePackage> downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+
+            // THEN the expired cache is returned, and refreshed in background
+            assertThat(downloads).extracting(DownloadablePackage::getName).containsExactly("test1", "test2");
+            assertThat(mockServer.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (revalidator.getRefreshes() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            assertThat(downloads).extracting(DownloadablePackage::getName).containsExactly("test3");
+            assertThat(mockServer.getRequestCount()).isEqualTo(2);
+            assertThat(revalidator.getBlockingMisses()).isEqualTo(1);
+            assertThat(revalidator.getStaleHits()).isEqualTo(1);
+            assertThat(revalidator.getFreshHits()).isEqualTo(1);
+        } finally {
+            System.clearProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_store_binary_snapshots_of_the_cache() throws Exception {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_CACHE_FORMAT_PROPERTY,
+                AbstractConnectConnector.CACHE_FORMAT_BINARY);
+        try {
+            // GIVEN a first listing fetched from the server
+            mockServer.enqueue(buildDefaultResponse().setBody(
+                    "[{\"name\" : \"test1\", \"version\" : \"1.0.0\"}, {\"name\" : \"test2\"}]"));
+            httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            File cacheFile = new File(System.getProperty("java.io.tmpdir"),
+                    getCacheFileName(PackageType.ADDON + "_" + testTargetPlatform.asString()));
+            File snapshotFile = new File(cacheFile.getPath() + ".snapshot");
+
+            // THEN the JSON cache is kept along a binary snapshot
+            assertThat(cacheFile).exists();
+            assertThat(snapshotFile).exists();
+
+            // AND next listings are read from the snapshot
+            List<DownloadablePackage> downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            assertThat(downloads).extracting(DownloadablePackage::getId).containsExactly("test1-1.0.0", "test2");
+
+            // AND the JSON cache is used when the snapshot is unreadable
+            FileUtils.writeStringToFile(snapshotFile, "corrupted");
+            downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            assertThat(downloads).extracting(DownloadablePackage::getId).containsExactly("test1-1.0.0", "test2");
+            assertThat(PackageListSnapshot.read(snapshotFile)).hasSize(2);
+            assertThat(mockServer.getRequestCount()).isEqualTo(1);
+
+            // AND a snapshot left over by a previous JSON content is not used
+            byte[] previousSnapshot = FileUtils.readFileToByteArray(snapshotFile);
+            FileUtils.writeStringToFile(cacheFile, "[{\"name\" : \"test3\"}]");
+            FileUtils.writeByteArrayToFile(snapshotFile, previousSnapshot);
+            downloads = httpConnector.getDownloads(PackageType.ADDON, testTargetPlatform);
+            assertThat(downloads).extracting(DownloadablePackage::getId).containsExactly("test3");
+            assertThat(PackageListSnapshot.read(snapshotFile)).hasSize(1);
+            assertThat(mockServer.getRequestCount()).isEqualTo(1);
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_CACHE_FORMAT_PROPERTY);
+        }
+    }
+
+    private String getCacheFileName(String suffix) {
+        return new ConnectHttpConnector() {
+            @Override
+            public File getCacheFileFor(String suffix) {
+                return super.getCacheFileFor(suffix);
+            }
+        }.getCacheFileFor(suffix).getName();
+    }
+
     private static void assertThatPathIsCalled(MockWebServer mockServer, String path) throws InterruptedException {
         RecordedRequest request1 = mockServer.takeRequest();
         assertEquals("/" + path, request1.getPath());
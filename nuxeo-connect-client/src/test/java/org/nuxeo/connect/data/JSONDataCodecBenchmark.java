@@ -0,0 +1,129 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the reflective JSON marshaling of {@link PackageDescriptor} with {@link JSONDataCodec}.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.nuxeo.connect.data.JSONDataCodecBenchmark
+ * -Dexec.classpathScope=test}.
+ *
+ * @since 1.8.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONDataCodecBenchmark {
+
+    protected static final String PACKAGE = "{\"name\":\"nuxeo-foo\",\"version\":\"1.2.3\",\"type\":\"addon\","
+            + "\"title\":\"Foo\",\"description\":\"A long description\",\"license\":\"LGPL\","
+            + "\"licenseUrl\":\"http://license\",\"targetPlatforms\":[\"cap-8.3\",\"server-8.10\"],\"state\":2,"
+            + "\"sourceDigest\":\"abc\",\"sourceSize\":12345,\"rating\":4,\"vendor\":\"Nuxeo\","
+            + "\"dependencies\":[\"nuxeo-bar:1.0.0:2.0.0\",\"nuxeo-baz\"],\"optionalDependencies\":[\"nuxeo-opt\"],"
+            + "\"conflicts\":[\"nuxeo-old\"],\"provides\":[\"nuxeo-foo-api\"]}";
+
+    protected JSONObject data;
+
+    protected PackageDescriptor pkg;
+
+    protected Map<String, Object> dataStructure;
+
+    @Setup
+    public void setup() throws Exception {
+        data = new JSONObject(PACKAGE);
+        pkg = JSONDataCodec.of(PackageDescriptor.class).load(data);
+        dataStructure = new HashMap<>();
+        IntrospectionHelper.fetchDataStructureToSerialize(dataStructure, PackageDescriptor.class);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Object loadByReflection() throws Exception {
+        return AbstractJSONSerializableData.doLoadFromJSON(data, PackageDescriptor.class, new PackageDescriptor());
+    }
+
+    @Benchmark
+    public Object loadWithCodec() throws Exception {
+        return JSONDataCodec.of(PackageDescriptor.class).load(data);
+    }
+
+    @Benchmark
+    public Object exportByReflection() {
+        return exportByReflection(dataStructure, pkg);
+    }
+
+    @Benchmark
+    public Object exportWithCodec() {
+        return JSONDataCodec.of(PackageDescriptor.class).export(pkg);
+    }
+
+    /**
+     * The reflective serialization formerly done by {@link IntrospectionHelper#getDataToSerialize}.
+     */
+    protected static Map<String, Object> exportByReflection(Object instance) {
+        Map<String, Object> dataStructure = new HashMap<>();
+        IntrospectionHelper.fetchDataStructureToSerialize(dataStructure, instance.getClass());
+        return exportByReflection(dataStructure, instance);
+    }
+
+    protected static Map<String, Object> exportByReflection(Map<String, Object> dataStructure, Object instance) {
+        Map<String, Object> data = new HashMap<>();
+        for (Map.Entry<String, Object> entry : dataStructure.entrySet()) {
+            try {
+                if (entry.getValue() instanceof Method) {
+                    data.put(entry.getKey(), ((Method) entry.getValue()).invoke(instance));
+                } else {
+                    data.put(entry.getKey(), ((Field) entry.getValue()).get(instance));
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // NOP
+            }
+        }
+        return data;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JSONDataCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.nuxeo.connect.connector.NuxeoClientInstanceType;
+import org.nuxeo.connect.update.PackageState;
+
+/**
+ * @since 1.8.2
+ */
+public class TestJSONDataCodec {
+
+    @Test
+    public void it_should_resolve_a_codec_once_per_class() {
+        assertThat(JSONDataCodec.of(PackageDescriptor.class)).isSameAs(JSONDataCodec.of(PackageDescriptor.class));
+        assertThat(JSONDataCodec.of(ConnectProject.class).getTargetClass()).isEqualTo(ConnectProject.class);
+    }
+
+    @Test
+    public void it_should_load_packages_like_the_reflective_loader() throws Exception {
+        for (String file : Arrays.asList("remote1.json", "remotedep1.json", "remoteConflict.json", "remotehf1.json",
+                "local1.json", "localsnapshot.json")) {
+            for (String line : readLines(file)) {
+                assertSameData(PackageDescriptor.class, new PackageDescriptor(), line);
+            }
+        }
+        assertSameData(PackageDescriptor.class, new PackageDescriptor(),
+                "{name : 'nuxeo-foo', version : '1.2.3', type : 'studio', packageState : 'started', "
+                        + "targetPlatforms : ['cap-8.3'], sourceSize : 12, rating : 3, supportsHotReload : true, "
+                        + "dependencies : ['nuxeo-foo:1.0.0', 'nuxeo-bar'], description : null}");
+    }
+
+    @Test
+    public void it_should_load_other_data_like_the_reflective_loader() throws Exception {
+        assertSameData(SubscriptionStatus.class, new SubscriptionStatus(),
+                "{contractStatus : 'active', endDate : '2026-12-31', instanceType : 'prod', message : 'OK'}");
+        assertSameData(ConnectProject.class, new ConnectProject(),
+                "{name : 'My project', symbolicName : 'my-project', uuid : '1234', errorMessage : 'ignored'}");
+
+        SubscriptionStatus status = JSONDataCodec.of(SubscriptionStatus.class)
+                                                 .load(new JSONObject("{contractStatus : 'active', "
+                                                         + "instanceType : 'prod'}"));
+        assertThat(status.getContractStatus()).isEqualTo("active");
+        assertThat(status.getInstanceType()).isEqualTo(NuxeoClientInstanceType.PROD);
+    }
+
+    @Test
+    public void it_should_widen_numbers_like_reflection() throws Exception {
+        PackageDescriptor pkg = JSONDataCodec.of(PackageDescriptor.class)
+                                             .load(new JSONObject("{name : 'foo', version : '1.0.0', "
+                                                     + "sourceSize : 12, rating : 12345678901, state : 2}"));
+        assertThat(pkg.getSourceSize()).isEqualTo(12L);
+        // a long does not fit an int field: ignored, as by reflection
+        assertThat(pkg.getRating()).isEqualTo(0);
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.getByValue(2));
+    }
+
+    @SuppressWarnings("deprecation")
+    protected <T extends AbstractJSONSerializableData> void assertSameData(Class<T> klass, T legacy, String json)
+            throws Exception {
+        JSONObject data = new JSONObject(json);
+        AbstractJSONSerializableData.doLoadFromJSON(data, klass, legacy);
+        T actual = JSONDataCodec.of(klass).load(data);
+        JSONObject expected = new JSONObject(JSONDataCodecBenchmark.exportByReflection(legacy));
+        assertThat(actual.asJSON().similar(expected)).as(json).isTrue();
+        assertThat(new JSONObject(JSONDataCodecBenchmark.exportByReflection(actual)).similar(expected)).as(json)
+                                                                                                      .isTrue();
+    }
+
+    protected List<String> readLines(String file) throws Exception {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("test-data/" + file)) {
+            return IOUtils.readLines(is, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @since 1.8.2
+ */
+public class TestLazyPackageDescriptor {
+
+    protected static final String PACKAGE = "{name : 'nuxeo-foo', version : '1.2.3', type : 'addon', title : 'Foo', "
+            + "description : 'A long description', license : 'LGPL', licenseUrl : 'http://license', "
+            + "targetPlatforms : ['cap-8.3', 'server-8.10'], state : 2, sourceDigest : 'abc', "
+            + "dependencies : ['nuxeo-bar:1.0.0:2.0.0'], optionalDependencies : ['nuxeo-opt'], "
+            + "conflicts : ['nuxeo-old'], provides : ['nuxeo-foo-api']}";
+
+    @Test
+    public void it_should_decode_heavy_fields_on_first_access() throws Exception {
+        LazyPackageDescriptor pkg = LazyPackageDescriptor.fromJSON(PACKAGE);
+
+        assertThat(pkg.getId()).isEqualTo("nuxeo-foo-1.2.3");
+        assertThat(pkg.getTargetPlatforms()).containsExactly("cap-8.3", "server-8.10", "server-8.3");
+        assertThat(pkg.getSourceDigest()).isEqualTo("abc");
+        assertThat(pkg.isMaterialized()).isFalse();
+
+        // the dependency implied by the cap target platform is added
+        assertThat(pkg.getDependencies()).extracting(Object::toString)
+                                         .contains("nuxeo-bar:1.0.0:2.0.0", "nuxeo-jsf-ui");
+        assertThat(pkg.isMaterialized()).isTrue();
+        assertThat(pkg.getDescription()).isEqualTo("A long description");
+    }
+
+    @Test
+    public void it_should_fail_on_each_access_when_heavy_fields_cannot_be_decoded() throws Exception {
+        LazyPackageDescriptor pkg = LazyPackageDescriptor.fromJSON(PACKAGE);
+        // the codec fails on missing data
+        pkg.lazyData = null;
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                pkg.getDependencies();
+                fail("Decoding should have failed");
+            } catch (IllegalStateException e) {
+                assertThat(e).hasMessageContaining("nuxeo-foo-1.2.3");
+            }
+        }
+        assertThatThrownBy(pkg::getProvides).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void it_should_decode_like_the_eager_descriptor() throws Exception {
+        for (String file : Arrays.asList("remote1.json", "remotedep1.json", "remoteConflict.json", "remotehf1.json",
+                "local1.json", "localsnapshot.json")) {
+            for (String line : readLines(file)) {
+                assertSameDescriptor(line);
+            }
+        }
+        assertSameDescriptor(PACKAGE);
+        assertSameDescriptor("{name : 'nuxeo-light', version : '1.0.0', targetPlatforms : ['cap-8.3']}");
+    }
+
+    protected void assertSameDescriptor(String json) throws Exception {
+        PackageDescriptor expected = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, json);
+        LazyPackageDescriptor actual = LazyPackageDescriptor.fromJSON(new JSONObject(json));
+        assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getType()).isEqualTo(expected.getType());
+        assertThat(actual.getPackageState()).isEqualTo(expected.getPackageState());
+        assertThat(actual.getTargetPlatforms()).isEqualTo(expected.getTargetPlatforms());
+        assertThat(actual.getTitle()).isEqualTo(expected.getTitle());
+        assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+        assertThat(actual.getLicenseType()).isEqualTo(expected.getLicenseType());
+        assertThat(actual.getDependencies()).containsExactlyInAnyOrder(expected.getDependencies());
+        assertThat(actual.getOptionalDependencies()).containsExactlyInAnyOrder(expected.getOptionalDependencies());
+        assertThat(actual.getConflicts()).containsExactlyInAnyOrder(expected.getConflicts());
+        assertThat(actual.getProvides()).containsExactlyInAnyOrder(expected.getProvides());
+        assertThat(actual.asJSON().keySet()).isEqualTo(expected.asJSON().keySet());
+    }
+
+    protected List<String> readLines(String file) throws Exception {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("test-data/" + file)) {
+            return IOUtils.readLines(is, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageType;
+
+/**
+ * @since 1.8.2
+ */
+public class TestPackageListSnapshot {
+
+    protected File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("pkg_snapshot", ".snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(file);
+    }
+
+    @Test
+    public void it_should_read_back_written_packages() throws Exception {
+        List<DownloadablePackage> pkgs = Arrays.asList(
+                AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, "{name : 'nuxeo-foo', "
+                        + "version : '1.2.3-RC1-SNAPSHOT', type : 'addon', title : 'Foo', description : 'Fôô bar', "
+                        + "vendor : 'Nuxeo', license : 'LGPL', licenseUrl : 'http://license', owner : 'me', "
+                        + "sourceDigest : 'abc', sourceUrl : 'http://source', sourceSize : 12345678901, "
+                        + "commentsNumber : 1, downloadsCount : 2, rating : 3, supportsHotReload : true, "
+                        + "subscriptionRequired : true, state : 2, targetPlatformRange : 'server-10.10', "
+                        + "targetPlatforms : ['server-10.10', 'server-11.1'], "
+                        + "dependencies : ['nuxeo-bar:1.0.0:2.0.0', 'nuxeo-baz:1.1'], "
+                        + "optionalDependencies : ['nuxeo-opt'], conflicts : ['nuxeo-old:0.0.0:1.0.0-SNAPSHOT'], "
+                        + "provides : ['nuxeo-foo-api:1.2.3']}"),
+                AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class,
+                        "{name : 'nuxeo-hotfix', version : '10.10.0-HF01', type : 'hotfix'}"),
+                AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, "{name : 'noversion'}"));
+
+        PackageListSnapshot.write(pkgs, file);
+        List<DownloadablePackage> read = PackageListSnapshot.read(file);
+
+        assertThat(read).hasSize(pkgs.size());
+        for (int i = 0; i < pkgs.size(); i++) {
+            PackageDescriptor expected = (PackageDescriptor) pkgs.get(i);
+            PackageDescriptor actual = (PackageDescriptor) read.get(i);
+            assertTrue(actual.getId(), expected.asJSON().similar(actual.asJSON()));
+        }
+        DownloadablePackage foo = read.get(0);
+        assertThat(foo.getVersion().isSnapshot()).isTrue();
+        assertThat(foo.getVersion().isSpecialClassifier()).isTrue();
+        assertThat(foo.getPackageState()).isEqualTo(PackageState.DOWNLOADED);
+        assertThat(foo.getSourceSize()).isEqualTo(12345678901L);
+        assertThat(foo.getDependencies()[0].getVersionRange().getMaxVersion()).hasToString("2.0.0");
+        assertThat(read.get(1).getType()).isEqualTo(PackageType.HOT_FIX);
+        assertThat(read.get(2).getVersion()).isNull();
+        // packages are decoded once
+        assertThat(read.get(1)).isSameAs(read.get(1));
+    }
+
+    @Test
+    public void it_should_write_an_empty_list() throws Exception {
+        PackageListSnapshot.write(new ArrayList<>(), file);
+        assertThat(PackageListSnapshot.read(file)).isEmpty();
+    }
+
+    @Test
+    public void it_should_reject_a_snapshot_of_another_source() throws Exception {
+        List<DownloadablePackage> pkgs = Arrays.asList(
+                AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, "{name : 'nuxeo-foo'}"));
+        PackageListSnapshot.write(pkgs, file, 42, 1000);
+        assertThat(PackageListSnapshot.read(file, 42, 1000)).hasSize(1);
+        assertThat(PackageListSnapshot.read(file)).hasSize(1);
+        for (long[] source : new long[][] { { 43, 1000 }, { 42, 2000 } }) {
+            try {
+                PackageListSnapshot.read(file, source[0], source[1]);
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertThat(e).hasMessageContaining("does not match its source");
+            }
+        }
+    }
+
+    @Test
+    public void it_should_reject_a_non_snapshot_file() throws Exception {
+        FileUtils.writeStringToFile(file, "[{\"name\" : \"test1\"}]");
+        try {
+            PackageListSnapshot.read(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertThat(e).hasMessageContaining("Not a package list snapshot");
+        }
+    }
+
+}
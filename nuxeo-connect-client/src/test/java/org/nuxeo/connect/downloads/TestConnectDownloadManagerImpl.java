@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * @since 1.8.2
+ */
+public class TestConnectDownloadManagerImpl {
+
+    protected ConnectDownloadManagerImpl manager;
+
+    protected CountDownLatch blocker = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ConnectDownloadManagerImpl.DOWNLOAD_PARALLELISM_PROPERTY);
+        System.clearProperty(ConnectDownloadManagerImpl.DOWNLOAD_QUEUE_CAPACITY_PROPERTY);
+        System.clearProperty(ConnectDownloadManagerImpl.DOWNLOAD_REJECTION_POLICY_PROPERTY);
+        System.clearProperty(ConnectDownloadManagerImpl.DOWNLOAD_VIRTUAL_THREADS_PROPERTY);
+        if (manager != null) {
+            // drop the queued downloads without running them
+            manager.tpexec.shutdownNow();
+        }
+        blocker.countDown();
+    }
+
+    /**
+     * Creates a manager with a single download thread kept busy, so that the downloads stay queued.
+     */
+    protected ConnectDownloadManagerImpl newBlockedManager() {
+        System.setProperty(ConnectDownloadManagerImpl.DOWNLOAD_PARALLELISM_PROPERTY, "1");
+        manager = new ConnectDownloadManagerImpl();
+        manager.tpexec.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return manager;
+    }
+
+    protected static PackageDescriptor descriptor(String name) {
+        PackageDescriptor descriptor = new PackageDescriptor();
+        descriptor.setName(name);
+        descriptor.setVersion(new Version("1.0.0"));
+        return descriptor;
+    }
+
+    @Test
+    public void testInFlightDownloadIsShared() {
+        newBlockedManager();
+        DownloadingPackage pkg = manager.storeDownloadedBundle(descriptor("A"));
+        assertThat(manager.storeDownloadedBundle(descriptor("A"))).isSameAs(pkg);
+        assertThat(manager.listDownloadingPackages()).containsExactly(pkg);
+        assertThat(manager.pendingDownloadTasks).hasSize(1);
+
+        manager.removeDownloadingPackage(pkg.getId());
+        assertThat(pkg.isCompleted()).isTrue();
+        assertThat(pkg.getErrorMessage()).isEqualTo("Download cancelled");
+        assertThat(manager.pendingDownloadTasks).isEmpty();
+
+        // a new download once the previous one is terminated
+        DownloadingPackage other = manager.storeDownloadedBundle(descriptor("A"));
+        assertThat(other).isNotSameAs(pkg);
+        assertThat(manager.getDownloadingPackage(pkg.getId())).isSameAs(other);
+    }
+
+    @Test
+    public void testFullQueueRejectsDownload() {
+        System.setProperty(ConnectDownloadManagerImpl.DOWNLOAD_QUEUE_CAPACITY_PROPERTY, "2");
+        newBlockedManager();
+        DownloadingPackage a = manager.storeDownloadedBundle(descriptor("A"));
+        DownloadingPackage b = manager.storeDownloadedBundle(descriptor("B"));
+        DownloadingPackage c = manager.storeDownloadedBundle(descriptor("C"));
+        assertThat(a.isCompleted()).isFalse();
+        assertThat(b.isCompleted()).isFalse();
+        assertThat(c.isCompleted()).isTrue();
+        assertThat(c.getErrorMessage()).isEqualTo("Too many pending downloads, retry later");
+        assertThat(manager.listDownloadingPackages()).containsOnly(a, b);
+    }
+
+    @Test
+    public void testRejectionPolicy() {
+        assertThat(ConnectDownloadManagerImpl.getRejectionPolicy()).isInstanceOf(ThreadPoolExecutor.AbortPolicy.class);
+        System.setProperty(ConnectDownloadManagerImpl.DOWNLOAD_REJECTION_POLICY_PROPERTY,
+                ConnectDownloadManagerImpl.REJECTION_POLICY_CALLER_RUNS);
+        assertThat(ConnectDownloadManagerImpl.getRejectionPolicy()).isInstanceOf(
+                ThreadPoolExecutor.CallerRunsPolicy.class);
+        System.setProperty(ConnectDownloadManagerImpl.DOWNLOAD_REJECTION_POLICY_PROPERTY, "unknown");
+        assertThat(ConnectDownloadManagerImpl.getRejectionPolicy()).isInstanceOf(ThreadPoolExecutor.AbortPolicy.class);
+    }
+
+    @Test
+    public void testThreadFactory() throws Exception {
+        assertThat(ConnectDownloadManagerImpl.newThreadFactory()).isInstanceOf(
+                org.nuxeo.connect.DaemonThreadFactory.class);
+        // virtual threads when supported, platform threads otherwise: daemon in both cases
+        System.setProperty(ConnectDownloadManagerImpl.DOWNLOAD_VIRTUAL_THREADS_PROPERTY, "true");
+        Thread thread = ConnectDownloadManagerImpl.newThreadFactory().newThread(() -> {
+        });
+        assertThat(thread.isDaemon()).isTrue();
+        assertThat(thread.getName()).startsWith("ConnectDownloadThread-");
+    }
+
+}
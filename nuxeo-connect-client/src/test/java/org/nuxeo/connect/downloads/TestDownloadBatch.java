@@ -0,0 +1,152 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * @since 1.8.2
+ */
+public class TestDownloadBatch {
+
+    protected static class TestDownloadingPackage extends LocalDownloadingPackage {
+
+        protected int progress;
+
+        public TestDownloadingPackage(String name, long size) {
+            super(descriptor(name, size));
+        }
+
+        protected static PackageDescriptor descriptor(String name, long size) {
+            PackageDescriptor descriptor = new PackageDescriptor();
+            descriptor.setName(name);
+            descriptor.setVersion(new Version("1.0.0"));
+            descriptor.setSourceSize(size);
+            return descriptor;
+        }
+
+        @Override
+        public int getDownloadProgress() {
+            return progress;
+        }
+    }
+
+    @Test
+    public void testProgressAndCompletion() throws Exception {
+        TestDownloadingPackage small = new TestDownloadingPackage("small", 100);
+        TestDownloadingPackage big = new TestDownloadingPackage("big", 300);
+        Map<String, DownloadingPackage> downloads = new LinkedHashMap<>();
+        downloads.put(small.getId(), small);
+        downloads.put(big.getId(), big);
+        downloads.put("unknown-1.0.0", null);
+        DownloadBatch batch = new DownloadBatch(downloads);
+
+        assertThat(batch.getPackages()).containsExactly(small, big);
+        assertThat(batch.getNotFound()).containsExactly("unknown-1.0.0");
+        assertThat(batch.getDownloadProgress()).isEqualTo(0);
+        assertThat(batch.isCompleted()).isFalse();
+        assertThat(batch.await(10, TimeUnit.MILLISECONDS)).isFalse();
+
+        // progress is weighted by size
+        small.progress = 100;
+        big.progress = 50;
+        assertThat(batch.getDownloadProgress()).isEqualTo(62);
+
+        small.cancel();
+        assertThat(batch.isCompleted()).isFalse();
+        big.cancel();
+        assertThat(batch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(batch.isCompleted()).isTrue();
+        assertThat(batch.whenCompleted().get()).containsExactly(small, big);
+        assertThat(batch.getDownloadProgress()).isEqualTo(100);
+        assertThat(batch.getErrors()).containsOnlyKeys(small.getId(), big.getId());
+    }
+
+    /**
+     * Downloading package relying on the default completion of {@link DownloadingPackage}.
+     */
+    protected static class PolledDownloadingPackage extends PackageDescriptor implements DownloadingPackage {
+
+        protected volatile boolean done;
+
+        public PolledDownloadingPackage(String name) {
+            setName(name);
+            setVersion(new Version("1.0.0"));
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return done;
+        }
+
+        @Override
+        public boolean isDigestOk() {
+            return false;
+        }
+
+        @Override
+        public int getDownloadProgress() {
+            return done ? 100 : 0;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return null;
+        }
+
+        @Override
+        public boolean isServerError() {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDefaultCompletion() throws Exception {
+        PolledDownloadingPackage first = new PolledDownloadingPackage("first");
+        PolledDownloadingPackage second = new PolledDownloadingPackage("second");
+        Map<String, DownloadingPackage> downloads = new LinkedHashMap<>();
+        downloads.put(first.getId(), first);
+        downloads.put(second.getId(), second);
+        DownloadBatch batch = new DownloadBatch(downloads);
+        assertThat(batch.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        first.done = true;
+        assertThat(first.whenCompleted().get(1, TimeUnit.SECONDS)).isSameAs(first);
+        assertThat(batch.isCompleted()).isFalse();
+        second.done = true;
+        assertThat(batch.whenCompleted().get(1, TimeUnit.SECONDS)).containsExactly(first, second);
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        DownloadBatch batch = new DownloadBatch(new LinkedHashMap<>());
+        assertThat(batch.isCompleted()).isTrue();
+        assertThat(batch.getDownloadProgress()).isEqualTo(100);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 1.8.2
+ */
+public class TestDownloadStore {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected DownloadStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new DownloadStore(folder.newFolder("store").toPath(), 25);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(DownloadStore.STORE_DIR_PROPERTY);
+        System.clearProperty(DownloadStore.STORE_MAX_SIZE_PROPERTY);
+    }
+
+    protected String put(String content) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        String digest = DigestUtils.md5Hex(content);
+        store.put(digest, file);
+        return digest;
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        String digest = put("some content");
+        assertThat(store.get(digest)).hasContent("some content");
+        assertThat(store.get(digest.toUpperCase())).hasContent("some content");
+        assertThat(store.get(DigestUtils.md5Hex("other content"))).isNull();
+        assertThat(store.get("../../etc/passwd")).isNull();
+        assertThat(store.get(null)).isNull();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        String first = put("0123456789");
+        String second = put("abcdefghij");
+        File firstBlob = store.get(first);
+        File secondBlob = store.get(second);
+        // the first blob is used after the second one
+        Files.setLastModifiedTime(secondBlob.toPath(), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(firstBlob.toPath(), FileTime.fromMillis(2000));
+        String third = put("ABCDEFGHIJ");
+        assertThat(store.get(first)).isNotNull();
+        assertThat(store.get(second)).isNull();
+        assertThat(store.get(third)).isNotNull();
+    }
+
+    @Test
+    public void testEvictionOfSharedStore() throws Exception {
+        // another node removes the blobs while they are walked
+        store = new DownloadStore(store.getRoot(), 25) {
+            @Override
+            protected BasicFileAttributes readAttributes(Path blob) throws IOException {
+                Files.delete(blob);
+                return super.readAttributes(blob);
+            }
+        };
+        String first = put("0123456789");
+        assertThat(store.get(first)).isNull();
+
+        // eviction errors do not fail the storage
+        store = new DownloadStore(store.getRoot(), 25) {
+            @Override
+            protected void evict() throws IOException {
+                throw new IOException("Eviction failure");
+            }
+        };
+        String second = put("abcdefghij");
+        assertThat(store.get(second)).hasContent("abcdefghij");
+    }
+
+    @Test
+    public void testFromProperties() throws Exception {
+        assertThat(DownloadStore.fromProperties()).isNull();
+        System.setProperty(DownloadStore.STORE_DIR_PROPERTY, folder.getRoot().getPath());
+        System.setProperty(DownloadStore.STORE_MAX_SIZE_PROPERTY, "10");
+        DownloadStore configured = DownloadStore.fromProperties();
+        assertThat(configured.getRoot()).isEqualTo(folder.getRoot().toPath());
+        assertThat(configured.maxSize).isEqualTo(10L * 1024 * 1024);
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.downloads;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.connect.DefaultCallbackHolder;
+import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.connector.http.ConnectUrlConfig;
+import org.nuxeo.connect.data.DownloadingPackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.update.LocalPackage;
+import org.nuxeo.connect.update.MockPackageUpdateService;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageUpdateService;
+import org.nuxeo.connect.update.Version;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * @since 1.8.2
+ */
+public class TestLocalDownloadingPackage {
+
+    protected static final byte[] CONTENT = new byte[200_000];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) i;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected MockWebServer mockServer;
+
+    protected List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+    protected List<File> added = Collections.synchronizedList(new ArrayList<>());
+
+    protected PackageUpdateService updateService;
+
+    protected String sourceDigest = DigestUtils.md5Hex(CONTENT);
+
+    protected DownloadStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = new MockWebServer();
+        mockServer.start();
+        System.setProperty(ConnectUrlConfig.CONNECT_URL_PROPERTY, mockServer.url("/").toString());
+        System.setProperty(ConnectDownloadManagerImpl.NUXEO_TMP_DIR_PROPERTY, folder.getRoot().getPath());
+        System.setProperty(LocalDownloadingPackage.RETRY_DELAY_PROPERTY, "1");
+        updateService = NuxeoConnectClient.getCallBackHolder().getUpdateService();
+        ((DefaultCallbackHolder) NuxeoConnectClient.getCallBackHolder()).setUpdateService(
+                new MockPackageUpdateService(null) {
+                    @Override
+                    public LocalPackage addPackage(File file) {
+                        added.add(file);
+                        return null;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ((DefaultCallbackHolder) NuxeoConnectClient.getCallBackHolder()).setUpdateService(updateService);
+        System.clearProperty(ConnectUrlConfig.CONNECT_URL_PROPERTY);
+        System.clearProperty(ConnectDownloadManagerImpl.NUXEO_TMP_DIR_PROPERTY);
+        System.clearProperty(LocalDownloadingPackage.RETRY_DELAY_PROPERTY);
+        System.clearProperty(LocalDownloadingPackage.RETRIES_PROPERTY);
+        mockServer.shutdown();
+    }
+
+    protected LocalDownloadingPackage download(Function<RecordedRequest, MockResponse> responses) {
+        return download(responses, null);
+    }
+
+    protected LocalDownloadingPackage download(Function<RecordedRequest, MockResponse> responses,
+            DownloadListener listener) {
+        mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                ranges.add(request.getHeader("Range"));
+                return responses.apply(request);
+            }
+        });
+        PackageDescriptor descriptor = new PackageDescriptor();
+        descriptor.setName("pkg");
+        descriptor.setVersion(new Version("1.0.0"));
+        // a test url skips the security headers
+        descriptor.setSourceUrl("test/pkg-1.0.0.zip");
+        descriptor.setSourceSize(CONTENT.length);
+        descriptor.setSourceDigest(sourceDigest);
+        LocalDownloadingPackage pkg = new LocalDownloadingPackage(descriptor);
+        pkg.setDownloadListener(listener);
+        pkg.setDownloadStore(store);
+        pkg.run();
+        assertThat(pkg.isCompleted()).isTrue();
+        return pkg;
+    }
+
+    protected static MockResponse serve(RecordedRequest request) {
+        String range = request.getHeader("Range");
+        if (range == null) {
+            return new MockResponse().setBody(new Buffer().write(CONTENT));
+        }
+        int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        return new MockResponse().setResponseCode(206)
+                                 .setHeader("Content-Range",
+                                         "bytes " + from + "-" + (CONTENT.length - 1) + "/" + CONTENT.length)
+                                 .setBody(new Buffer().write(CONTENT, from, CONTENT.length - from));
+    }
+
+    protected void assertDownloaded(LocalDownloadingPackage pkg) throws Exception {
+        assertThat(pkg.getErrorMessage()).isNull();
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.DOWNLOADED);
+        assertThat(pkg.isDigestOk()).isTrue();
+        assertThat(pkg.getFile()).isEqualTo(new File(folder.getRoot(), "pkg-1.0.0"));
+        assertThat(pkg.getFile()).hasBinaryContent(CONTENT);
+        assertThat(new File(folder.getRoot(), "pkg-1.0.0" + LocalDownloadingPackage.PART_FILE_SUFFIX)).doesNotExist();
+        assertThat(added).containsExactly(pkg.getFile());
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertDownloaded(pkg);
+        assertThat(ranges).containsExactly((String) null);
+    }
+
+    @Test
+    public void testProgressListener() throws Exception {
+        ConnectDownloadManagerImpl manager = new ConnectDownloadManagerImpl();
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+        List<DownloadingPackage> completed = Collections.synchronizedList(new ArrayList<>());
+        manager.addDownloadListener(new DownloadListener() {
+            @Override
+            public void downloadProgress(DownloadingPackage pkg) {
+                throw new IllegalStateException("failing listener");
+            }
+        });
+        manager.addDownloadListener(new DownloadListener() {
+            @Override
+            public void downloadProgress(DownloadingPackage pkg) {
+                assertThat(pkg.getDownloadRate()).isPositive();
+                assertThat(pkg.getEstimatedTimeRemaining()).isNotNegative();
+                progress.add(pkg.getDownloadedBytes());
+            }
+
+            @Override
+            public void downloadCompleted(DownloadingPackage pkg) {
+                completed.add(pkg);
+            }
+        });
+        // about 1s to download
+        LocalDownloadingPackage pkg = download(
+                request -> serve(request).throttleBody(CONTENT.length / 10, 100, TimeUnit.MILLISECONDS),
+                manager.listenersDispatcher);
+        assertDownloaded(pkg);
+        assertThat(progress).isNotEmpty().isSorted();
+        assertThat(progress.get(0)).isBetween(1L, (long) CONTENT.length);
+        assertThat(completed).containsExactly(pkg);
+        assertThat(pkg.getDownloadedBytes()).isEqualTo(CONTENT.length);
+        assertThat(pkg.getDownloadProgress()).isEqualTo(100);
+        assertThat(pkg.getDownloadRate()).isZero();
+        assertThat(pkg.getEstimatedTimeRemaining()).isZero();
+    }
+
+    @Test
+    public void testResumeAfterDisconnection() throws Exception {
+        LocalDownloadingPackage pkg = download(request -> {
+            MockResponse response = serve(request);
+            if (ranges.size() == 1) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            return response;
+        });
+        assertDownloaded(pkg);
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(0)).isNull();
+        assertThat(ranges.get(1)).matches("bytes=[1-9][0-9]*-");
+    }
+
+    @Test
+    public void testResumeOfChangedContent() throws Exception {
+        // GIVEN a package without digest, which changes on the server after a disconnection
+        sourceDigest = null;
+        byte[] changed = new byte[CONTENT.length];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = (byte) -i;
+        }
+        List<String> ifRanges = Collections.synchronizedList(new ArrayList<>());
+        LocalDownloadingPackage pkg = download(request -> {
+            ifRanges.add(request.getHeader("If-Range"));
+            if (ranges.size() == 1) {
+                return serve(request).setHeader("ETag", "\"v1\"")
+                                     .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            if ("\"v1\"".equals(request.getHeader("If-Range"))) {
+                // the range no longer matches the requested validator: whole new content
+                return new MockResponse().setHeader("ETag", "\"v2\"").setBody(new Buffer().write(changed));
+            }
+            return serve(request);
+        });
+
+        // THEN the partial content was resumed conditionally, and replaced by the new content
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(1)).matches("bytes=[1-9][0-9]*-");
+        assertThat(ifRanges).containsExactly(null, "\"v1\"");
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.DOWNLOADED);
+        assertThat(pkg.getFile()).hasBinaryContent(changed);
+        assertThat(folder.getRoot().list()).containsExactly("pkg-1.0.0");
+    }
+
+    @Test
+    public void testUnverifiablePartIsDiscarded() throws Exception {
+        // GIVEN a part file without validator nor digest
+        sourceDigest = null;
+        Files.write(new File(folder.getRoot(), "pkg-1.0.0.part").toPath(), new byte[] { 1, 2, 3 });
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+
+        // THEN it was downloaded again from the start
+        assertThat(ranges).containsExactly((String) null);
+        assertThat(pkg.getFile()).hasBinaryContent(CONTENT);
+    }
+
+    @Test
+    public void testRangeIgnoredByServer() throws Exception {
+        LocalDownloadingPackage pkg = download(request -> {
+            MockResponse response = new MockResponse().setBody(new Buffer().write(CONTENT));
+            if (ranges.size() == 1) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            return response;
+        });
+        // the whole content is written again from the start
+        assertDownloaded(pkg);
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(1)).isNotNull();
+    }
+
+    @Test
+    public void testAlreadyFullyDownloaded() throws Exception {
+        Files.write(new File(folder.getRoot(), "pkg-1.0.0.part").toPath(), CONTENT);
+        LocalDownloadingPackage pkg = download(request -> new MockResponse().setResponseCode(416));
+        assertDownloaded(pkg);
+        assertThat(ranges).containsExactly("bytes=" + CONTENT.length + "-");
+    }
+
+    @Test
+    public void testSha256Digest() throws Exception {
+        sourceDigest = DigestUtils.sha256Hex(CONTENT);
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertDownloaded(pkg);
+    }
+
+    @Test
+    public void testNoDigest() throws Exception {
+        sourceDigest = null;
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.DOWNLOADED);
+        assertThat(pkg.isDigestOk()).isFalse();
+        assertThat(pkg.getFile()).hasBinaryContent(CONTENT);
+    }
+
+    @Test
+    public void testDigestMismatch() throws Exception {
+        sourceDigest = DigestUtils.md5Hex("something else");
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.REMOTE);
+        assertThat(pkg.isDigestOk()).isFalse();
+        assertThat(pkg.isServerError()).isFalse();
+        assertThat(pkg.getErrorMessage()).startsWith("Digest mismatch for pkg-1.0.0");
+        assertThat(folder.getRoot().list()).isEmpty();
+        assertThat(ranges).hasSize(1);
+        assertThat(added).isEmpty();
+    }
+
+    @Test
+    public void testDownloadStore() throws Exception {
+        store = new DownloadStore(folder.newFolder("store").toPath(), Long.MAX_VALUE);
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertDownloaded(pkg);
+        File blob = store.get(sourceDigest);
+        assertThat(blob).hasBinaryContent(CONTENT);
+
+        // other node sharing the store, or cleaned temporary directory
+        Files.delete(pkg.getFile().toPath());
+        added.clear();
+        pkg = download(request -> new MockResponse().setResponseCode(500));
+        assertDownloaded(pkg);
+        assertThat(ranges).hasSize(1);
+        assertThat(blob).hasBinaryContent(CONTENT);
+
+        // the blob is a copy of the package, not sharing its content
+        Files.write(pkg.getFile().toPath(), new byte[CONTENT.length], StandardOpenOption.TRUNCATE_EXISTING);
+        assertThat(blob).hasBinaryContent(CONTENT);
+    }
+
+    @Test
+    public void testCorruptedDownloadStore() throws Exception {
+        store = new DownloadStore(folder.newFolder("store").toPath(), Long.MAX_VALUE);
+        File blob = store.getPath(sourceDigest).toFile();
+        blob.getParentFile().mkdirs();
+        Files.write(blob.toPath(), new byte[CONTENT.length]);
+
+        // the corrupted blob is replaced by the downloaded package
+        LocalDownloadingPackage pkg = download(TestLocalDownloadingPackage::serve);
+        assertDownloaded(pkg);
+        assertThat(ranges).containsExactly((String) null);
+        assertThat(blob).hasBinaryContent(CONTENT);
+    }
+
+    @Test
+    public void testServerErrorRetries() throws Exception {
+        System.setProperty(LocalDownloadingPackage.RETRIES_PROPERTY, "2");
+        LocalDownloadingPackage pkg = download(request -> new MockResponse().setResponseCode(503));
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.REMOTE);
+        assertThat(pkg.isServerError()).isTrue();
+        assertThat(pkg.getErrorMessage()).isEqualTo("Connect server HTTP response code 503.");
+        assertThat(ranges).hasSize(3);
+        assertThat(added).isEmpty();
+    }
+
+    @Test
+    public void testNotFoundIsNotRetried() throws Exception {
+        LocalDownloadingPackage pkg = download(request -> new MockResponse().setResponseCode(404));
+        assertThat(pkg.getPackageState()).isEqualTo(PackageState.REMOTE);
+        assertThat(pkg.isServerError()).isFalse();
+        assertThat(pkg.getErrorMessage()).isEqualTo("Package not found (404).");
+        assertThat(ranges).hasSize(1);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.nuxeo.connect.data.AbstractJSONSerializableData;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.pm.tests.DummyPackageSource;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the merge and filter layer of {@link PackageManagerImpl} over a synthetic catalogue of remote packages
+ * spread over several target platforms, a tenth of them being also local.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=org.nuxeo.connect.packages.PackageMergeBenchmark
+ * -Dexec.classpathScope=test}.
+ *
+ * @since 1.8.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackageMergeBenchmark {
+
+    protected static final String[] TARGET_PLATFORMS = { "server-9.10", "server-10.10", "server-2021.1" };
+
+    protected static final int VERSIONS_PER_NAME = 4;
+
+    @Param({ "10000" })
+    public int packages;
+
+    protected PackageManagerImpl pm;
+
+    protected PlatformId targetPlatform;
+
+    @Setup
+    public void setup() throws Exception {
+        List<DownloadablePackage> remote = new ArrayList<>();
+        List<DownloadablePackage> local = new ArrayList<>();
+        PackageType[] types = { PackageType.ADDON, PackageType.HOT_FIX, PackageType.STUDIO };
+        for (int i = 0; i < packages; i++) {
+            int name = i / VERSIONS_PER_NAME;
+            JSONObject data = new JSONObject();
+            data.put("name", "pkg-" + name);
+            data.put("version", "1." + i % VERSIONS_PER_NAME + ".0");
+            data.put("type", types[name % types.length].getValue());
+            data.put("targetPlatforms",
+                    new JSONArray().put(TARGET_PLATFORMS[i % TARGET_PLATFORMS.length])
+                                   .put(TARGET_PLATFORMS[(i + 1) % TARGET_PLATFORMS.length]));
+            PackageDescriptor pkg = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, data);
+            pkg.setPackageState(PackageState.REMOTE);
+            remote.add(pkg);
+            if (i % 10 == 0) {
+                PackageDescriptor localPkg = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, data);
+                localPkg.setPackageState(PackageState.STARTED);
+                local.add(localPkg);
+            }
+        }
+        pm = new PackageManagerImpl(null);
+        pm.resetSources();
+        pm.registerSource(new DummyPackageSource(remote, "remote"), false);
+        pm.registerSource(new DummyPackageSource(local, "local"), true);
+        targetPlatform = PlatformId.parse(TARGET_PLATFORMS[1]);
+    }
+
+    @Benchmark
+    public Object mergePackages() {
+        return pm.doMergePackages(pm.getAllSources(), null, null);
+    }
+
+    @Benchmark
+    public Object listRemoteOrLocalPackages() {
+        return pm.listRemoteOrLocalPackages(null, targetPlatform);
+    }
+
+    @Benchmark
+    public Object listOnlyRemotePackages() {
+        return pm.listOnlyRemotePackages(null, targetPlatform);
+    }
+
+    @Benchmark
+    public Object listAllStudioRemoteOrLocalPackages() {
+        return pm.listAllStudioRemoteOrLocalPackages();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PackageMergeBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,398 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.nuxeo.connect.connector.http.ConnectHttpConnector.CONNECT_HTTP_PARALLELISM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.connector.AbstractConnectConnector;
+import org.nuxeo.connect.connector.ConnectConnector;
+import org.nuxeo.connect.connector.ConnectServerError;
+import org.nuxeo.connect.connector.test.ConnectTestConnector;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.update.PackageType;
+
+/**
+ * @since 1.8.2
+ */
+public class TestRemotePackageSource {
+
+    protected ConnectConnector oldTestConnector;
+
+    protected CountingConnector connector;
+
+    protected RemotePackageSource source;
+
+    @Before
+    public void setUp() {
+        System.setProperty("org.nuxeo.connect.client.testMode", "true");
+        oldTestConnector = NuxeoConnectClient.getConnectGatewayComponent().getTestConnector();
+        connector = new CountingConnector();
+        connector.flushCache();
+        NuxeoConnectClient.getConnectGatewayComponent().setTestConnector(connector);
+        source = new RemotePackageSource();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CONNECT_HTTP_PARALLELISM);
+        System.clearProperty(PackageListCache.CONNECT_CLIENT_CACHE_MINUTES_PROPERTY);
+        System.clearProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY);
+        System.clearProperty(StaleCacheRevalidator.MAX_STALENESS_MINUTES_PROPERTY);
+        connector.flushCache();
+        NuxeoConnectClient.getConnectGatewayComponent().setTestConnector(oldTestConnector);
+    }
+
+    @Test
+    public void it_should_fetch_all_types_concurrently() {
+        // GIVEN a connector which only answers once all the types are requested at the same time
+        connector.latch = new CountDownLatch(PackageType.values().length);
+
+        // WHEN listing all the packages
+        List<DownloadablePackage> pkgs = source.listPackages(null, null);
+
+        // THEN all the types were fetched in parallel and merged in the type order
+        assertThat(connector.concurrentCalls).hasValue(PackageType.values().length);
+        assertThat(pkgs).extracting(DownloadablePackage::getId)
+                        .containsExactly("myproject-5.3.1", "hotfix1-5.3.1", "hotfix2-5.3.1");
+    }
+
+    @Test
+    public void it_should_fetch_all_types_sequentially_when_parallelism_is_one() {
+        System.setProperty(CONNECT_HTTP_PARALLELISM, "1");
+
+        List<DownloadablePackage> pkgs = source.listPackages(null, null);
+
+        assertThat(connector.concurrentCalls).hasValue(1);
+        assertThat(pkgs).extracting(DownloadablePackage::getId)
+                        .containsExactly("myproject-5.3.1", "hotfix1-5.3.1", "hotfix2-5.3.1");
+    }
+
+    @Test
+    public void it_should_isolate_errors_per_type() {
+        // GIVEN a connector failing for hotfixes
+        connector.failingType = PackageType.HOT_FIX;
+
+        // WHEN listing all the packages twice
+        List<DownloadablePackage> pkgs = source.listPackages(null, null);
+        source.listPackages(null, null);
+
+        // THEN the other types are listed, and cached
+        assertThat(pkgs).extracting(DownloadablePackage::getId).containsExactly("myproject-5.3.1");
+        assertThat(source.listPackages(PackageType.HOT_FIX, null)).isEmpty();
+        assertThat(connector.calls.get(PackageType.STUDIO)).hasValue(1);
+    }
+
+    @Test
+    public void it_should_list_packages_by_name_across_types() {
+        assertThat(source.listPackagesByName("hotfix2", null)).extracting(DownloadablePackage::getId)
+                                                              .containsExactly("hotfix2-5.3.1");
+        // each type was fetched once
+        List<Integer> calls = connector.calls.values().stream().map(AtomicInteger::get).collect(Collectors.toList());
+        assertThat(calls).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    public void it_should_fetch_all_types_in_a_single_call_in_bulk_mode() {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            List<DownloadablePackage> pkgs = source.listPackages(null, null);
+
+            assertThat(pkgs).extracting(DownloadablePackage::getId)
+                            .containsExactly("myproject-5.3.1", "hotfix1-5.3.1", "hotfix2-5.3.1");
+            assertThat(connector.bulkCalls).hasValue(1);
+            assertThat(connector.calls).isEmpty();
+            // the in-memory cache is filled for each type
+            assertThat(source.listPackages(PackageType.HOT_FIX, null)).hasSize(2);
+            assertThat(connector.calls).isEmpty();
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_fall_back_on_per_type_calls_when_bulk_mode_is_not_supported() {
+        System.setProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY, "true");
+        try {
+            connector.bulkSupported = false;
+
+            List<DownloadablePackage> pkgs = source.listPackages(null, null);
+
+            assertThat(pkgs).extracting(DownloadablePackage::getId)
+                            .containsExactly("myproject-5.3.1", "hotfix1-5.3.1", "hotfix2-5.3.1");
+            assertThat(connector.bulkCalls).hasValue(1);
+            assertThat(connector.calls).hasSize(PackageType.values().length);
+        } finally {
+            System.clearProperty(AbstractConnectConnector.CONNECT_CONNECTOR_BULK_DOWNLOADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void it_should_serve_stale_packages_while_refreshing_them() throws Exception {
+        System.setProperty(PackageListCache.CONNECT_CLIENT_CACHE_MINUTES_PROPERTY, "0");
+        System.setProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY, "true");
+        source = new RemotePackageSource();
+        StaleCacheRevalidator revalidator = source.cache.getRevalidator();
+
+        // GIVEN an expired entry
+        source.listPackages(PackageType.STUDIO, null);
+        Thread.sleep(10);
+
+        // WHEN listing the packages again
+        List<DownloadablePackage> pkgs = source.listPackages(PackageType.STUDIO, null);
+
+        // THEN the stale entry is returned and refreshed in background
+        assertThat(pkgs).extracting(DownloadablePackage::getId).containsExactly("myproject-5.3.1");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (revalidator.getRefreshes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(connector.calls.get(PackageType.STUDIO)).hasValue(2);
+        assertThat(revalidator.getBlockingMisses()).isEqualTo(1);
+        assertThat(revalidator.getStaleHits()).isEqualTo(1);
+        assertThat(revalidator.getRefreshes()).isEqualTo(1);
+        // AND the refresh asked the server instead of the connector cache
+        assertThat(connector.fetchCalls).hasValue(1);
+    }
+
+    @Test
+    public void it_should_share_the_refresh_of_a_stale_entry_with_concurrent_loads() throws Exception {
+        System.setProperty(PackageListCache.CONNECT_CLIENT_CACHE_MINUTES_PROPERTY, "0");
+        System.setProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY, "true");
+        source = new RemotePackageSource();
+        PackageListCache cache = source.cache;
+        String key = source.getCacheKey(PackageType.STUDIO, null);
+
+        // GIVEN an expired entry being refreshed
+        List<DownloadablePackage> pkgs = source.listPackages(PackageType.STUDIO, null);
+        Thread.sleep(10);
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        assertThat(cache.getFromCache(key, () -> {
+            refreshing.countDown();
+            gate.await(5, TimeUnit.SECONDS);
+            return pkgs;
+        })).hasSameSizeAs(pkgs);
+        assertThat(refreshing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // WHEN loading the same key meanwhile
+            Future<List<DownloadablePackage>> load = executor.submit(() -> cache.load(key, () -> {
+                throw new ConnectServerError("The refresh should have been shared");
+            }));
+            Thread.sleep(100);
+            gate.countDown();
+
+            // THEN the load gets the refreshed packages
+            assertThat(load.get(5, TimeUnit.SECONDS)).isEqualTo(pkgs);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void it_should_block_on_entries_beyond_the_max_staleness() throws Exception {
+        System.setProperty(PackageListCache.CONNECT_CLIENT_CACHE_MINUTES_PROPERTY, "0");
+        System.setProperty(StaleCacheRevalidator.STALE_WHILE_REVALIDATE_PROPERTY, "true");
+        System.setProperty(StaleCacheRevalidator.MAX_STALENESS_MINUTES_PROPERTY, "0");
+        source = new RemotePackageSource();
+        StaleCacheRevalidator revalidator = source.cache.getRevalidator();
+
+        source.listPackages(PackageType.STUDIO, null);
+        Thread.sleep(10);
+        List<DownloadablePackage> pkgs = source.listPackages(PackageType.STUDIO, null);
+
+        assertThat(pkgs).extracting(DownloadablePackage::getId).containsExactly("myproject-5.3.1");
+        assertThat(connector.calls.get(PackageType.STUDIO)).hasValue(2);
+        assertThat(revalidator.getBlockingMisses()).isEqualTo(2);
+        assertThat(revalidator.getStaleHits()).isZero();
+    }
+
+    @Test
+    public void it_should_share_a_single_fetch_between_concurrent_misses() throws Exception {
+        // GIVEN a slow server
+        connector.gate = new CountDownLatch(1);
+        int nbThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            // WHEN listing the same packages from several threads at the same time
+            List<Future<List<DownloadablePackage>>> futures = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                futures.add(executor.submit(() -> source.listPackages(PackageType.HOT_FIX, null)));
+            }
+            Thread.sleep(200);
+            connector.gate.countDown();
+
+            // THEN they all get the packages from a single call to the server
+            for (Future<List<DownloadablePackage>> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).extracting(DownloadablePackage::getId)
+                                                           .containsExactly("hotfix1-5.3.1", "hotfix2-5.3.1");
+            }
+            assertThat(connector.calls.get(PackageType.HOT_FIX)).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void it_should_look_up_packages_by_name_in_the_cache_index() {
+        connector.addonData = "[{id : 'myaddon-1.10.0', name : 'myaddon', version : '1.10.0', type : 'addon'}, "
+                + "{id : 'other-1.0.0', name : 'other', version : '1.0.0', type : 'addon'}, "
+                + "{id : 'myaddon-1.2.0', name : 'myaddon', version : '1.2.0', type : 'addon'}]";
+
+        assertThat(source.listPackagesByName("myaddon", null)).extracting(DownloadablePackage::getId)
+                                                              .containsExactly("myaddon-1.2.0", "myaddon-1.10.0");
+        assertThat(source.listPackagesByName("myaddon", null)).extracting(DownloadablePackage::getId)
+                                                              .containsExactly("myaddon-1.2.0", "myaddon-1.10.0");
+        assertThat(source.listPackagesByName("unknown", null)).isEmpty();
+
+        // the second lookups were served by the cache
+        List<Integer> calls = connector.calls.values().stream().map(AtomicInteger::get).collect(Collectors.toList());
+        assertThat(calls).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    public void it_should_serve_empty_package_lists_from_the_cache() {
+        // GIVEN no addon package
+        connector.addonData = "[]";
+
+        // WHEN looking up packages by name twice
+        assertThat(source.listPackagesByName("hotfix1", null)).hasSize(1);
+        assertThat(source.listPackagesByName("hotfix1", null)).hasSize(1);
+        assertThat(source.listPackages(PackageType.ADDON, null)).isEmpty();
+
+        // THEN the empty list was cached like the others
+        List<Integer> calls = connector.calls.values().stream().map(AtomicInteger::get).collect(Collectors.toList());
+        assertThat(calls).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    public void it_should_look_up_packages_by_id_in_the_cache_index() {
+        source.listPackages(null, null);
+        assertThat(source.cache.getPackageByID("hotfix1-5.3.1")).isNotNull();
+        assertThat(source.getPackageById("hotfix2-5.3.1").getName()).isEqualTo("hotfix2");
+
+        // replacing an entry drops its packages from the index
+        List<DownloadablePackage> hotfixes = source.cache.getFromCache(PackageType.HOT_FIX.toString());
+        hotfixes.removeIf(pkg -> "hotfix1".equals(pkg.getName()));
+        source.cache.add(hotfixes, PackageType.HOT_FIX.toString());
+        assertThat(source.cache.getPackageByID("hotfix1-5.3.1")).isNull();
+        assertThat(source.cache.getPackageByID("hotfix2-5.3.1")).isNotNull();
+    }
+
+    protected static class CountingConnector extends ConnectTestConnector {
+
+        protected final AtomicInteger bulkCalls = new AtomicInteger();
+
+        protected boolean bulkSupported = true;
+
+        protected final Map<PackageType, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+        protected final AtomicInteger fetchCalls = new AtomicInteger();
+
+        protected final AtomicInteger running = new AtomicInteger();
+
+        protected final AtomicInteger concurrentCalls = new AtomicInteger();
+
+        protected CountDownLatch latch;
+
+        protected PackageType failingType;
+
+        protected CountDownLatch gate;
+
+        protected String addonData;
+
+        @Override
+        protected String getJSONDataForDownloads(String type) {
+            if (addonData != null && PackageType.ADDON.getValue().equals(type)) {
+                return addonData;
+            }
+            return super.getJSONDataForDownloads(type);
+        }
+
+        @Override
+        protected String getJSONDataForAllDownloads() {
+            bulkCalls.incrementAndGet();
+            return bulkSupported ? super.getJSONDataForAllDownloads() : null;
+        }
+
+        @Override
+        public List<DownloadablePackage> getDownloads(PackageType type, PlatformId currentTargetPlatform)
+                throws ConnectServerError {
+            return call(type, () -> super.getDownloads(type, currentTargetPlatform));
+        }
+
+        @Override
+        public List<DownloadablePackage> fetchDownloads(PackageType type, PlatformId currentTargetPlatform)
+                throws ConnectServerError {
+            fetchCalls.incrementAndGet();
+            return call(type, () -> super.fetchDownloads(type, currentTargetPlatform));
+        }
+
+        protected List<DownloadablePackage> call(PackageType type, Callable<List<DownloadablePackage>> call)
+                throws ConnectServerError {
+            calls.computeIfAbsent(type, k -> new AtomicInteger()).incrementAndGet();
+            concurrentCalls.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (gate != null) {
+                    gate.await(5, TimeUnit.SECONDS);
+                } else if (latch != null) {
+                    latch.countDown();
+                    latch.await(5, TimeUnit.SECONDS);
+                } else {
+                    Thread.sleep(20);
+                }
+                if (type == failingType) {
+                    throw new ConnectServerError("Failing on purpose");
+                }
+                return call.call();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectServerError("Interrupted", e);
+            } catch (ConnectServerError e) {
+                throw e;
+            } catch (Exception e) { // NOSONAR
+                throw new ConnectServerError("Unexpected error", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+    }
+
+}
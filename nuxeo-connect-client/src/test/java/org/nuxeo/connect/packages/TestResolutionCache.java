@@ -0,0 +1,169 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.packages.dependencies.DependencyResolution;
+import org.nuxeo.connect.packages.dependencies.P2CUDFDependencyResolver;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.pm.tests.AbstractPackageManagerTestCase;
+import org.nuxeo.connect.pm.tests.DummyPackageSource;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * @since 1.8.2
+ */
+public class TestResolutionCache extends AbstractPackageManagerTestCase {
+
+    /**
+     * Resolver counting its resolutions, each one installing the requested packages.
+     */
+    protected static class CountingResolver extends P2CUDFDependencyResolver {
+
+        protected int count;
+
+        protected boolean optimal = true;
+
+        public CountingResolver(PackageManager pm) {
+            super(pm);
+        }
+
+        @Override
+        public DependencyResolution resolve(List<String> pkgInstall, List<String> pkgRemove, List<String> pkgUpgrade,
+                PlatformId targetPlatform, boolean allowSNAPSHOT, boolean doKeep, boolean isSubResolution) {
+            count++;
+            DependencyResolution resolution = new DependencyResolution();
+            for (String name : pkgInstall) {
+                resolution.addPackage(name, new Version("1.0.0"));
+            }
+            resolution.markAsSuccess();
+            resolution.setOptimal(optimal);
+            return resolution;
+        }
+    }
+
+    protected PackageManagerImpl pmi;
+
+    protected CountingResolver resolver;
+
+    protected DummyPackageSource localSource;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        pmi = (PackageManagerImpl) pm;
+        localSource = new DummyPackageSource(getDownloads("local2.json"), "local2");
+        pm.registerSource(localSource, true);
+        pm.registerSource(new DummyPackageSource(getDownloads("remote2.json"), "remote2"), false);
+        resolver = new CountingResolver(pm);
+        pmi.resolver = resolver;
+        pmi.resolutionCache.clear();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        pm.setResolver(PackageManager.DEFAULT_DEPENDENCY_RESOLVER);
+        super.tearDown();
+    }
+
+    protected DependencyResolution resolve(String... pkgInstall) {
+        return pm.resolveDependencies(Arrays.asList(pkgInstall), null, null, null);
+    }
+
+    public void testIdenticalRequestsAreResolvedOnce() throws Exception {
+        DependencyResolution resolution = resolve("A", "B");
+        assertEquals(1, resolver.count);
+        DependencyResolution cached = resolve("A", "B");
+        assertEquals(1, resolver.count);
+        assertNotSame(resolution, cached);
+        assertEquals(resolution.getOrderedPackageIdsToInstall(), cached.getOrderedPackageIdsToInstall());
+
+        // the cached resolution is not affected by changes to the returned copies
+        cached.getOrderedPackageIdsToInstall().clear();
+        assertEquals(resolution.getOrderedPackageIdsToInstall(), resolve("A", "B").getOrderedPackageIdsToInstall());
+        assertEquals(1, resolver.count);
+
+        // other requests
+        resolve("B", "A");
+        assertEquals(2, resolver.count);
+        pm.resolveDependencies(Arrays.asList("A", "B"), null, null, PlatformId.parse("cap-8.10"));
+        assertEquals(3, resolver.count);
+        pm.resolveDependencies(Arrays.asList("A", "B"), null, null, null, true, false);
+        assertEquals(4, resolver.count);
+    }
+
+    public void testInvalidation() throws Exception {
+        resolve("A");
+        assertEquals(1, resolver.count);
+
+        // local state change
+        DownloadablePackage local = localSource.listPackages().get(0);
+        toggleInstalled(local);
+        pmi.invalidateUniverse();
+        resolve("A");
+        assertEquals(2, resolver.count);
+        resolve("A");
+        assertEquals(2, resolver.count);
+
+        // source change
+        localSource.reset(getDownloads("local1.json"));
+        resolve("A");
+        assertEquals(3, resolver.count);
+
+        // cache flush
+        pm.flushCache();
+        resolve("A");
+        assertEquals(4, resolver.count);
+    }
+
+    public void testNonOptimalResolutionIsNotCached() throws Exception {
+        resolver.optimal = false;
+        resolve("A");
+        resolve("A");
+        assertEquals(2, resolver.count);
+    }
+
+    public void testEviction() throws Exception {
+        ResolutionCache cache = new ResolutionCache(2);
+        List<Object> stamp = Arrays.asList("stamp");
+        ResolutionCache.Key a = new ResolutionCache.Key(Arrays.asList("A"), null, null, null, false, true, false,
+                stamp);
+        ResolutionCache.Key b = new ResolutionCache.Key(Arrays.asList("B"), null, null, null, false, true, false,
+                stamp);
+        ResolutionCache.Key c = new ResolutionCache.Key(Arrays.asList("C"), null, null, null, false, true, false,
+                stamp);
+        cache.put(a, new DependencyResolution());
+        cache.put(b, new DependencyResolution());
+        assertNotNull(cache.get(a));
+        cache.put(c, new DependencyResolution());
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+
+        ResolutionCache disabled = new ResolutionCache(0);
+        assertFalse(disabled.isEnabled());
+        disabled.put(a, new DependencyResolution());
+        assertNull(disabled.get(a));
+    }
+
+}
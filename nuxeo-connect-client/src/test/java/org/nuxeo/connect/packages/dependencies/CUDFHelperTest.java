@@ -23,12 +23,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
+import org.apache.commons.io.IOUtils;
 import org.eclipse.equinox.p2.cudf.Parser;
 import org.eclipse.equinox.p2.cudf.metadata.IProvidedCapability;
 import org.eclipse.equinox.p2.cudf.metadata.IRequiredCapability;
@@ -46,6 +48,7 @@ import org.junit.Test;
 import org.nuxeo.connect.data.DownloadablePackage;
 import org.nuxeo.connect.pm.tests.AbstractPackageManagerTestCase;
 import org.nuxeo.connect.pm.tests.DummyPackageSource;
+import org.nuxeo.connect.update.PackageDependency;
 
 /**
  * @since 1.4
@@ -161,6 +164,18 @@ public class CUDFHelperTest extends AbstractPackageManagerTestCase {
                 new TreeSet<>(genMap.values()));
     }
 
+    @Test
+    public void testGetCUDFInputStream() throws Exception {
+        PackageDependency[] installs = { new PackageDependency("nuxeo-cmf") };
+        CUDFHelper stringHelper = new CUDFHelper(pm);
+        stringHelper.setAllowSNAPSHOT(true);
+        String expected = stringHelper.getCUDFFile(installs, null, null);
+        assertTrue(expected.contains(CUDFPackage.TAG_INSTALL + "nuxeo-cmf"));
+        try (InputStream in = cudfHelper.getCUDFInputStream(installs, null, null)) {
+            assertEquals(expected, IOUtils.toString(in, Charset.defaultCharset()));
+        }
+    }
+
     private InstallableUnit getIU(String id) {
         Iterator<InstallableUnit> it = pcr.getInitialState().iterator();
         while (it.hasNext()) {
@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages.dependencies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.nuxeo.connect.data.AbstractJSONSerializableData;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.packages.PackageManagerImpl;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.pm.tests.DummyPackageSource;
+import org.nuxeo.connect.update.PackageDependency;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the CUDF mapping of {@link CUDFHelper}, sequential or parallel, over a synthetic universe where each package
+ * name depends on two others, so that the request involves the whole universe, a tenth of the packages being
+ * installed.
+ * <p>
+ * Run with {@code mvn test-compile exec:java
+ * -Dexec.mainClass=org.nuxeo.connect.packages.dependencies.CUDFMappingBenchmark -Dexec.classpathScope=test}.
+ *
+ * @since 1.8.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CUDFMappingBenchmark {
+
+    protected static final String[] TARGET_PLATFORMS = { "server-9.10", "server-10.10", "server-2021.1" };
+
+    protected static final int VERSIONS_PER_NAME = 4;
+
+    @Param({ "1000", "10000", "50000" })
+    public int packages;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    protected PackageManagerImpl pm;
+
+    protected CUDFUniverseIndex index;
+
+    protected PackageDependency[] installs;
+
+    @Setup
+    public void setup() throws Exception {
+        List<DownloadablePackage> remote = new ArrayList<>();
+        List<DownloadablePackage> local = new ArrayList<>();
+        int names = packages / VERSIONS_PER_NAME;
+        for (int i = 0; i < packages; i++) {
+            int name = i / VERSIONS_PER_NAME;
+            JSONObject data = new JSONObject();
+            data.put("name", "pkg-" + name);
+            data.put("version", "1." + i % VERSIONS_PER_NAME + ".0");
+            data.put("type", PackageType.ADDON.getValue());
+            data.put("targetPlatforms",
+                    new JSONArray().put(TARGET_PLATFORMS[i % TARGET_PLATFORMS.length])
+                                   .put(TARGET_PLATFORMS[(i + 1) % TARGET_PLATFORMS.length]));
+            JSONArray dependencies = new JSONArray();
+            for (int dependency = 2 * name + 1; dependency <= 2 * name + 2 && dependency < names; dependency++) {
+                dependencies.put("pkg-" + dependency + ":1.0.0");
+            }
+            data.put("dependencies", dependencies);
+            PackageDescriptor pkg = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, data);
+            if (i % 10 == 0) {
+                pkg.setPackageState(PackageState.STARTED);
+                local.add(pkg);
+            } else {
+                pkg.setPackageState(PackageState.REMOTE);
+                remote.add(pkg);
+            }
+        }
+        pm = new PackageManagerImpl(null);
+        pm.resetSources();
+        pm.registerSource(new DummyPackageSource(remote, "remote"), false);
+        pm.registerSource(new DummyPackageSource(local, "local"), true);
+        index = new CUDFUniverseIndex(null, pm.listAllPackages());
+        installs = new PackageDependency[] { new PackageDependency("pkg-0") };
+    }
+
+    @Benchmark
+    public Object initMapping() {
+        CUDFHelper helper = new CUDFHelper(pm);
+        helper.setUniverseIndex(index);
+        helper.setTargetPlatform(PlatformId.parse(TARGET_PLATFORMS[1]));
+        helper.setParallel(parallel);
+        helper.initMapping(installs, null, null);
+        return helper;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CUDFMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
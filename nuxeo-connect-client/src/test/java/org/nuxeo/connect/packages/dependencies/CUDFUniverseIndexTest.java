@@ -0,0 +1,222 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.packages.dependencies;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.packages.PackageManagerImpl;
+import org.nuxeo.connect.packages.PackageUniverse;
+import org.nuxeo.connect.platform.PlatformId;
+import org.nuxeo.connect.pm.tests.AbstractPackageManagerTestCase;
+import org.nuxeo.connect.pm.tests.DummyPackageSource;
+import org.nuxeo.connect.update.PackageDependency;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * @since 1.8.2
+ */
+public class CUDFUniverseIndexTest extends AbstractPackageManagerTestCase {
+
+    protected DummyPackageSource localSource;
+
+    protected DummyPackageSource remoteSource;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        localSource = new DummyPackageSource(getDownloads("local7.json"), "local7");
+        pm.registerSource(localSource, true);
+        remoteSource = new DummyPackageSource(getDownloads("remote3.json"), "remote3");
+        pm.registerSource(remoteSource, false);
+    }
+
+    protected void assertSameIndex(CUDFUniverseIndex expected, CUDFUniverseIndex actual) {
+        assertEquals(expected.getPackages(), actual.getPackages());
+        assertEquals(expected.getPackagesByName(), actual.getPackagesByName());
+        assertEquals(expected.providersByName, actual.providersByName);
+        assertEquals(expected.getInstalledNames(), actual.getInstalledNames());
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        List<DownloadablePackage> packages = pm.listAllPackages();
+        CUDFUniverseIndex index = new CUDFUniverseIndex(null, packages);
+        assertFalse(index.isFor(null));
+        for (int i = 0; i < packages.size(); i++) {
+            DownloadablePackage pkg = packages.get(i);
+            assertSame(pkg, index.getPackage(i));
+            assertSame(pkg, index.getPackage(pkg.getId()));
+            assertTrue(index.getPackages(pkg.getName()).contains(pkg));
+            for (PackageDependency provide : pkg.getProvides()) {
+                assertTrue(index.getProviders(provide.getName()).contains(pkg));
+            }
+            if (pkg.getPackageState().isInstalled()) {
+                assertTrue(index.getInstalledNames().contains(pkg.getName()));
+            }
+        }
+        assertFalse(index.getProviders("nuxeo-content-browser").isEmpty());
+        assertTrue(index.getPackages("unknown").isEmpty());
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        CUDFUniverseIndex index = new CUDFUniverseIndex(null, pm.listAllPackages());
+
+        // install state change
+        DownloadablePackage pkg = localSource.listPackages().get(0);
+        PackageState previousState = toggleInstalled(pkg);
+        ((PackageManagerImpl) pm).invalidateUniverse();
+        List<DownloadablePackage> packages = pm.listAllPackages();
+        CUDFUniverseIndex updated = new CUDFUniverseIndex(index, null, packages);
+        assertSameIndex(new CUDFUniverseIndex(null, packages), updated);
+        assertEquals(!previousState.isInstalled(), updated.getInstalledNames().contains(pkg.getName()));
+        for (String name : index.getPackagesByName().keySet()) {
+            if (!name.equals(pkg.getName()) && updated.getPackages(name).equals(index.getPackages(name))) {
+                // unchanged names are not indexed again
+                assertSame(index.getPackages(name), updated.getPackages(name));
+            }
+        }
+
+        // packages removed and added
+        localSource.reset(getDownloads("local3.json"));
+        packages = pm.listAllPackages();
+        CUDFUniverseIndex replaced = new CUDFUniverseIndex(updated, null, packages);
+        assertSameIndex(new CUDFUniverseIndex(null, packages), replaced);
+        assertTrue(replaced.getProviders("nuxeo-content-browser").isEmpty());
+    }
+
+    @Test
+    public void testMappingWithIndex() throws Exception {
+        PackageDependency[] installs = { new PackageDependency("nuxeo-cmf") };
+        P2CUDFDependencyResolver resolver = new P2CUDFDependencyResolver(pm);
+        CUDFUniverseIndex index = resolver.getUniverseIndex();
+        PackageUniverse universe = ((PackageManagerImpl) pm).getUniverse();
+        assertTrue(index.isFor(universe));
+        assertSame(index, resolver.getUniverseIndex());
+        for (int i = 0; i < 2; i++) {
+            CUDFHelper helper = new CUDFHelper(pm);
+            CUDFHelper indexedHelper = new CUDFHelper(pm);
+            indexedHelper.setUniverseIndex(resolver.getUniverseIndex());
+            assertEquals(helper.getCUDFFile(installs, null, null), indexedHelper.getCUDFFile(installs, null, null));
+            // change the universe
+            localSource.reset(getDownloads("local3.json"));
+        }
+        assertNotSame(index, resolver.getUniverseIndex());
+        assertFalse(resolver.getUniverseIndex().isFor(universe));
+    }
+
+    protected static String getCUDFFile(CUDFHelper helper, PackageDependency[] installs) {
+        try {
+            return helper.getCUDFFile(installs, null, null);
+        } catch (DependencyException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void testInvolvedReferences() throws Exception {
+        String[][] sources = { { "local7.json", "remote3.json" }, { "local6.json", "remote4.json" },
+                { "localsnapshot.json", "remotesnapshot.json" }, { "localNoKeep2.json", "remoteNoKeep2.json" } };
+        for (String[] source : sources) {
+            localSource.reset(getDownloads(source[0]));
+            remoteSource.reset(getDownloads(source[1]));
+            List<DownloadablePackage> packages = pm.listAllPackages();
+            CUDFUniverseIndex index = new CUDFUniverseIndex(null, packages);
+            for (DownloadablePackage involved : packages) {
+                CUDFHelper helper = new CUDFHelper(pm);
+                // the packages browsed in their listing order, as without index
+                Set<String> expected = new HashSet<>(Collections.singleton(involved.getName()));
+                Set<String> expectedSNAPSHOTs = new HashSet<>(index.getInstalledNames());
+                for (DownloadablePackage pkg : packages) {
+                    helper.computeInvolvedReferences(expected, expectedSNAPSHOTs, pkg, index.getPackagesByName());
+                }
+                Set<String> actual = new HashSet<>(Collections.singleton(involved.getName()));
+                Set<String> actualSNAPSHOTs = new HashSet<>(index.getInstalledNames());
+                helper.computeInvolvedReferences(actual, actualSNAPSHOTs, index);
+                assertEquals(expected, actual);
+                assertEquals(expectedSNAPSHOTs, actualSNAPSHOTs);
+            }
+        }
+    }
+
+    protected static DownloadablePackage newPackage(String name, String dependency, String provide) {
+        PackageDescriptor pkg = new PackageDescriptor();
+        pkg.setName(name);
+        pkg.setVersion(new Version("1.0.0"));
+        if (dependency != null) {
+            pkg.setDependencies(new PackageDependency[] { new PackageDependency(dependency) });
+        }
+        if (provide != null) {
+            pkg.setProvides(new PackageDependency[] { new PackageDependency(provide) });
+        }
+        return pkg;
+    }
+
+    @Test
+    public void testInvolvedReferencesInListingOrder() throws Exception {
+        // "b" is provided by "a" once "b" has been passed: its dependency is not involved, in both modes
+        List<DownloadablePackage> packages = Arrays.asList(newPackage("b", "c", null), newPackage("a", null, "b"),
+                newPackage("c", null, null));
+        CUDFUniverseIndex index = new CUDFUniverseIndex(null, packages);
+        for (boolean parallel : new boolean[] { false, true }) {
+            CUDFHelper helper = new CUDFHelper(pm);
+            helper.setParallel(parallel);
+            Set<String> involved = new HashSet<>(Collections.singleton("a"));
+            helper.computeInvolvedReferences(involved, new HashSet<>(), index);
+            assertEquals(new HashSet<>(Arrays.asList("a", "b")), involved);
+        }
+    }
+
+    @Test
+    public void testParallelMapping() throws Exception {
+        String[][] sources = { { "local7.json", "remote3.json" }, { "local6.json", "remote4.json" },
+                { "localsnapshot.json", "remotesnapshot.json" }, { "localNoKeep2.json", "remoteNoKeep2.json" } };
+        for (String[] source : sources) {
+            localSource.reset(getDownloads(source[0]));
+            List<DownloadablePackage> remote = getDownloads(source[1]);
+            remoteSource.reset(remote);
+            PackageDependency[] installs = new PackageDependency[remote.size()];
+            for (int i = 0; i < installs.length; i++) {
+                installs[i] = new PackageDependency(remote.get(i).getName());
+            }
+            for (PlatformId targetPlatform : new PlatformId[] { null, PlatformId.parse("cap-5.5.0") }) {
+                for (boolean keep : new boolean[] { true, false }) {
+                    CUDFHelper helper = new CUDFHelper(pm);
+                    helper.setTargetPlatform(targetPlatform);
+                    helper.setKeep(keep);
+                    helper.setParallel(false);
+                    CUDFHelper parallelHelper = new CUDFHelper(pm);
+                    parallelHelper.setTargetPlatform(targetPlatform);
+                    parallelHelper.setKeep(keep);
+                    parallelHelper.setParallel(true);
+                    assertEquals(getCUDFFile(helper, installs), getCUDFFile(parallelHelper, installs));
+                }
+            }
+        }
+    }
+
+}
@@ -20,8 +20,16 @@ package org.nuxeo.connect.packages.dependencies;
 
 //import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.equinox.p2.cudf.solver.ProfileChangeRequest;
+import org.eclipse.equinox.p2.cudf.solver.SimplePlanner;
+import org.eclipse.equinox.p2.cudf.solver.SolverConfiguration;
 import org.junit.Test;
 import org.nuxeo.connect.platform.PlatformId;
 import org.nuxeo.connect.pm.tests.AbstractPackageManagerTestCase;
@@ -219,4 +227,92 @@ public class P2CUDFDependencyResolverTest extends AbstractPackageManagerTestCase
         assertTrue(resolution.getDownloadPackageIds().containsAll(Arrays.asList("UUU-1.0.2-SNAPSHOT", "VVV-1.0.1")));
     }
 
+    /**
+     * Planner searching until stopped.
+     */
+    protected static class BlockingPlanner extends SimplePlanner {
+
+        protected final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public Object getSolutionFor(ProfileChangeRequest req, SolverConfiguration configuration) {
+            try {
+                stopped.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
+        @Override
+        public void stopSolver() {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Test
+    public void testSolverCompletes() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimplePlanner planner = new SimplePlanner() {
+            @Override
+            public Object getSolutionFor(ProfileChangeRequest req, SolverConfiguration configuration) {
+                calls.add("solve");
+                return super.getSolutionFor(req, configuration);
+            }
+
+            @Override
+            public void stopSolver() {
+                calls.add("stop");
+            }
+        };
+        P2CUDFDependencyResolver resolver = new P2CUDFDependencyResolver(pm);
+        assertTrue(resolver.solve(planner, new ProfileChangeRequest(), new SolverConfiguration(
+                P2CUDFDependencyResolver.SOLVER_CRITERIA_BASIC_INSTALL)));
+        // the completed solver is only told to stop, once
+        assertEquals(Arrays.asList("solve", "stop"), calls);
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Test
+    public void testSolverTimeout() throws Exception {
+        System.setProperty(P2CUDFDependencyResolver.SOLVER_TIMEOUT_PROPERTY, "1");
+        try {
+            assertEquals(1000, P2CUDFDependencyResolver.getSolverTimeout());
+            BlockingPlanner planner = new BlockingPlanner();
+            P2CUDFDependencyResolver resolver = new P2CUDFDependencyResolver(pm);
+            assertFalse(resolver.solve(planner, new ProfileChangeRequest(), new SolverConfiguration(
+                    P2CUDFDependencyResolver.SOLVER_CRITERIA_BASIC_INSTALL)));
+            assertEquals(0, planner.stopped.getCount());
+        } finally {
+            System.clearProperty(P2CUDFDependencyResolver.SOLVER_TIMEOUT_PROPERTY);
+        }
+        assertEquals(30000, P2CUDFDependencyResolver.getSolverTimeout());
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Test
+    public void testSolverFailure() throws Exception {
+        SimplePlanner planner = new SimplePlanner() {
+            @Override
+            public Object getSolutionFor(ProfileChangeRequest req, SolverConfiguration configuration) {
+                throw new IllegalStateException("solver failure");
+            }
+        };
+        P2CUDFDependencyResolver resolver = new P2CUDFDependencyResolver(pm);
+        try {
+            resolver.solve(planner, new ProfileChangeRequest(), new SolverConfiguration(
+                    P2CUDFDependencyResolver.SOLVER_CRITERIA_BASIC_INSTALL));
+            fail("Should have thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("solver failure", e.getMessage());
+        }
+    }
+
 }
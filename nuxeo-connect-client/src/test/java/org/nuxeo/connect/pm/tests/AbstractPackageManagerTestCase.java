@@ -39,6 +39,7 @@ import org.nuxeo.connect.identity.LogicalInstanceIdentifier;
 import org.nuxeo.connect.packages.PackageManager;
 import org.nuxeo.connect.packages.PackageManagerImpl;
 import org.nuxeo.connect.update.MockPackageUpdateService;
+import org.nuxeo.connect.update.PackageState;
 
 public abstract class AbstractPackageManagerTestCase extends TestCase {
 
@@ -108,6 +109,20 @@ public abstract class AbstractPackageManagerTestCase extends TestCase {
         return result;
     }
 
+    /**
+     * Installs the given package if it is not installed, uninstalls it otherwise. The package is changed in place, so
+     * the package manager must be {@link PackageManagerImpl#invalidateUniverse() invalidated} to see it.
+     *
+     * @return the previous state of the package
+     * @since 1.8.2
+     */
+    protected static PackageState toggleInstalled(DownloadablePackage pkg) {
+        PackageState previousState = pkg.getPackageState();
+        ((PackageDescriptor) pkg).setPackageState(previousState.isInstalled() ? PackageState.DOWNLOADED
+                : PackageState.STARTED);
+        return previousState;
+    }
+
     public AbstractPackageManagerTestCase() {
         super();
     }
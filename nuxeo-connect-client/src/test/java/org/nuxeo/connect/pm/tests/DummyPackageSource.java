@@ -28,6 +28,8 @@ public class DummyPackageSource extends AbstractPackageSource implements Package
 
     protected List<DownloadablePackage> pkgs = new ArrayList<>();
 
+    protected volatile long revision;
+
     /**
      * @deprecated Since 1.4.19. Use {@link #DummyPackageSource(List)}
      */
@@ -73,6 +75,15 @@ public class DummyPackageSource extends AbstractPackageSource implements Package
 
     public void reset(List<DownloadablePackage> packages) {
         pkgs = packages;
+        revision++;
+    }
+
+    /**
+     * @since 1.8.2
+     */
+    @Override
+    public Object getRevision() {
+        return revision;
     }
 
     @Override
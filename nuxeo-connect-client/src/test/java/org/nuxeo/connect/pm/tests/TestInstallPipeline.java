@@ -0,0 +1,243 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.pm.tests;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nuxeo.connect.DefaultCallbackHolder;
+import org.nuxeo.connect.NuxeoConnectClient;
+import org.nuxeo.connect.packages.PackageManagerImpl;
+import org.nuxeo.connect.update.LocalPackage;
+import org.nuxeo.connect.update.MockPackageUpdateService;
+import org.nuxeo.connect.update.PackageDependency;
+import org.nuxeo.connect.update.PackageException;
+import org.nuxeo.connect.update.ValidationStatus;
+import org.nuxeo.connect.update.Version;
+import org.nuxeo.connect.update.task.Task;
+
+/**
+ * @since 1.8.2
+ */
+public class TestInstallPipeline extends AbstractPackageManagerTestCase {
+
+    protected Map<String, LocalPackage> packages = new LinkedHashMap<>();
+
+    protected Map<String, RecordingTask> tasks = new LinkedHashMap<>();
+
+    protected List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    protected AtomicInteger running = new AtomicInteger();
+
+    protected AtomicInteger maxRunning = new AtomicInteger();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        System.setProperty(PackageManagerImpl.INSTALL_PARALLELISM, "4");
+        ((DefaultCallbackHolder) NuxeoConnectClient.getCallBackHolder()).setUpdateService(
+                new MockPackageUpdateService(pm) {
+                    @Override
+                    public LocalPackage getPackage(String id) {
+                        return packages.get(id);
+                    }
+
+                    @Override
+                    public List<LocalPackage> getPackages() {
+                        return new ArrayList<>(packages.values());
+                    }
+                });
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        System.clearProperty(PackageManagerImpl.INSTALL_PARALLELISM);
+        ((DefaultCallbackHolder) NuxeoConnectClient.getCallBackHolder()).setUpdateService(
+                new MockPackageUpdateService(pm));
+        super.tearDown();
+    }
+
+    protected class RecordingTask implements Task {
+
+        protected LocalPackage pkg;
+
+        protected boolean restartRequired;
+
+        protected CountDownLatch latch;
+
+        protected PackageException error;
+
+        @Override
+        public void initialize(LocalPackage pkg, boolean restart) {
+            this.pkg = pkg;
+        }
+
+        @Override
+        public ValidationStatus validate() {
+            return new ValidationStatus();
+        }
+
+        @Override
+        public void run(Map<String, String> params) throws PackageException {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            events.add("start " + pkg.getName());
+            try {
+                if (latch != null) {
+                    // wait for the concurrent tasks sharing the latch
+                    latch.countDown();
+                    latch.await(5, TimeUnit.SECONDS);
+                }
+                if (error != null) {
+                    throw error;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                events.add("end " + pkg.getName());
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void rollback() {
+        }
+
+        @Override
+        public LocalPackage getPackage() {
+            return pkg;
+        }
+
+        @Override
+        public boolean isRestartRequired() {
+            return restartRequired;
+        }
+
+        @Override
+        public void setRestartRequired(boolean isRestartRequired) {
+            restartRequired = isRestartRequired;
+        }
+
+        @Override
+        public String getRelativeFilePath(File file) {
+            return file.getPath();
+        }
+    }
+
+    protected RecordingTask addPackage(String name, String... dependencies) {
+        String id = name + "-1.0.0";
+        PackageDependency[] deps = Arrays.stream(dependencies)
+                                         .map(PackageDependency::new)
+                                         .toArray(PackageDependency[]::new);
+        RecordingTask task = new RecordingTask();
+        LocalPackage pkg = (LocalPackage) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { LocalPackage.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getId":
+                        return id;
+                    case "getName":
+                        return name;
+                    case "getVersion":
+                        return new Version("1.0.0");
+                    case "getDependencies":
+                        return deps;
+                    case "getOptionalDependencies":
+                    case "getProvides":
+                        return new PackageDependency[0];
+                    case "getInstallTask":
+                        return task;
+                    case "toString":
+                        return id;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        task.initialize(pkg, false);
+        packages.put(id, pkg);
+        tasks.put(name, task);
+        return task;
+    }
+
+    protected void install(String... names) throws PackageException {
+        List<String> ids = new ArrayList<>();
+        for (String name : names) {
+            ids.add(name + "-1.0.0");
+        }
+        pm.install(ids, null);
+    }
+
+    protected void assertBefore(String first, String second) {
+        int index = events.indexOf(first);
+        assertTrue(events.toString(), index >= 0 && index < events.indexOf(second));
+    }
+
+    public void testDependenciesAreInstalledFirst() throws Exception {
+        addPackage("A");
+        addPackage("B", "A");
+        addPackage("C", "B");
+        CountDownLatch latch = new CountDownLatch(2);
+        addPackage("D").latch = latch;
+        addPackage("E").latch = latch;
+        install("A", "B", "C", "D", "E");
+        assertEquals(events.toString(), 10, events.size());
+        assertBefore("end A", "start B");
+        assertBefore("end B", "start C");
+        // independent packages are installed concurrently
+        assertTrue(events.toString(), maxRunning.get() > 1);
+    }
+
+    public void testRestartRequiredTaskRunsAlone() throws Exception {
+        addPackage("A");
+        addPackage("B").restartRequired = true;
+        addPackage("C");
+        install("A", "B", "C");
+        assertEquals(Arrays.asList("start A", "end A", "start B", "end B", "start C", "end C"), events);
+    }
+
+    public void testFirstFailureStopsInstallation() throws Exception {
+        addPackage("A").error = new PackageException("A failed");
+        addPackage("B", "A");
+        try {
+            install("A", "B");
+            fail("PackageException expected");
+        } catch (PackageException e) {
+            assertEquals("A failed", e.getMessage());
+        }
+        assertEquals(Arrays.asList("start A", "end A"), events);
+    }
+
+    public void testSequentialInstallationByDefault() throws Exception {
+        System.clearProperty(PackageManagerImpl.INSTALL_PARALLELISM);
+        addPackage("A");
+        addPackage("B");
+        addPackage("C");
+        install("A", "B", "C");
+        assertEquals(Arrays.asList("start A", "end A", "start B", "end B", "start C", "end C"), events);
+        assertEquals(1, maxRunning.get());
+    }
+
+}
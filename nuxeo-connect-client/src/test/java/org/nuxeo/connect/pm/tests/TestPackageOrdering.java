@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.pm.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.nuxeo.connect.data.AbstractJSONSerializableData;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.packages.dependencies.DependencyException;
+import org.nuxeo.connect.packages.dependencies.DependencyResolution;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.Version;
+
+/**
+ * @since 1.8.2
+ */
+public class TestPackageOrdering extends AbstractPackageManagerTestCase {
+
+    protected List<DownloadablePackage> local = new ArrayList<>();
+
+    protected List<DownloadablePackage> remote = new ArrayList<>();
+
+    protected void addPackage(String json, PackageState state) throws Exception {
+        JSONObject data = new JSONObject(json).put("type", "addon");
+        PackageDescriptor pkg = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, data);
+        pkg.setPackageState(state);
+        (state == PackageState.REMOTE ? remote : local).add(pkg);
+    }
+
+    protected DependencyResolution order(String... ids) throws Exception {
+        pm.registerSource(new DummyPackageSource(local, true), true);
+        pm.registerSource(new DummyPackageSource(remote, false), false);
+        DependencyResolution res = new DependencyResolution();
+        for (String id : ids) {
+            int index = id.lastIndexOf('-');
+            res.addPackage(id.substring(0, index), new Version(id.substring(index + 1)), true);
+        }
+        pm.order(res);
+        return res;
+    }
+
+    public void testDependenciesAreOrderedFirst() throws Exception {
+        addPackage("{name:'A',version:'1.0.0',dependencies:['C']}", PackageState.REMOTE);
+        addPackage("{name:'B',version:'1.0.0',dependencies:['D']}", PackageState.REMOTE);
+        addPackage("{name:'C',version:'1.0.0'}", PackageState.REMOTE);
+        addPackage("{name:'D',version:'1.0.0'}", PackageState.REMOTE);
+        DependencyResolution res = order("A-1.0.0", "B-1.0.0", "C-1.0.0", "D-1.0.0");
+        // each sweep keeps the requested order among the packages which are ready
+        assertEquals(Arrays.asList("C-1.0.0", "D-1.0.0", "A-1.0.0", "B-1.0.0"), res.getOrderedPackageIdsToInstall());
+    }
+
+    public void testProvidedDependency() throws Exception {
+        addPackage("{name:'A',version:'1.0.0',dependencies:['api:1.0.0']}", PackageState.REMOTE);
+        addPackage("{name:'B',version:'1.0.0',provides:['api:1.0.0']}", PackageState.REMOTE);
+        DependencyResolution res = order("A-1.0.0", "B-1.0.0");
+        assertEquals(Arrays.asList("B-1.0.0", "A-1.0.0"), res.getOrderedPackageIdsToInstall());
+    }
+
+    public void testInstalledDependency() throws Exception {
+        addPackage("{name:'A',version:'1.0.0',dependencies:['C:1.0.0']}", PackageState.REMOTE);
+        addPackage("{name:'C',version:'1.0.0'}", PackageState.STARTED);
+        DependencyResolution res = order("A-1.0.0");
+        assertEquals(Arrays.asList("A-1.0.0"), res.getOrderedPackageIdsToInstall());
+    }
+
+    public void testOptionalCycle() throws Exception {
+        addPackage("{name:'A',version:'1.0.0',optionalDependencies:['B']}", PackageState.REMOTE);
+        addPackage("{name:'B',version:'1.0.0',optionalDependencies:['A'],dependencies:['C']}", PackageState.REMOTE);
+        addPackage("{name:'C',version:'1.0.0'}", PackageState.REMOTE);
+        DependencyResolution res = order("A-1.0.0", "B-1.0.0", "C-1.0.0");
+        assertEquals(Arrays.asList("C-1.0.0", "A-1.0.0", "B-1.0.0"), res.getOrderedPackageIdsToInstall());
+    }
+
+    public void testMissingDependency() throws Exception {
+        addPackage("{name:'A',version:'1.0.0',dependencies:['B']}", PackageState.REMOTE);
+        addPackage("{name:'B',version:'1.0.0',dependencies:['A']}", PackageState.REMOTE);
+        addPackage("{name:'C',version:'1.0.0',dependencies:['missing']}", PackageState.REMOTE);
+        try {
+            order("A-1.0.0", "B-1.0.0", "C-1.0.0");
+            fail("DependencyException expected");
+        } catch (DependencyException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Couldn't order [A-1.0.0, B-1.0.0, C-1.0.0]"));
+            List<String> missing = Arrays.asList(
+                    e.getMessage().replaceFirst(".* missing \\[(.*)\\] .*", "$1").split(", "));
+            assertEquals(e.getMessage(), 3, missing.size());
+            assertTrue(e.getMessage(), missing.containsAll(Arrays.asList("A", "B", "missing")));
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo
+ */
+package org.nuxeo.connect.pm.tests;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.nuxeo.connect.data.AbstractJSONSerializableData;
+import org.nuxeo.connect.data.DownloadablePackage;
+import org.nuxeo.connect.data.PackageDescriptor;
+import org.nuxeo.connect.packages.PackageManagerImpl;
+import org.nuxeo.connect.packages.PackageUniverse;
+import org.nuxeo.connect.packages.dependencies.DependencyResolution;
+import org.nuxeo.connect.update.PackageState;
+import org.nuxeo.connect.update.PackageType;
+
+/**
+ * @since 1.8.2
+ */
+public class TestPackageUniverse extends AbstractPackageManagerTestCase {
+
+    protected DummyPackageSource localSource;
+
+    protected DummyPackageSource remoteSource;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        localSource = new DummyPackageSource(getDownloads("local2.json"), "local2");
+        remoteSource = new DummyPackageSource(getDownloads("remote2.json"), "remote2");
+        pm.registerSource(localSource, true);
+        pm.registerSource(remoteSource, false);
+    }
+
+    protected PackageUniverse getUniverse() {
+        return ((PackageManagerImpl) pm).getUniverse();
+    }
+
+    public void testUniverseIsReusedUntilSourcesChange() throws Exception {
+        PackageUniverse universe = getUniverse();
+        assertSame(universe, getUniverse());
+        assertEquals(pm.listPackages().size(), universe.getPackages(null).size());
+        assertEquals(pm.listLocalPackages().size(), universe.getLocalPackages(null).size());
+        assertEquals(pm.listRemotePackages().size(), universe.getRemotePackages(null).size());
+        assertSame(universe, getUniverse());
+
+        // install state change
+        DownloadablePackage local = universe.getLocalPackages(null).get(0);
+        PackageState previousState = toggleInstalled(local);
+        // changed in place, so not seen until invalidated, as done by the package manager operations
+        assertSame(universe, getUniverse());
+        ((PackageManagerImpl) pm).invalidateUniverse();
+        PackageUniverse updated = getUniverse();
+        assertNotSame(universe, updated);
+        assertTrue(updated.getVersion() > universe.getVersion());
+        assertEquals(!previousState.isInstalled(), pm.isInstalled(local.getId()));
+
+        // remote source change
+        remoteSource.reset(getDownloads("remote1.json"));
+        PackageUniverse remoteUpdated = getUniverse();
+        assertNotSame(updated, remoteUpdated);
+        assertEquals(5, pm.listRemotePackages().size());
+
+        // cache flush
+        pm.flushCache();
+        assertNotSame(remoteUpdated, getUniverse());
+    }
+
+    public void testSourceWithoutRevision() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        List<DownloadablePackage> pkgs = getDownloads("remote1.json");
+        pm.registerSource(new DummyPackageSource(pkgs, "norevision") {
+            @Override
+            public List<DownloadablePackage> listPackages() {
+                listings.incrementAndGet();
+                return super.listPackages();
+            }
+
+            @Override
+            public Object getRevision() {
+                return null;
+            }
+        }, false);
+
+        // listed again on each read
+        PackageUniverse universe = getUniverse();
+        assertNotSame(universe, getUniverse());
+        listings.set(0);
+        pm.listPackages();
+        pm.listPackages();
+        assertEquals(2, listings.get());
+
+        // but once within an operation
+        DependencyResolution res = new DependencyResolution();
+        for (DownloadablePackage pkg : pkgs) {
+            res.addPackage(pkg.getName(), pkg.getVersion());
+        }
+        listings.set(0);
+        pm.order(res);
+        assertEquals(1, listings.get());
+    }
+
+    public void testUniverseIndexes() throws Exception {
+        PackageUniverse universe = getUniverse();
+        for (DownloadablePackage pkg : pm.listPackages()) {
+            assertSame(pkg, pm.getPackage(pkg.getId()));
+            assertTrue(universe.getPackagesByName().get(pkg.getName()).contains(pkg));
+            assertTrue(universe.getPackages(pkg.getType()).contains(pkg));
+        }
+        for (DownloadablePackage pkg : pm.listLocalPackages()) {
+            assertSame(pkg, pm.getLocalPackage(pkg.getId()));
+            assertTrue(pm.findLocalPackageVersions(pkg.getName()).contains(pkg.getVersion()));
+        }
+        for (DownloadablePackage pkg : pm.listRemotePackages()) {
+            assertSame(pkg, pm.getRemotePackage(pkg.getId()));
+        }
+        List<DownloadablePackage> addons = pm.listPackages(PackageType.ADDON);
+        for (DownloadablePackage pkg : addons) {
+            assertEquals(PackageType.ADDON, pkg.getType());
+        }
+        assertNull(pm.getPackage("unknown-1.0.0"));
+    }
+
+    public void testPackageWithoutType() throws Exception {
+        JSONObject data = new JSONObject();
+        data.put("name", "untyped");
+        data.put("version", "1.0.0");
+        PackageDescriptor untyped = AbstractJSONSerializableData.loadFromJSON(PackageDescriptor.class, data);
+        untyped.setPackageState(PackageState.DOWNLOADED);
+        assertNull(untyped.getType());
+        List<DownloadablePackage> local = getDownloads("local2.json");
+        local.add(untyped);
+        localSource.reset(local);
+
+        PackageUniverse universe = getUniverse();
+        assertSame(untyped, universe.getPackage(untyped.getId()));
+        assertTrue(universe.getPackages(null).contains(untyped));
+        assertTrue(universe.getLocalPackages(null).contains(untyped));
+        for (PackageType type : PackageType.values()) {
+            assertFalse(universe.getPackages(type).contains(untyped));
+        }
+    }
+
+}
@@ -141,7 +141,7 @@ public class MockPackageUpdateService implements PackageUpdateService {
 
     @Override
     public File getRegistry() {
-        throw new UnsupportedOperationException();
+        return null;
     }
 
     @Override